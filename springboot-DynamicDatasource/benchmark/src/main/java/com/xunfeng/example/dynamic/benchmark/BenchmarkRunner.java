@@ -0,0 +1,32 @@
+package com.xunfeng.example.dynamic.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * 依次以1、4、16个线程运行全部基准测试，结果写入jmh-result-{线程数}.json，便于版本间对比
+ * <p>
+ * 参数：第一个为基准测试类名的正则（默认全部），第二个为逗号分隔的线程数
+ *
+ * @author
+ * @date 2026/10/18 16:00
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : BenchmarkRunner.class.getPackage().getName() + ".*Benchmark";
+        String threads = args.length > 1 ? args[1] : "1,4,16";
+        for (String thread : threads.split(",")) {
+            int count = Integer.parseInt(thread.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(count)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-" + count + ".json");
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.xunfeng.example.dynamic.benchmark;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据源上下文切换的开销：单层push/peek/poll，以及嵌套两层时外层栈保留的情况
+ *
+ * @author
+ * @date 2026/10/18 16:00
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContextHolderBenchmark {
+
+    private final String key = "42";
+    private final String nestedKey = "43";
+
+    @Benchmark
+    public String pushPeekPoll() {
+        DataSourceContextHolder.push(key);
+        try {
+            return DataSourceContextHolder.peek();
+        } finally {
+            DataSourceContextHolder.poll();
+        }
+    }
+
+    @Benchmark
+    public String nestedPushPeekPoll() {
+        DataSourceContextHolder.push(key);
+        try {
+            DataSourceContextHolder.push(nestedKey);
+            try {
+                return DataSourceContextHolder.peek();
+            } finally {
+                DataSourceContextHolder.poll();
+            }
+        } finally {
+            DataSourceContextHolder.poll();
+        }
+    }
+
+    @Benchmark
+    public String peekEmpty() {
+        return DataSourceContextHolder.peek();
+    }
+}
@@ -0,0 +1,127 @@
+package com.xunfeng.example.dynamic.benchmark;
+
+import com.baomidou.dynamic.datasource.annotation.DS;
+import com.baomidou.dynamic.datasource.aop.DynamicDataSourceAnnotationAdvisor;
+import com.baomidou.dynamic.datasource.aop.DynamicDataSourceAnnotationInterceptor;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.annotation.DataSource;
+import com.xunfeng.example.dynamic.aspect.DSAspect;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link DSAspect}切面的调用开销：固定key、实体入参、SpEL三种解析方式，与不经过代理的直接调用对比；
+ * 另对比baomidou的@DS拦截器与{@link DSAspect}叠加（统一前）和只由{@link DSAspect}处理@DS（统一后）
+ *
+ * @author
+ * @date 2026/10/18 16:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DSAspectBenchmark {
+
+    private TenantService direct;
+    private TenantService proxy;
+    private DataSourceEntity entity;
+    private LegacyService stacked;
+    private LegacyService unified;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        direct = new TenantService();
+        AspectJProxyFactory factory = new AspectJProxyFactory(direct);
+        factory.setProxyTargetClass(true);
+        factory.addAspect(new DSAspect());
+        proxy = factory.getProxy();
+        entity = new DataSourceEntity();
+        entity.setId(42L);
+
+        AspectJProxyFactory stackedFactory = new AspectJProxyFactory(new LegacyService());
+        stackedFactory.setProxyTargetClass(true);
+        stackedFactory.addAdvisor(new DynamicDataSourceAnnotationAdvisor(
+                new DynamicDataSourceAnnotationInterceptor(true, null), DS.class));
+        stackedFactory.addAspect(new DSAspect());
+        stacked = stackedFactory.getProxy();
+        AspectJProxyFactory unifiedFactory = new AspectJProxyFactory(new LegacyService());
+        unifiedFactory.setProxyTargetClass(true);
+        unifiedFactory.addAspect(new DSAspect());
+        unified = unifiedFactory.getProxy();
+    }
+
+    @Benchmark
+    public String directCall() {
+        return direct.fixed();
+    }
+
+    @Benchmark
+    public String fixedKey() {
+        return proxy.fixed();
+    }
+
+    @Benchmark
+    public String entityKey() {
+        return proxy.byEntity(entity);
+    }
+
+    @Benchmark
+    public String spelKey() {
+        return proxy.bySpel("42");
+    }
+
+    @Benchmark
+    public String stackedInterceptors() {
+        return stacked.fixed();
+    }
+
+    @Benchmark
+    public String unifiedAspect() {
+        return unified.fixed();
+    }
+
+    public static class TenantService {
+
+        @DataSource("42")
+        public String fixed() {
+            return DataSourceContextHolder.peek();
+        }
+
+        @DataSource
+        public String byEntity(DataSourceEntity ds) {
+            return DataSourceContextHolder.peek();
+        }
+
+        @DataSource("#tenantId")
+        public String bySpel(String tenantId) {
+            return DataSourceContextHolder.peek();
+        }
+    }
+
+    /**
+     * 两套注解同时标注，统一前两个拦截器各切换一次各自的上下文
+     */
+    public static class LegacyService {
+
+        @DS("42")
+        @DataSource("42")
+        public String fixed() {
+            return DataSourceContextHolder.peek();
+        }
+    }
+}
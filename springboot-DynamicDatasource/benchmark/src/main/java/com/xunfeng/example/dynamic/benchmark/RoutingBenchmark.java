@@ -0,0 +1,121 @@
+package com.xunfeng.example.dynamic.benchmark;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.metrics.DataSourceRoutingMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 路由热点路径：切换上下文 + getConnection，按路由目标数量分别测量
+ * <p>
+ * baseline为Spring原生AbstractRoutingDataSource的查找，用于对比路由快照、指标记录带来的额外开销；
+ * 每个线程随机选取key，覆盖多线程同时读取路由表的情况，线程数通过-t或{@link BenchmarkRunner}指定。
+ *
+ * @author
+ * @date 2026/10/18 16:00
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoutingBenchmark {
+
+    @Param({"1", "100", "1000", "10000"})
+    public int targets;
+
+    /**
+     * 是否挂载Micrometer指标
+     */
+    @Param({"false", "true"})
+    public boolean instrumented;
+
+    private String[] keys;
+    private DynamicDataSource dynamicDataSource;
+    private AbstractRoutingDataSource baseline;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        DataSource master = new StubDataSource();
+        Map<Object, Object> targetDataSources = new HashMap<>(targets * 2);
+        keys = new String[targets];
+        for (int i = 0; i < targets; i++) {
+            keys[i] = String.valueOf(i + 1);
+            targetDataSources.put(keys[i], new StubDataSource());
+        }
+        dynamicDataSource = new DynamicDataSource(master, targetDataSources);
+        if (instrumented) {
+            dynamicDataSource.setMetrics(new DataSourceRoutingMetrics(new SimpleMeterRegistry(), dynamicDataSource, 100));
+        }
+        baseline = new AbstractRoutingDataSource() {
+            @Override
+            protected Object determineCurrentLookupKey() {
+                return DataSourceContextHolder.peek();
+            }
+        };
+        baseline.setDefaultTargetDataSource(master);
+        baseline.setTargetDataSources(targetDataSources);
+        baseline.afterPropertiesSet();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        DataSourceContextHolder.clear();
+    }
+
+    @Benchmark
+    public Connection dynamicRoute() throws SQLException {
+        return route(dynamicDataSource, randomKey());
+    }
+
+    @Benchmark
+    public Connection dynamicRouteMiss() throws SQLException {
+        return route(dynamicDataSource, "missing");
+    }
+
+    @Benchmark
+    public Connection dynamicRouteDefault() throws SQLException {
+        return dynamicDataSource.getConnection();
+    }
+
+    @Benchmark
+    public Connection baselineRoute() throws SQLException {
+        return route(baseline, randomKey());
+    }
+
+    private String randomKey() {
+        return keys[ThreadLocalRandom.current().nextInt(keys.length)];
+    }
+
+    private static Connection route(DataSource dataSource, String key) throws SQLException {
+        DataSourceContextHolder.push(key);
+        try {
+            return dataSource.getConnection();
+        } finally {
+            DataSourceContextHolder.poll();
+        }
+    }
+}
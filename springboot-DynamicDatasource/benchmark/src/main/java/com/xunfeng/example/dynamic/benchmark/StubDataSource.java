@@ -0,0 +1,38 @@
+package com.xunfeng.example.dynamic.benchmark;
+
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+
+/**
+ * 基准测试用的空数据源，每次返回同一个什么都不做的连接，只测路由本身的开销
+ *
+ * @author
+ * @date 2026/10/18 16:00
+ */
+public class StubDataSource extends AbstractDataSource {
+
+    private static final Connection CONNECTION = (Connection) Proxy.newProxyInstance(
+            StubDataSource.class.getClassLoader(), new Class<?>[]{Connection.class},
+            (proxy, method, args) -> {
+                Class<?> returnType = method.getReturnType();
+                if (returnType == boolean.class) {
+                    return false;
+                }
+                if (returnType == int.class) {
+                    return 0;
+                }
+                return null;
+            });
+
+    @Override
+    public Connection getConnection() {
+        return CONNECTION;
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) {
+        return CONNECTION;
+    }
+}
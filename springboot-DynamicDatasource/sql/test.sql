@@ -46,8 +46,12 @@ CREATE TABLE `sys_user`  (
   PRIMARY KEY (`user_id`) USING BTREE,
   INDEX `user_wx_openid`(`wx_openid`) USING BTREE,
   INDEX `user_qq_openid`(`qq_openid`) USING BTREE,
-  INDEX `user_idx1_username`(`username`) USING BTREE
+  INDEX `user_idx1_username`(`username`) USING BTREE,
+  INDEX `user_idx2_dept_id`(`dept_id`, `user_id`) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_general_ci COMMENT = '用户表' ROW_FORMAT = Dynamic;
+-- 用户分页按user_id游标翻页（user_id > ? order by user_id limit ?），不筛选时直接走主键；
+-- 按部门筛选时走user_idx2_dept_id，已有库执行：
+-- ALTER TABLE `sys_user` ADD INDEX `user_idx2_dept_id`(`dept_id`, `user_id`) USING BTREE;
 
 -- ----------------------------
 -- Records of sys_user
@@ -78,13 +82,16 @@ CREATE TABLE `data_source`  (
   `update_by` varchar(64) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL DEFAULT '' COMMENT '更新者',
   `update_time` datetime NULL DEFAULT NULL COMMENT '更新时间',
   `remark` varchar(5000) CHARACTER SET utf8mb4 COLLATE utf8mb4_bin NULL DEFAULT NULL COMMENT '备注',
-  PRIMARY KEY (`id`) USING BTREE
+  `primary_id` bigint NULL DEFAULT NULL COMMENT '所属主库数据源id，为空表示该数据源是主库',
+  `weight` int NULL DEFAULT 1 COMMENT '从库读权重',
+  PRIMARY KEY (`id`) USING BTREE,
+  INDEX `data_source_idx1_primary_id`(`primary_id`) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 3 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_bin COMMENT = '数据源管理表' ROW_FORMAT = DYNAMIC;
 
 -- ----------------------------
 -- Records of data_source
 -- ----------------------------
-INSERT INTO `data_source` VALUES (1, NULL, 'com.mysql.cj.jdbc.Driver', 'jdbc:mysql://192.168.252.15:3306/AIGC?useUnicode=true&characterEncoding=utf8&zeroDateTimeBehavior=convertToNull&useSSL=true&serverTimezone=GMT%2B8&allowMultiQueries=true&useInformationSchema=true', '银行业务数据库', '192.168.252.15', 3306, 'hithium', 'Hithium@Dev2024', NULL, NULL, NULL, '0', '', NULL, '', NULL, NULL);
-INSERT INTO `data_source` VALUES (2, NULL, 'org.postgresql.Driver', 'jdbc:postgresql://127.0.0.1:5432/test_db', 'openGauss数据库', '127.0.0.1', 5432, 'gaussdb', 'Enmo@123', NULL, NULL, NULL, '0', '', NULL, '', NULL, NULL);
+INSERT INTO `data_source` VALUES (1, NULL, 'com.mysql.cj.jdbc.Driver', 'jdbc:mysql://192.168.252.15:3306/AIGC?useUnicode=true&characterEncoding=utf8&zeroDateTimeBehavior=convertToNull&useSSL=true&serverTimezone=GMT%2B8&allowMultiQueries=true&useInformationSchema=true', '银行业务数据库', '192.168.252.15', 3306, 'hithium', 'Hithium@Dev2024', NULL, NULL, NULL, '0', '', NULL, '', NULL, NULL, NULL, 1);
+INSERT INTO `data_source` VALUES (2, NULL, 'org.postgresql.Driver', 'jdbc:postgresql://127.0.0.1:5432/test_db', 'openGauss数据库', '127.0.0.1', 5432, 'gaussdb', 'Enmo@123', NULL, NULL, NULL, '0', '', NULL, '', NULL, NULL, NULL, 1);
 
 SET FOREIGN_KEY_CHECKS = 1;
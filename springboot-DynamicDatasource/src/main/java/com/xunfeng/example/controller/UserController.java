@@ -1,16 +1,33 @@
 package com.xunfeng.example.controller;
 
-import com.baomidou.dynamic.datasource.annotation.DS;
-import com.baomidou.dynamic.datasource.toolkit.DynamicDataSourceContextHolder;
 import com.xunfeng.example.domain.entity.SysUser;
+import com.xunfeng.example.dynamic.tenant.TenantRoutingFilter;
 import com.xunfeng.example.mapper.SysUserMapper;
+import com.xunfeng.example.service.SysUserExporter;
+import com.xunfeng.example.service.SysUserLoader;
+import com.xunfeng.example.service.SysUserPager;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import javax.annotation.Resource;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
+ * 租户由{@link TenantRoutingFilter}解析（路径 /user/{dsId}/...、请求头或子域名），
+ * 控制器从请求属性取数据源key，不再自行切换数据源
+ *
  * @author
  * @date 2024/8/5 10:27
  */
@@ -19,18 +36,80 @@ import org.springframework.web.bind.annotation.RestController;
 public class UserController {
     @Autowired
     private SysUserMapper sysUserMapper;
+    @Resource
+    private SysUserLoader sysUserLoader;
+    @Resource
+    private SysUserExporter sysUserExporter;
+    @Resource
+    private SysUserPager sysUserPager;
 
+    /**
+     * 同一用户的并发请求共享一次查询，不同用户短时间内合并为一次批量查询
+     */
     @GetMapping("/{dsId}/{userId}")
-    public String getUser(@PathVariable("dsId") String dsId, @PathVariable("userId") Long userId) {
-        DynamicDataSourceContextHolder.push(dsId.toString());
-        SysUser sysUser = sysUserMapper.selectById(userId);
-        return sysUser.toString();
+    public CompletableFuture<String> getUser(@RequestAttribute(TenantRoutingFilter.TENANT_ATTRIBUTE) String dsKey,
+                                             @PathVariable("userId") Long userId) {
+        return sysUserLoader.load(dsKey, userId).thenApply(String::valueOf);
+    }
+
+    /**
+     * 批量查询，如 /user/1/batch?ids=1,2,3
+     */
+    @GetMapping("/{dsId}/batch")
+    public CompletableFuture<Map<Long, SysUser>> getUsers(
+            @RequestAttribute(TenantRoutingFilter.TENANT_ATTRIBUTE) String dsKey,
+            @RequestParam("ids") List<Long> ids) {
+        return sysUserLoader.loadMany(dsKey, ids);
+    }
+
+    /**
+     * 游标分页，如 /user/1/page?size=50，下一页带上返回的nextCursor：/user/1/page?size=50&cursor=xxx
+     * <p>
+     * 可按部门筛选（deptId），翻页过程中筛选条件需保持不变。
+     */
+    @GetMapping("/{dsId}/page")
+    public SysUserPager.CursorPage page(@RequestAttribute(TenantRoutingFilter.TENANT_ATTRIBUTE) String dsKey,
+                                        @RequestParam(value = "deptId", required = false) Long deptId,
+                                        @RequestParam(value = "cursor", required = false) String cursor,
+                                        @RequestParam(value = "size", defaultValue = "" + SysUserPager.DEFAULT_SIZE) int size) {
+        try {
+            return sysUserPager.page(dsKey, deptId, cursor, size);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    /**
+     * 流式导出租户全部用户，如 /user/1/export?format=csv，格式支持ndjson（默认）、csv
+     * <p>
+     * 在请求线程内边读边写，不受异步请求超时限制；客户端断开后停止读取。
+     */
+    @GetMapping("/{dsId}/export")
+    public void export(@RequestAttribute(TenantRoutingFilter.TENANT_ATTRIBUTE) String dsKey,
+                       @RequestParam(value = "format", defaultValue = "ndjson") String format,
+                       HttpServletResponse response) throws IOException {
+        SysUserExporter.Format exportFormat;
+        try {
+            exportFormat = SysUserExporter.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "不支持的导出格式:" + format);
+        }
+        boolean csv = exportFormat == SysUserExporter.Format.CSV;
+        response.setContentType(csv ? "text/csv;charset=UTF-8" : "application/x-ndjson;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=sys_user-" + dsKey + (csv ? ".csv" : ".ndjson"));
+        try {
+            sysUserExporter.export(dsKey, exportFormat, response.getOutputStream());
+        } catch (IllegalArgumentException e) {
+            response.reset();
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, e.getMessage());
+        }
     }
 
+    /**
+     * 租户由请求头或子域名指定，如 /user/1 -H "X-Tenant-Id: 3"
+     */
     @GetMapping("/{userId}")
-    @DS("master")
-    public String getUserDS(@PathVariable("dsId") String dsId, @PathVariable("userId") Long userId) {
-        DynamicDataSourceContextHolder.push(dsId.toString());
+    public String getUserDS(@PathVariable("userId") Long userId) {
         SysUser sysUser = sysUserMapper.selectById(userId);
         return sysUser.toString();
     }
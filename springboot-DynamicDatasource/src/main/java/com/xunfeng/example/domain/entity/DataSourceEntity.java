@@ -91,5 +91,13 @@ public class DataSourceEntity implements Serializable {
 	 * 备注
 	 */
 	private String remark;
+	/**
+	 * 所属主库数据源id，为空表示该数据源是主库
+	 */
+	private Long primaryId;
+	/**
+	 * 从库读权重
+	 */
+	private Integer weight;
 
 }
@@ -1,38 +1,138 @@
 package com.xunfeng.example.dynamic;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+
 /**
+ * 数据源上下文
+ * <p>
+ * 以栈的形式保存当前线程的数据源key：嵌套切换时push，退出时poll恢复外层，栈空时清除线程变量。
+ * 提交到线程池的任务可通过{@link #wrap(Runnable)}携带提交线程的上下文执行。
+ * 栈默认保存在线程变量中，可通过{@link #setStorage(DataSourceContextStorage)}替换存放方式。
+ *
  * @author 
  * @date 2024/6/17 14:20
  */
 public class DataSourceContextHolder {
     /**
-     * 此类提供线程局部变量。这些变量不同于它们的正常对应关系是每个线程访问一个线程(通过get、set方法),有自己的独立初始化变量的副本。
+     * 数据源栈的存放位置，默认为线程局部变量：每个线程(通过get、set方法)访问自己独立的副本。
+     */
+    private static volatile DataSourceContextStorage contextStorage = new ThreadLocalContextStorage();
+
+    public static DataSourceContextStorage getStorage() {
+        return contextStorage;
+    }
+
+    /**
+     * 替换数据源栈的存放位置，应在处理请求之前设置，替换前已设置的上下文不会迁移
      */
-    private static final ThreadLocal<String> DATASOURCE_HOLDER = new ThreadLocal<>();
+    public static void setStorage(DataSourceContextStorage storage) {
+        contextStorage = storage;
+    }
 
     /**
-     * 设置数据源
+     * 切换数据源，压入栈顶
      *
      * @param dataSourceName 数据源名称
      */
-    public static void setDataSource(String dataSourceName) {
-        DATASOURCE_HOLDER.set(dataSourceName);
+    public static void push(String dataSourceName) {
+        DataSourceContextStorage storage = contextStorage;
+        Deque<String> stack = storage.get();
+        if (stack == null) {
+            stack = new ArrayDeque<>();
+            storage.set(stack);
+        }
+        stack.push(dataSourceName);
     }
 
     /**
      * 获取当前线程的数据源
      *
-     * @return 数据源名称
+     * @return 数据源名称，未设置时返回null
+     */
+    public static String peek() {
+        Deque<String> stack = contextStorage.get();
+        return stack == null ? null : stack.peek();
+    }
+
+    /**
+     * 退出当前数据源，恢复外层数据源；栈空时清除线程变量，避免线程池线程残留
+     */
+    public static void poll() {
+        DataSourceContextStorage storage = contextStorage;
+        Deque<String> stack = storage.get();
+        if (stack == null) {
+            return;
+        }
+        stack.poll();
+        if (stack.isEmpty()) {
+            storage.remove();
+        }
+    }
+
+    /**
+     * 清空当前线程的数据源
+     */
+    public static void clear() {
+        contextStorage.remove();
+    }
+
+    /**
+     * 复制当前线程的数据源栈
+     *
+     * @return 数据源栈的副本，未设置时返回null
+     */
+    public static Deque<String> capture() {
+        Deque<String> stack = contextStorage.get();
+        return stack == null || stack.isEmpty() ? null : new ArrayDeque<>(stack);
+    }
+
+    /**
+     * 用指定的数据源栈替换当前线程的数据源栈
+     *
+     * @param context {@link #capture()}得到的副本，null表示清空
+     * @return 替换前的数据源栈，用于执行完成后恢复
+     */
+    public static Deque<String> replace(Deque<String> context) {
+        DataSourceContextStorage storage = contextStorage;
+        Deque<String> previous = storage.get();
+        if (context == null) {
+            storage.remove();
+        } else {
+            storage.set(new ArrayDeque<>(context));
+        }
+        return previous;
+    }
+
+    /**
+     * 包装任务，使其在执行线程上使用提交时的数据源上下文
      */
-    public static String getDataSource() {
-        return DATASOURCE_HOLDER.get();
+    public static Runnable wrap(Runnable task) {
+        Deque<String> captured = capture();
+        return () -> {
+            Deque<String> previous = replace(captured);
+            try {
+                task.run();
+            } finally {
+                replace(previous);
+            }
+        };
     }
 
     /**
-     * 删除当前数据源
+     * 包装任务，使其在执行线程上使用提交时的数据源上下文
      */
-    public static void removeDataSource() {
-        DATASOURCE_HOLDER.remove();
+    public static <V> Callable<V> wrap(Callable<V> task) {
+        Deque<String> captured = capture();
+        return () -> {
+            Deque<String> previous = replace(captured);
+            try {
+                return task.call();
+            } finally {
+                replace(previous);
+            }
+        };
     }
 
 }
@@ -0,0 +1,27 @@
+package com.xunfeng.example.dynamic;
+
+import java.util.Deque;
+
+/**
+ * 数据源栈的存放位置，默认为线程变量，JDK 21下可切换为按请求绑定的ScopedValue
+ *
+ * @author
+ * @date 2026/10/19 10:00
+ */
+public interface DataSourceContextStorage {
+
+    /**
+     * @return 当前的数据源栈，未设置时返回null
+     */
+    Deque<String> get();
+
+    /**
+     * 设置当前的数据源栈
+     */
+    void set(Deque<String> stack);
+
+    /**
+     * 清除当前的数据源栈
+     */
+    void remove();
+}
@@ -1,78 +1,330 @@
 package com.xunfeng.example.dynamic;
 
-import com.alibaba.druid.pool.DruidDataSource;
-import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
-import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.affinity.ConnectionAffinity;
+import com.xunfeng.example.dynamic.group.LoadBalanceStrategy;
+import com.xunfeng.example.dynamic.group.ReplicaGroup;
+import com.xunfeng.example.dynamic.group.RoundRobinStrategy;
+import com.xunfeng.example.dynamic.health.DataSourceHealthChecker;
+import com.xunfeng.example.dynamic.health.HealthState;
+import com.xunfeng.example.dynamic.metrics.DataSourceRoutingMetrics;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.BeanUtils;
 import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.sql.DataSource;
-import java.sql.DriverManager;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
- * @author 
+ * 动态数据源
+ * <p>
+ * 路由表采用写时复制：每次增删改都基于当前快照复制出一份新的不可变Map，再通过原子引用整体发布。
+ * 查询路径（determineTargetDataSource）只做一次volatile读和一次HashMap查找，不加锁、不等待，
+ * 不会看到构建了一半的路由表；也不再依赖afterPropertiesSet()重新解析全部数据源。
+ * <p>
+ * 配置了健康检查时，状态为DOWN的数据源在获取连接前直接失败（或切换到配置的备用数据源），
+ * 获取连接失败也会反馈给健康检查，实现熔断。
+ * <p>
+ * 配置了读写分离数据源组时，事务外的只读查询（见{@link ReadWriteContextHolder}）按负载均衡策略
+ * 路由到该组的从库，写语句和事务内的查询始终使用主库。
+ * <p>
+ * 开启连接亲和时，同一请求内对同一路由key的多次获取连接复用同一条连接，见{@link ConnectionAffinity}。
+ *
+ * @author
  * @date 2024/6/17 14:19
  */
 @Slf4j
 public class DynamicDataSource extends AbstractRoutingDataSource {
-    private final static Map<Object, Object> targetDataSourceMap = new HashMap<>();
+    /**
+     * 默认数据源的key
+     */
+    public static final String MASTER = "master";
+
+    /**
+     * 当前线程最近一次借出连接时实际路由到的key（含从库选择、熔断切换），供SQL统计归属
+     */
+    private static final ThreadLocal<String> LAST_ROUTE_KEY = new ThreadLocal<>();
+
+    /**
+     * 当前生效的路由快照，key统一为字符串，value为不可变Map
+     */
+    private final AtomicReference<Map<String, DataSource>> routeSnapshot;
+
+    private final DataSource defaultDataSource;
+
+    /**
+     * 读写分离数据源组快照：主库key -> 数据源组，同样写时复制
+     */
+    private final AtomicReference<Map<String, ReplicaGroup>> replicaGroups =
+            new AtomicReference<>(Collections.emptyMap());
+
+    private volatile LoadBalanceStrategy loadBalanceStrategy = new RoundRobinStrategy();
+
+    private volatile DataSourceHealthChecker healthChecker;
+
+    private volatile DataSourceRoutingMetrics metrics;
 
     public DynamicDataSource(DataSource defaultDataSource, Map<Object, Object> targetDataSources) {
         super.setDefaultTargetDataSource(defaultDataSource);
         super.setTargetDataSources(targetDataSources);
-        targetDataSourceMap.put("master", defaultDataSource);
-//        targetDataSourceMap = targetDataSources;
+        this.defaultDataSource = defaultDataSource;
+        Map<String, DataSource> initial = new HashMap<>();
+        targetDataSources.forEach((key, value) -> initial.put(String.valueOf(key), (DataSource) value));
+        initial.put(MASTER, defaultDataSource);
+        this.routeSnapshot = new AtomicReference<>(Collections.unmodifiableMap(initial));
     }
 
+    /**
+     * 只读取栈顶的数据源key，不清除，同一方法内多次访问数据库保持一致，由切换方负责poll
+     */
     @Override
     protected Object determineCurrentLookupKey() {
-        String dataSource = DataSourceContextHolder.getDataSource();
-        DataSourceContextHolder.removeDataSource();
-        return dataSource;
+        return DataSourceContextHolder.peek();
+    }
+
+    /**
+     * 直接查询路由快照，找不到对应key时回退到默认数据源
+     */
+    @Override
+    protected DataSource determineTargetDataSource() {
+        Map<String, DataSource> targets = routeSnapshot.get();
+        return targets.get(determineRouteKey(targets));
+    }
+
+    /**
+     * 解析本次路由的key，未设置或不存在时返回默认数据源的key
+     *
+     * @param targets 本次路由使用的快照，key与数据源从同一份快照中取
+     */
+    private String determineRouteKey(Map<String, DataSource> targets) {
+        Object lookupKey = determineCurrentLookupKey();
+        DataSourceRoutingMetrics routingMetrics = this.metrics;
+        String routeKey = MASTER;
+        if (lookupKey != null) {
+            if (targets.containsKey(lookupKey.toString())) {
+                routeKey = lookupKey.toString();
+            } else if (routingMetrics != null) {
+                routingMetrics.recordFallback();
+            }
+        }
+        if (routingMetrics != null) {
+            routingMetrics.recordLookup(routeKey);
+        }
+        return routeKey;
+    }
+
+    /**
+     * 不借连接，解析当前上下文实际会路由到的数据源key，不含读写分离的从库选择，不计入路由统计
+     *
+     * @return 数据源key；目标已熔断（会切换备用数据源或直接失败）时返回null
+     */
+    public String resolveRouteKey() {
+        Object lookupKey = determineCurrentLookupKey();
+        String routeKey = lookupKey != null && routeSnapshot.get().containsKey(lookupKey.toString())
+                ? lookupKey.toString() : MASTER;
+        DataSourceHealthChecker checker = this.healthChecker;
+        return checker != null && checker.getState(routeKey) == HealthState.DOWN ? null : routeKey;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return borrow(ConnectionAffinity::getConnection);
+    }
+
+    /**
+     * 带账号密码借连接，与无参借连接走相同的路由、从库选择、熔断和统计，只是不复用请求内的连接
+     */
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return borrow((routeKey, target) -> target.getConnection(username, password));
+    }
+
+    /**
+     * 解析路由key并从目标数据源借出连接
+     */
+    private Connection borrow(Borrower borrower) throws SQLException {
+        Map<String, DataSource> targets = routeSnapshot.get();
+        String routeKey = determineRouteKey(targets);
+        if (ReadWriteContextHolder.isRead() && !TransactionSynchronizationManager.isActualTransactionActive()) {
+            routeKey = selectReplica(routeKey, targets);
+        }
+        DataSourceHealthChecker checker = this.healthChecker;
+        DataSourceRoutingMetrics routingMetrics = this.metrics;
+        if (checker != null) {
+            // DOWN状态直接失败或切换备用数据源，不占用请求线程等待超时
+            try {
+                routeKey = checker.admit(routeKey);
+            } catch (SQLException e) {
+                if (routingMetrics != null) {
+                    routingMetrics.recordRejection();
+                }
+                throw e;
+            }
+        }
+        long start = routingMetrics == null ? 0 : System.nanoTime();
+        try {
+            DataSource target = targets.get(routeKey);
+            if (target == null) {
+                // 熔断切换到的备用数据源可能晚于本次快照加入
+                target = routeSnapshot.get().get(routeKey);
+            }
+            if (target == null) {
+                // 解析之后数据源被移除（重新加载等），不是数据库不可达，不计入熔断
+                throw new SQLException("数据源不存在:" + routeKey);
+            }
+            Connection connection = borrower.borrow(routeKey, target);
+            LAST_ROUTE_KEY.set(routeKey);
+            if (checker != null) {
+                checker.recordSuccess(routeKey);
+            }
+            if (routingMetrics != null) {
+                routingMetrics.recordBorrow(routeKey, System.nanoTime() - start, true);
+            }
+            return connection;
+        } catch (SQLException e) {
+            if (checker != null) {
+                checker.recordFailure(routeKey, e);
+            }
+            if (routingMetrics != null) {
+                routingMetrics.recordBorrow(routeKey, System.nanoTime() - start, false);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 为只读查询选择从库，没有数据源组或从库全部不可用时仍使用主库
+     */
+    private String selectReplica(String primaryKey, Map<String, DataSource> targets) {
+        ReplicaGroup group = replicaGroups.get().get(primaryKey);
+        if (group == null || group.getReplicas().isEmpty()) {
+            return primaryKey;
+        }
+        DataSourceHealthChecker checker = this.healthChecker;
+        List<ReplicaGroup.Replica> candidates = group.getReplicas();
+        for (ReplicaGroup.Replica replica : candidates) {
+            if (!targets.containsKey(replica.getKey())
+                    || (checker != null && checker.getState(replica.getKey()) == HealthState.DOWN)) {
+                candidates = availableReplicas(group, targets, checker);
+                break;
+            }
+        }
+        if (candidates.isEmpty()) {
+            return primaryKey;
+        }
+        return loadBalanceStrategy.select(group, candidates, targets).getKey();
+    }
+
+    private static List<ReplicaGroup.Replica> availableReplicas(ReplicaGroup group, Map<String, DataSource> targets,
+                                                                DataSourceHealthChecker checker) {
+        List<ReplicaGroup.Replica> available = new ArrayList<>(group.getReplicas().size());
+        for (ReplicaGroup.Replica replica : group.getReplicas()) {
+            if (targets.containsKey(replica.getKey())
+                    && (checker == null || checker.getState(replica.getKey()) != HealthState.DOWN)) {
+                available.add(replica);
+            }
+        }
+        return available;
+    }
+
+
+    /**
+     * 添加数据源，key已存在时不覆盖
+     *
+     * @param key        数据源key
+     * @param dataSource 数据源
+     * @return true：添加成功，false：key已存在
+     */
+    public boolean addDataSource(Object key, DataSource dataSource) {
+        String routeKey = String.valueOf(key);
+        Objects.requireNonNull(dataSource, "dataSource");
+        while (true) {
+            Map<String, DataSource> current = routeSnapshot.get();
+            if (current.containsKey(routeKey)) {
+                return false;
+            }
+            Map<String, DataSource> next = new HashMap<>(current);
+            next.put(routeKey, dataSource);
+            if (routeSnapshot.compareAndSet(current, Collections.unmodifiableMap(next))) {
+                log.info("---添加数据源---:{}", routeKey);
+                return true;
+            }
+        }
     }
 
     /**
-     * 添加数据源信息
+     * 批量添加或替换数据源，整批只复制并发布一次快照
      *
-     * @param dataSources 数据源实体集合
-     * @return 返回添加结果
-     */
-    public Boolean createDataSource(List<DataSourceEntity> dataSources) {
-        if (CollectionUtils.isNotEmpty(dataSources)) {
-            for (DataSourceEntity ds : dataSources) {
-                try {
-                    //校验数据库是否可以连接
-                    Class.forName(ds.getDriverClassName());
-                    DriverManager.getConnection(ds.getUrl(), ds.getUsername(), ds.getPassword());
-                    //定义数据源
-                    DruidDataSource dataSource = new DruidDataSource();
-                    BeanUtils.copyProperties(ds, dataSource);
-                    //申请连接时执行validationQuery检测连接是否有效，这里建议配置为TRUE，防止取到的连接不可用
-                    dataSource.setTestOnBorrow(true);
-                    //建议配置为true，不影响性能，并且保证安全性。
-                    //申请连接的时候检测，如果空闲时间大于timeBetweenEvictionRunsMillis，执行validationQuery检测连接是否有效。
-                    dataSource.setTestWhileIdle(true);
-                    //用来检测连接是否有效的sql，要求是一个查询语句。
-                    dataSource.setValidationQuery("select 1 ");
-                    dataSource.init();
-                    this.targetDataSourceMap.put(ds.getId(), dataSource);
-                } catch (ClassNotFoundException | SQLException e) {
-                    log.error("---数据源初始化错误---:{}", e.getMessage());
+     * @param dataSources key -> 数据源
+     * @return 被替换下来的旧数据源，由调用方负责关闭
+     */
+    public Map<String, DataSource> putDataSources(Map<?, ? extends DataSource> dataSources) {
+        if (dataSources.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        while (true) {
+            Map<String, DataSource> current = routeSnapshot.get();
+            Map<String, DataSource> next = new HashMap<>(current);
+            Map<String, DataSource> replaced = new LinkedHashMap<>();
+            dataSources.forEach((key, value) -> {
+                String routeKey = String.valueOf(key);
+                if (MASTER.equals(routeKey)) {
+                    throw new IllegalArgumentException("默认数据源不允许替换");
+                }
+                DataSource old = next.put(routeKey, Objects.requireNonNull(value, "dataSource"));
+                if (old != null && old != value) {
+                    replaced.put(routeKey, old);
                 }
+            });
+            if (routeSnapshot.compareAndSet(current, Collections.unmodifiableMap(next))) {
+                return replaced;
             }
-            super.setTargetDataSources(targetDataSourceMap);
-            // 将TargetDataSources中的连接信息放入resolvedDataSources管理
-            super.afterPropertiesSet();
-            return Boolean.TRUE;
         }
+    }
+
+    /**
+     * 替换数据源，key不存在时直接添加
+     *
+     * @param key        数据源key
+     * @param dataSource 新数据源
+     * @return 被替换下来的旧数据源，不存在时返回null，由调用方负责关闭
+     */
+    public DataSource replaceDataSource(Object key, DataSource dataSource) {
+        return putDataSources(Collections.singletonMap(key, dataSource)).get(String.valueOf(key));
+    }
 
-        return Boolean.FALSE;
+    /**
+     * 移除数据源，默认数据源不允许移除
+     *
+     * @param key 数据源key
+     * @return 被移除的数据源，不存在时返回null，由调用方负责关闭
+     */
+    public DataSource removeDataSource(Object key) {
+        String routeKey = String.valueOf(key);
+        if (MASTER.equals(routeKey)) {
+            throw new IllegalArgumentException("默认数据源不允许移除");
+        }
+        while (true) {
+            Map<String, DataSource> current = routeSnapshot.get();
+            DataSource old = current.get(routeKey);
+            if (old == null) {
+                return null;
+            }
+            Map<String, DataSource> next = new HashMap<>(current);
+            next.remove(routeKey);
+            if (routeSnapshot.compareAndSet(current, Collections.unmodifiableMap(next))) {
+                log.info("---移除数据源---:{}", routeKey);
+                return old;
+            }
+        }
     }
 
     /**
@@ -81,12 +333,79 @@ public class DynamicDataSource extends AbstractRoutingDataSource {
      * @param key 数据源保存的key
      * @return 返回结果，true：存在，false：不存在
      */
-    public static boolean existsDataSource(Long key) {
-        return Objects.nonNull(targetDataSourceMap.get(key));
+    public boolean existsDataSource(Object key) {
+        return key != null && routeSnapshot.get().containsKey(key.toString());
+    }
+
+    /**
+     * 当前线程最近一次借出连接的数据源key
+     * <p>
+     * 事务内的语句使用事务开始时借出的连接，期间若有REQUIRES_NEW等另借了连接，恢复外层事务后
+     * 这里仍是内层的key，只用于统计归属，不用于路由。
+     *
+     * @return 数据源key，当前线程未借出过连接或已清除时返回null
+     */
+    public static String getLastRouteKey() {
+        return LAST_ROUTE_KEY.get();
+    }
+
+    /**
+     * 清除当前线程记录的路由key，语句或事务结束时调用，避免线程池线程带着旧值
+     */
+    public static void clearLastRouteKey() {
+        LAST_ROUTE_KEY.remove();
+    }
+
+    /**
+     * 获取当前路由快照（只读）
+     */
+    public Map<String, DataSource> getTargetDataSourceMap() {
+        return routeSnapshot.get();
+    }
+
+    /**
+     * 整体替换读写分离数据源组
+     *
+     * @param groups 主库key -> 数据源组
+     */
+    public void setReplicaGroups(Map<String, ReplicaGroup> groups) {
+        replicaGroups.set(Collections.unmodifiableMap(new HashMap<>(groups)));
+    }
+
+    public Map<String, ReplicaGroup> getReplicaGroups() {
+        return replicaGroups.get();
+    }
+
+    public void setLoadBalanceStrategy(LoadBalanceStrategy loadBalanceStrategy) {
+        this.loadBalanceStrategy = Objects.requireNonNull(loadBalanceStrategy, "loadBalanceStrategy");
+    }
+
+    public void setMetrics(DataSourceRoutingMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    public void setHealthChecker(DataSourceHealthChecker healthChecker) {
+        this.healthChecker = healthChecker;
     }
 
-    public static Map<Object, Object> getTargetDataSourceMap() {
-        return targetDataSourceMap;
+    /**
+     * 关闭数据源，非连接池实现直接忽略
+     */
+    public static void closeQuietly(DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) dataSource).close();
+            } catch (Exception e) {
+                log.warn("---数据源关闭失败---:{}", e.getMessage());
+            }
+        }
     }
 
+    /**
+     * 从选定的数据源借出连接
+     */
+    @FunctionalInterface
+    private interface Borrower {
+        Connection borrow(String routeKey, DataSource target) throws SQLException;
+    }
 }
@@ -1,11 +1,54 @@
 package com.xunfeng.example.dynamic;
 
 import com.alibaba.druid.spring.boot.autoconfigure.DruidDataSourceBuilder;
+import com.xunfeng.example.dynamic.affinity.ConnectionAffinityFilter;
+import com.xunfeng.example.dynamic.cache.QueryCacheEndpoint;
+import com.xunfeng.example.dynamic.cache.TenantCacheInterceptor;
+import com.xunfeng.example.dynamic.group.LeastActiveStrategy;
+import com.xunfeng.example.dynamic.group.LoadBalanceStrategy;
+import com.xunfeng.example.dynamic.group.RoundRobinStrategy;
+import com.xunfeng.example.dynamic.group.WeightedStrategy;
+import com.xunfeng.example.dynamic.health.DataSourceHealthChecker;
+import com.xunfeng.example.dynamic.health.WarmupHealthIndicator;
+import com.xunfeng.example.dynamic.init.DataSourceBootstrapper;
+import com.xunfeng.example.dynamic.init.DataSourceReloader;
+import com.xunfeng.example.dynamic.init.DataSourceWarmer;
+import com.xunfeng.example.dynamic.interceptor.ReadWriteSplitInterceptor;
+import com.xunfeng.example.dynamic.interceptor.StatementAwareInterceptor;
+import com.xunfeng.example.dynamic.metrics.DataSourceRoutingMetrics;
+import com.xunfeng.example.dynamic.metrics.DataSourcesEndpoint;
+import com.xunfeng.example.dynamic.metrics.PoolAutotuneEndpoint;
+import com.xunfeng.example.dynamic.propagation.DataSourceContextTaskDecorator;
+import com.xunfeng.example.dynamic.scatter.ScatterGatherService;
+import com.xunfeng.example.dynamic.scatter.ScatterQueryTimeoutInterceptor;
+import com.xunfeng.example.dynamic.sqlstats.SqlStatsCollector;
+import com.xunfeng.example.dynamic.sqlstats.SqlStatsEndpoint;
+import com.xunfeng.example.dynamic.sqlstats.SqlStatsInterceptor;
+import com.xunfeng.example.dynamic.tenant.TenantRoutingFilter;
+import com.xunfeng.example.dynamic.vthread.VirtualThreadSupport;
+import io.micrometer.core.instrument.MeterRegistry;
+import com.xunfeng.example.dynamic.pool.PoolAutotuner;
+import com.xunfeng.example.dynamic.pool.PoolDrainer;
+import com.xunfeng.example.dynamic.pool.SharedPoolRegistry;
+import com.xunfeng.example.dynamic.pool.TenantPoolManager;
+import com.xunfeng.example.mapper.DataSourceMapper;
+import org.apache.coyote.ProtocolHandler;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.task.TaskDecorator;
 
+import javax.servlet.Filter;
 import javax.sql.DataSource;
 import java.util.HashMap;
 import java.util.Map;
@@ -15,6 +58,7 @@ import java.util.Map;
  * @date 2024/6/17 14:54
  */
 @Configuration
+@EnableConfigurationProperties(DynamicDataSourceProperties.class)
 public class DynamicDataSourceConfig {
     @Bean
     @ConfigurationProperties("spring.datasource.dynamic.datasource.master")
@@ -23,10 +67,234 @@ public class DynamicDataSourceConfig {
     }
     @Bean(name = "anotherDynamicDataSource")
     @Primary
-    public DynamicDataSource dataSource() {
+    public DynamicDataSource dataSource(ObjectProvider<LoadBalanceStrategy> loadBalanceStrategy) {
         Map<Object,Object> dataSourceMap = new HashMap<>();
         DataSource defaultDataSource = masterDataSource();
         dataSourceMap.put("master",defaultDataSource);
-        return new DynamicDataSource(defaultDataSource,dataSourceMap);
+        DynamicDataSource dynamicDataSource = new DynamicDataSource(defaultDataSource, dataSourceMap);
+        loadBalanceStrategy.ifAvailable(dynamicDataSource::setLoadBalanceStrategy);
+        return dynamicDataSource;
+    }
+
+    @Bean
+    public TenantDataSourceFactory tenantDataSourceFactory(DynamicDataSourceProperties properties) {
+        return new TenantDataSourceFactory(properties);
+    }
+
+    @Bean
+    public TenantPoolManager tenantPoolManager(DynamicDataSourceProperties properties,
+                                               TenantDataSourceFactory tenantDataSourceFactory) {
+        return new TenantPoolManager(properties, tenantDataSourceFactory);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.shared-pool", name = "enabled")
+    public SharedPoolRegistry sharedPoolRegistry(TenantDataSourceFactory tenantDataSourceFactory,
+                                                 DynamicDataSourceProperties properties) {
+        return new SharedPoolRegistry(tenantDataSourceFactory, properties);
+    }
+
+    @Bean
+    public PoolDrainer poolDrainer(DynamicDataSourceProperties properties) {
+        return new PoolDrainer(properties.getReload().getDrainTimeoutMillis());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.reload", name = "enabled", matchIfMissing = true)
+    public DataSourceReloader dataSourceReloader(DataSourceMapper dataSourceMapper,
+                                                 DynamicDataSource anotherDynamicDataSource,
+                                                 DataSourceBootstrapper dataSourceBootstrapper,
+                                                 PoolDrainer poolDrainer,
+                                                 DynamicDataSourceProperties properties) {
+        return new DataSourceReloader(dataSourceMapper, anotherDynamicDataSource, dataSourceBootstrapper,
+                poolDrainer, properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.health", name = "enabled", matchIfMissing = true)
+    public DataSourceHealthChecker dataSourceHealthChecker(DynamicDataSource anotherDynamicDataSource,
+                                                           DynamicDataSourceProperties properties) {
+        DataSourceHealthChecker healthChecker = new DataSourceHealthChecker(anotherDynamicDataSource, properties);
+        anotherDynamicDataSource.setHealthChecker(healthChecker);
+        return healthChecker;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.read-write", name = "enabled", matchIfMissing = true)
+    public ReadWriteSplitInterceptor readWriteSplitInterceptor() {
+        return new ReadWriteSplitInterceptor();
+    }
+
+    @Bean
+    public StatementAwareInterceptor statementAwareInterceptor() {
+        return new StatementAwareInterceptor();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.sql-stats", name = "enabled", matchIfMissing = true)
+    public SqlStatsCollector sqlStatsCollector(DynamicDataSourceProperties properties) {
+        return new SqlStatsCollector(properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.sql-stats", name = "enabled", matchIfMissing = true)
+    public SqlStatsInterceptor sqlStatsInterceptor(SqlStatsCollector sqlStatsCollector,
+                                                   DynamicDataSourceProperties properties) {
+        return new SqlStatsInterceptor(sqlStatsCollector, properties.getSqlStats().isIncludeParameters());
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.sql-stats", name = "enabled", matchIfMissing = true)
+    public SqlStatsEndpoint sqlStatsEndpoint(SqlStatsCollector sqlStatsCollector) {
+        return new SqlStatsEndpoint(sqlStatsCollector);
+    }
+
+    @Bean
+    @ConditionalOnMissingBean
+    public LoadBalanceStrategy loadBalanceStrategy(DynamicDataSourceProperties properties) {
+        switch (properties.getReadWrite().getStrategy()) {
+            case WEIGHTED:
+                return new WeightedStrategy();
+            case LEAST_ACTIVE:
+                return new LeastActiveStrategy();
+            default:
+                return new RoundRobinStrategy();
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.metrics", name = "enabled", matchIfMissing = true)
+    public DataSourceRoutingMetrics dataSourceRoutingMetrics(MeterRegistry meterRegistry,
+                                                             DynamicDataSource anotherDynamicDataSource,
+                                                             DynamicDataSourceProperties properties) {
+        DataSourceRoutingMetrics metrics = new DataSourceRoutingMetrics(meterRegistry, anotherDynamicDataSource,
+                properties.getMetrics().getMaxTaggedKeys());
+        anotherDynamicDataSource.setMetrics(metrics);
+        return metrics;
+    }
+
+    @Bean
+    public DataSourcesEndpoint dataSourcesEndpoint(DynamicDataSource anotherDynamicDataSource,
+                                                   ObjectProvider<DataSourceHealthChecker> healthChecker,
+                                                   ObjectProvider<DataSourceBootstrapper> bootstrapper,
+                                                   ObjectProvider<TenantPoolManager> poolManager) {
+        return new DataSourcesEndpoint(anotherDynamicDataSource, healthChecker, bootstrapper, poolManager);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.autotune", name = "enabled", matchIfMissing = true)
+    public PoolAutotuner poolAutotuner(DynamicDataSource anotherDynamicDataSource, TenantPoolManager tenantPoolManager,
+                                       DynamicDataSourceProperties properties) {
+        return new PoolAutotuner(anotherDynamicDataSource, tenantPoolManager, properties);
+    }
+
+    @Bean
+    public PoolAutotuneEndpoint poolAutotuneEndpoint(ObjectProvider<PoolAutotuner> poolAutotuner,
+                                                     ObjectProvider<TenantPoolManager> poolManager) {
+        return new PoolAutotuneEndpoint(poolAutotuner, poolManager);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.warmup", name = "enabled", matchIfMissing = true)
+    public DataSourceWarmer dataSourceWarmer(DynamicDataSource anotherDynamicDataSource,
+                                             ObjectProvider<SqlSessionFactory> sqlSessionFactory,
+                                             DynamicDataSourceProperties properties) {
+        return new DataSourceWarmer(anotherDynamicDataSource, sqlSessionFactory, properties);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.warmup", name = "enabled", matchIfMissing = true)
+    public WarmupHealthIndicator warmupHealthIndicator(DataSourceWarmer dataSourceWarmer) {
+        return new WarmupHealthIndicator(dataSourceWarmer);
+    }
+
+    @Bean
+    public TenantCacheInterceptor tenantCacheInterceptor(DynamicDataSource anotherDynamicDataSource) {
+        return new TenantCacheInterceptor(anotherDynamicDataSource);
+    }
+
+    @Bean
+    public QueryCacheEndpoint queryCacheEndpoint() {
+        return new QueryCacheEndpoint();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.affinity", name = "enabled")
+    public FilterRegistrationBean<ConnectionAffinityFilter> connectionAffinityFilter() {
+        FilterRegistrationBean<ConnectionAffinityFilter> registration =
+                new FilterRegistrationBean<>(new ConnectionAffinityFilter());
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 100);
+        return registration;
+    }
+
+    /**
+     * 在连接亲和等过滤器之前解析租户，未知租户在借连接之前就被拒绝
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.tenant", name = "enabled", matchIfMissing = true)
+    public FilterRegistrationBean<TenantRoutingFilter> tenantRoutingFilter(DynamicDataSource anotherDynamicDataSource,
+                                                                           DynamicDataSourceProperties properties) {
+        FilterRegistrationBean<TenantRoutingFilter> registration =
+                new FilterRegistrationBean<>(new TenantRoutingFilter(anotherDynamicDataSource, properties));
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+
+    /**
+     * 自动配置的applicationTaskExecutor会使用该装饰器，@Async方法与MVC异步请求继承调用方的数据源
+     */
+    @Bean
+    public TaskDecorator dataSourceContextTaskDecorator() {
+        return new DataSourceContextTaskDecorator();
+    }
+
+    @Bean
+    public ScatterGatherService scatterGatherService(DynamicDataSource anotherDynamicDataSource,
+                                                     DynamicDataSourceProperties properties) {
+        return new ScatterGatherService(anotherDynamicDataSource, properties);
+    }
+
+    @Bean
+    public ScatterQueryTimeoutInterceptor scatterQueryTimeoutInterceptor() {
+        return new ScatterQueryTimeoutInterceptor();
+    }
+
+    /**
+     * JDK 21实现按类名加载，见{@link VirtualThreadSupport}；开启scoped-context时请求内的数据源栈改用ScopedValue
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.virtual-threads", name = "enabled")
+    public VirtualThreadSupport virtualThreadSupport(DynamicDataSourceProperties properties) {
+        VirtualThreadSupport support = VirtualThreadSupport.load();
+        if (properties.getVirtualThreads().isScopedContext()) {
+            DataSourceContextHolder.setStorage(support.newContextStorage(DataSourceContextHolder.getStorage()));
+        }
+        return support;
+    }
+
+    /**
+     * Tomcat每个请求一个虚拟线程，max-threads不再限制并发，并发由max-connections和各连接池的maxActive限制
+     */
+    @Bean
+    @ConditionalOnProperty(prefix = "dynamic.routing.virtual-threads", name = "enabled")
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadProtocolHandlerCustomizer(
+            VirtualThreadSupport virtualThreadSupport) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadSupport.newExecutor("tomcat-vt-"));
+    }
+
+    /**
+     * 最先执行，整个请求处理期间绑定数据源栈
+     */
+    @Bean
+    @ConditionalOnExpression("${dynamic.routing.virtual-threads.enabled:false} "
+            + "and ${dynamic.routing.virtual-threads.scoped-context:true}")
+    public FilterRegistrationBean<Filter> dataSourceContextScopeFilter(VirtualThreadSupport virtualThreadSupport) {
+        FilterRegistrationBean<Filter> registration =
+                new FilterRegistrationBean<>(virtualThreadSupport.newContextScopeFilter());
+        registration.addUrlPatterns("/*");
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
     }
 }
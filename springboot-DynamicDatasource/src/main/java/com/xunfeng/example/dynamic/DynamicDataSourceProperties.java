@@ -0,0 +1,462 @@
+package com.xunfeng.example.dynamic;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 手动动态数据源配置
+ *
+ * @author
+ * @date 2026/10/18 10:00
+ */
+@Data
+@ConfigurationProperties(prefix = "dynamic.routing")
+public class DynamicDataSourceProperties {
+
+    /**
+     * 启动加载配置
+     */
+    private Bootstrap bootstrap = new Bootstrap();
+
+    /**
+     * 连接池懒加载配置
+     */
+    private Lazy lazy = new Lazy();
+
+    /**
+     * 健康检查与熔断配置
+     */
+    private Health health = new Health();
+
+    /**
+     * 读写分离配置
+     */
+    private ReadWrite readWrite = new ReadWrite();
+
+    /**
+     * 指标配置
+     */
+    private Metrics metrics = new Metrics();
+
+    /**
+     * 多数据源并行查询配置
+     */
+    private Scatter scatter = new Scatter();
+
+    /**
+     * 数据源表变更热加载配置
+     */
+    private Reload reload = new Reload();
+
+    /**
+     * 同服务器租户共享连接池配置
+     */
+    private SharedPool sharedPool = new SharedPool();
+
+    /**
+     * 按id查询的合并与批量配置
+     */
+    private Loader loader = new Loader();
+
+    /**
+     * 连接池大小自动调整配置
+     */
+    private Autotune autotune = new Autotune();
+
+    /**
+     * 启动预热配置
+     */
+    private Warmup warmup = new Warmup();
+
+    /**
+     * 请求内连接亲和配置
+     */
+    private Affinity affinity = new Affinity();
+
+    /**
+     * 连接校验配置
+     */
+    private Validation validation = new Validation();
+
+    /**
+     * 虚拟线程配置
+     */
+    private VirtualThreads virtualThreads = new VirtualThreads();
+
+    /**
+     * SQL执行统计配置
+     */
+    private SqlStats sqlStats = new SqlStats();
+
+    /**
+     * 租户路由配置
+     */
+    private Tenant tenant = new Tenant();
+
+    @Data
+    public static class Bootstrap {
+        /**
+         * 同时初始化的租户连接池数量
+         */
+        private int concurrency = 8;
+        /**
+         * 单个租户初始化超时时间（毫秒），同时作为驱动建连超时
+         */
+        private int tenantTimeoutMillis = 10000;
+        /**
+         * 租户连接池运行期借连接的最大等待时间（毫秒），与主数据源的max-wait一致
+         */
+        private long poolMaxWaitMillis = 3000;
+        /**
+         * 初始化失败后首次重试的延迟（毫秒），隔离租户的重试线程数与concurrency相同
+         */
+        private long retryInitialDelayMillis = 30000;
+        /**
+         * 重试延迟上限（毫秒），每次失败延迟翻倍直到该值
+         */
+        private long retryMaxDelayMillis = 600000;
+    }
+
+    @Data
+    public static class Lazy {
+        /**
+         * 启动时只注册数据源描述，首次访问时才创建连接池
+         */
+        private boolean enabled = true;
+        /**
+         * 同时存活的租户连接池上限
+         */
+        private int maxLivePools = 200;
+        /**
+         * 所有租户连接池maxActive之和的上限
+         */
+        private int connectionBudget = 2000;
+        /**
+         * 连接池空闲超过该时间（毫秒）后关闭回收
+         */
+        private long idleEvictMillis = 600000;
+        /**
+         * 空闲回收检查间隔（毫秒）
+         */
+        private long evictIntervalMillis = 60000;
+    }
+
+    @Data
+    public static class Health {
+        private boolean enabled = true;
+        /**
+         * 主动探测间隔（毫秒）
+         */
+        private long intervalMillis = 30000;
+        /**
+         * 探测间隔的随机抖动比例，避免大量租户同时探测
+         */
+        private double jitter = 0.2;
+        /**
+         * 单次探测超时时间（毫秒）
+         */
+        private int timeoutMillis = 3000;
+        /**
+         * 同时进行的探测数量
+         */
+        private int probeConcurrency = 4;
+        /**
+         * 连续失败多少次后熔断为DOWN
+         */
+        private int downThreshold = 3;
+        /**
+         * 连续成功多少次后恢复为UP
+         */
+        private int recoveryThreshold = 2;
+        /**
+         * 熔断时的备用数据源：数据源key -> 备用数据源key，未配置则直接失败
+         */
+        private Map<String, String> fallbacks = new HashMap<>();
+    }
+
+    @Data
+    public static class ReadWrite {
+        /**
+         * 事务外的查询路由到从库
+         */
+        private boolean enabled = true;
+        /**
+         * 从库负载均衡策略
+         */
+        private Strategy strategy = Strategy.ROUND_ROBIN;
+    }
+
+    @Data
+    public static class Metrics {
+        private boolean enabled = true;
+        /**
+         * 单独打标签的数据源key数量上限，超出的key统一记为other
+         */
+        private int maxTaggedKeys = 100;
+    }
+
+    @Data
+    public static class Scatter {
+        /**
+         * 并行查询线程数（所有调用共享）
+         */
+        private int threads = 32;
+        /**
+         * 单次调用同时查询的数据源数量
+         */
+        private int parallelism = 8;
+        /**
+         * 单个数据源查询超时时间（毫秒），不含等待调用方消费缓冲的时间
+         */
+        private long tenantTimeoutMillis = 30000;
+        /**
+         * 结果缓冲行数：无序模式整次调用共享，归并模式每个数据源一份；缓冲满时查询线程等待消费
+         */
+        private int bufferSize = 256;
+    }
+
+    @Data
+    public static class Reload {
+        private boolean enabled = true;
+        /**
+         * 按update_time增量检查变更的间隔（毫秒）
+         */
+        private long intervalMillis = 10000;
+        /**
+         * 全量比对的间隔（毫秒），用于发现update_time为空或被物理删除的记录
+         */
+        private long fullSyncIntervalMillis = 300000;
+        /**
+         * 被替换、移除的旧连接池等待借出连接归还的最长时间（毫秒），超时后强制关闭
+         */
+        private long drainTimeoutMillis = 60000;
+    }
+
+    @Data
+    public static class SharedPool {
+        /**
+         * 同一台MySQL服务器、同一账号的租户共用一个连接池，借出连接时切换到租户的库
+         */
+        private boolean enabled = false;
+        /**
+         * 每个共享连接池的最大连接数
+         */
+        private int maxActive = 50;
+        /**
+         * 每个共享连接池的最小空闲连接数
+         */
+        private int minIdle = 2;
+    }
+
+    @Data
+    public static class Loader {
+        /**
+         * 攒批窗口（毫秒），窗口内到达的不同id合并为一次IN查询
+         */
+        private long windowMillis = 2;
+        /**
+         * 单批最多id数，攒满立即查询
+         */
+        private int maxBatchSize = 100;
+        /**
+         * 执行批量查询的线程数
+         */
+        private int threads = 8;
+    }
+
+    @Data
+    public static class Autotune {
+        private boolean enabled = true;
+        /**
+         * 采样间隔（毫秒）
+         */
+        private long intervalMillis = 10000;
+        /**
+         * 所有租户连接池maxActive之和的上限，0表示沿用lazy.connection-budget
+         */
+        private int maxTotalConnections = 0;
+        /**
+         * 单个连接池maxActive的调整范围
+         */
+        private int maxActiveFloor = 2;
+        private int maxActiveCeiling = 50;
+        /**
+         * minIdle上限，minIdle跟随平均借出连接数
+         */
+        private int minIdleCeiling = 10;
+        /**
+         * 出现等待时maxActive的放大倍数
+         */
+        private double growFactor = 1.5;
+        /**
+         * 连续多少次采样平均借出数低于maxActive的1/4后缩小
+         */
+        private int shrinkAfterIdleSamples = 6;
+        /**
+         * 保留的调整记录条数
+         */
+        private int historySize = 200;
+    }
+
+    @Data
+    public static class Warmup {
+        private boolean enabled = true;
+        /**
+         * 需要预热的懒加载租户key，其余懒加载租户首次访问时才建池；存活连接池名额或连接预算不足时跳过，不淘汰已有连接池
+         */
+        private List<String> hotKeys = new ArrayList<>();
+        /**
+         * 预热SQL，含?参数的只预编译不执行
+         */
+        private List<String> statements = new ArrayList<>();
+        /**
+         * 预热的MyBatis映射语句id，取其SQL文本预编译
+         */
+        private List<String> mappedStatements = new ArrayList<>();
+        /**
+         * 每条连接缓存的PreparedStatement数量，0表示不开启PSCache
+         */
+        private int preparedStatementCacheSize = 50;
+        /**
+         * 预热成功的数据源达到该比例后报告就绪，因名额不足跳过的不计入
+         */
+        private double readyRatio = 0.9;
+        /**
+         * 预热失败后首次重试的延迟（毫秒），之后每次翻倍，就绪后不再重试
+         */
+        private long retryInitialDelayMillis = 5000;
+        /**
+         * 预热重试延迟上限（毫秒）
+         */
+        private long retryMaxDelayMillis = 60000;
+    }
+
+    @Data
+    public static class Affinity {
+        /**
+         * 同一请求内对同一数据源复用第一次借出的连接，请求结束时归还
+         */
+        private boolean enabled = false;
+    }
+
+    @Data
+    public static class VirtualThreads {
+        /**
+         * Tomcat用虚拟线程处理请求，需要-Pjdk21构建并在JDK 21上以--enable-preview运行
+         */
+        private boolean enabled = false;
+        /**
+         * 请求内的数据源栈改为绑定到ScopedValue，后台线程仍使用线程变量
+         */
+        private boolean scopedContext = true;
+    }
+
+    @Data
+    public static class SqlStats {
+        private boolean enabled = true;
+        /**
+         * 最多统计的(数据源key, SQL指纹)数量，超出时抽样淘汰累计耗时最少的，新语句继承其累计耗时参与排序
+         */
+        private int maxStatements = 1000;
+        /**
+         * 缓存指纹的SQL原文数量
+         */
+        private int fingerprintCacheSize = 2000;
+        /**
+         * 执行耗时超过该值（毫秒）记为慢SQL
+         */
+        private long slowThresholdMillis = 1000;
+        /**
+         * 保留最近的慢SQL样本数量
+         */
+        private int slowSamples = 100;
+        /**
+         * 慢SQL样本是否包含参数，开启后也只记录参数的类型和长度，不记录值
+         */
+        private boolean includeParameters = false;
+    }
+
+    @Data
+    public static class Tenant {
+        private boolean enabled = true;
+        /**
+         * 携带租户标识的请求头，为空时不从请求头解析
+         */
+        private String header = "X-Tenant-Id";
+        /**
+         * 子域名后缀，如.example.com时acme.example.com的租户为acme，为空时不从子域名解析
+         */
+        private String hostSuffix = "";
+        /**
+         * 路径前缀，前缀后的第一段为租户，如/user/时/user/3/1的租户为3，为空时不从路径解析
+         */
+        private String pathPrefix = "/user/";
+        /**
+         * 没有租户标识的请求是否拒绝，不拒绝时使用默认数据源
+         */
+        private boolean required = false;
+        /**
+         * 租户标识别名 -> 数据源key（data_source.id），如子域名acme对应数据源3
+         */
+        private Map<String, String> aliases = new HashMap<>();
+    }
+
+    @Data
+    public static class Validation {
+        /**
+         * 默认校验方式
+         */
+        private ValidationPolicy policy = ValidationPolicy.TEST_ON_BORROW;
+        /**
+         * 按数据源key（data_source.id）单独指定校验方式
+         */
+        private Map<String, ValidationPolicy> policies = new HashMap<>();
+        /**
+         * TIME_SINCE_LAST_USE：连接空闲超过该时间（毫秒）才在借出时校验
+         */
+        private long idleMillis = 30000;
+        /**
+         * 校验超时时间（秒）
+         */
+        private int timeoutSeconds = 3;
+    }
+
+    public enum ValidationPolicy {
+        /**
+         * 每次借出都执行validationQuery
+         */
+        TEST_ON_BORROW,
+        /**
+         * 每次借出都调用Connection.isValid
+         */
+        JDBC4,
+        /**
+         * 只校验空闲超过连接池检测间隔（timeBetweenEvictionRunsMillis，默认60秒）的连接
+         */
+        IDLE,
+        /**
+         * 只校验空闲超过idle-millis的连接
+         */
+        TIME_SINCE_LAST_USE
+    }
+
+    public enum Strategy {
+        /**
+         * 轮询
+         */
+        ROUND_ROBIN,
+        /**
+         * 按权重随机
+         */
+        WEIGHTED,
+        /**
+         * 最少活跃连接
+         */
+        LEAST_ACTIVE
+    }
+}
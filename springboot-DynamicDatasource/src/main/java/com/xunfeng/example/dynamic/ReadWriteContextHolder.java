@@ -0,0 +1,38 @@
+package com.xunfeng.example.dynamic;
+
+/**
+ * 当前线程正在执行的语句是否为只读查询，由MyBatis拦截器在获取连接前设置
+ *
+ * @author
+ * @date 2026/10/18 13:00
+ */
+public class ReadWriteContextHolder {
+
+    private static final ThreadLocal<Boolean> READ_HOLDER = new ThreadLocal<>();
+
+    /**
+     * 标记为只读查询
+     *
+     * @return 之前的标记，用于恢复
+     */
+    public static Boolean markRead() {
+        Boolean previous = READ_HOLDER.get();
+        READ_HOLDER.set(Boolean.TRUE);
+        return previous;
+    }
+
+    /**
+     * 恢复之前的标记
+     */
+    public static void restore(Boolean previous) {
+        if (previous == null) {
+            READ_HOLDER.remove();
+        } else {
+            READ_HOLDER.set(previous);
+        }
+    }
+
+    public static boolean isRead() {
+        return READ_HOLDER.get() == Boolean.TRUE;
+    }
+}
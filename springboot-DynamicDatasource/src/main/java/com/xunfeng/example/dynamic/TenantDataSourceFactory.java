@@ -0,0 +1,101 @@
+package com.xunfeng.example.dynamic;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.pool.Jdbc4ValidConnectionChecker;
+import org.springframework.beans.BeanUtils;
+
+import java.sql.SQLException;
+
+/**
+ * 根据data_source表记录创建租户Druid连接池
+ *
+ * @author
+ * @date 2026/10/18 10:00
+ */
+public class TenantDataSourceFactory {
+
+    private final DynamicDataSourceProperties properties;
+
+    public TenantDataSourceFactory(DynamicDataSourceProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * 创建并初始化连接池，初始化失败时关闭连接池并抛出异常
+     *
+     * @param ds 数据源实体
+     * @return 已初始化的连接池
+     */
+    public DruidDataSource create(DataSourceEntity ds) throws SQLException {
+        DruidDataSource dataSource = build(ds);
+        try {
+            dataSource.init();
+            return dataSource;
+        } catch (SQLException | RuntimeException e) {
+            dataSource.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 仅构建连接池配置，不初始化
+     *
+     * @param ds 数据源实体
+     * @return 未初始化的连接池
+     */
+    public DruidDataSource build(DataSourceEntity ds) {
+        DruidDataSource dataSource = new DruidDataSource();
+        BeanUtils.copyProperties(ds, dataSource);
+        //建议配置为true，不影响性能，并且保证安全性。
+        //申请连接的时候检测，如果空闲时间大于timeBetweenEvictionRunsMillis，执行validationQuery检测连接是否有效。
+        dataSource.setTestWhileIdle(true);
+        //用来检测连接是否有效的sql，要求是一个查询语句。
+        dataSource.setValidationQuery("select 1 ");
+        applyValidation(dataSource, ds);
+        //初始化时建立一个连接，代替原先单独用DriverManager做的连通性校验
+        dataSource.setInitialSize(1);
+        //连接不可达时按租户超时快速失败：init()按initialSize同步建连，只受connectTimeout限制，失败直接抛出。
+        //不开启breakAfterAcquireFailure，否则运行期一次建连失败就会永久停掉建连线程，数据库恢复后也借不到连接
+        DynamicDataSourceProperties.Bootstrap bootstrap = properties.getBootstrap();
+        dataSource.setConnectTimeout(bootstrap.getTenantTimeoutMillis());
+        //运行期借连接的等待时间，不沿用启动时的快速失败超时（Druid在init之后修改maxWait会打错误日志，这里建池时就设好）
+        dataSource.setMaxWait(bootstrap.getPoolMaxWaitMillis());
+        //每条连接缓存PreparedStatement，预热时预编译的语句在之后的请求中直接复用
+        int cacheSize = properties.getWarmup().getPreparedStatementCacheSize();
+        if (cacheSize > 0) {
+            dataSource.setPoolPreparedStatements(true);
+            dataSource.setMaxPoolPreparedStatementPerConnectionSize(cacheSize);
+        }
+        return dataSource;
+    }
+
+    /**
+     * 按校验方式配置借出时的连接检测，共享连接池没有数据源key，使用默认方式
+     */
+    private void applyValidation(DruidDataSource dataSource, DataSourceEntity ds) {
+        DynamicDataSourceProperties.Validation validation = properties.getValidation();
+        DynamicDataSourceProperties.ValidationPolicy policy = ds.getId() == null ? null
+                : validation.getPolicies().get(String.valueOf(ds.getId()));
+        dataSource.setValidationQueryTimeout(validation.getTimeoutSeconds());
+        switch (policy == null ? validation.getPolicy() : policy) {
+            case JDBC4:
+                dataSource.setTestOnBorrow(true);
+                dataSource.setValidConnectionChecker(new Jdbc4ValidConnectionChecker());
+                break;
+            case IDLE:
+                dataSource.setTestOnBorrow(false);
+                break;
+            case TIME_SINCE_LAST_USE:
+                //testWhileIdle以timeBetweenEvictionRunsMillis作为空闲阈值，检测线程的间隔随之调整
+                dataSource.setTestOnBorrow(false);
+                dataSource.setTimeBetweenEvictionRunsMillis(validation.getIdleMillis());
+                break;
+            case TEST_ON_BORROW:
+            default:
+                //申请连接时执行validationQuery检测连接是否有效，这里建议配置为TRUE，防止取到的连接不可用
+                dataSource.setTestOnBorrow(true);
+                break;
+        }
+    }
+}
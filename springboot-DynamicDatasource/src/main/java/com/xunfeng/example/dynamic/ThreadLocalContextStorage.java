@@ -0,0 +1,29 @@
+package com.xunfeng.example.dynamic;
+
+import java.util.Deque;
+
+/**
+ * 以线程变量保存数据源栈
+ *
+ * @author
+ * @date 2026/10/19 10:00
+ */
+public class ThreadLocalContextStorage implements DataSourceContextStorage {
+
+    private final ThreadLocal<Deque<String>> holder = new ThreadLocal<>();
+
+    @Override
+    public Deque<String> get() {
+        return holder.get();
+    }
+
+    @Override
+    public void set(Deque<String> stack) {
+        holder.set(stack);
+    }
+
+    @Override
+    public void remove() {
+        holder.remove();
+    }
+}
@@ -0,0 +1,156 @@
+package com.xunfeng.example.dynamic.affinity;
+
+import lombok.extern.slf4j.Slf4j;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 连接亲和：同一请求内对同一数据源key复用第一次借出的连接
+ * <p>
+ * 作用域绑定在当前线程上，由{@link ConnectionAffinityFilter}在请求开始时开启、结束时（包括异常）关闭。
+ * 作用域内第一次借出的物理连接被保留，调用方close时不归还连接池，后续借用直接复用，省掉每次
+ * 借出时的校验往返；作用域结束时统一归还。连接仍被占用时（例如流式查询未结束又发起查询）
+ * 新的借用走普通路径，不会两处同时使用一条连接。其他线程（异步任务、并行查询）不在作用域内。
+ *
+ * @author
+ * @date 2026/10/18 23:30
+ */
+@Slf4j
+public class ConnectionAffinity {
+
+    private static final ThreadLocal<Map<String, Slot>> SCOPE = new ThreadLocal<>();
+
+    /**
+     * 开启作用域
+     *
+     * @return 是否新开启，已在作用域内时返回false，由外层负责结束
+     */
+    public static boolean begin() {
+        if (SCOPE.get() != null) {
+            return false;
+        }
+        SCOPE.set(new HashMap<>());
+        return true;
+    }
+
+    /**
+     * 结束作用域，归还所有保留的连接；仍被占用的连接在调用方close时归还
+     */
+    public static void end() {
+        Map<String, Slot> slots = SCOPE.get();
+        SCOPE.remove();
+        if (slots == null) {
+            return;
+        }
+        for (Map.Entry<String, Slot> entry : slots.entrySet()) {
+            Slot slot = entry.getValue();
+            slot.ended = true;
+            if (!slot.inUse) {
+                slot.release(entry.getKey());
+            }
+        }
+    }
+
+    public static boolean isActive() {
+        return SCOPE.get() != null;
+    }
+
+    /**
+     * 获取连接，在作用域内时复用本请求已借出的连接
+     *
+     * @param key        数据源key
+     * @param dataSource 实际数据源
+     */
+    public static Connection getConnection(String key, DataSource dataSource) throws SQLException {
+        Map<String, Slot> slots = SCOPE.get();
+        if (slots == null) {
+            return dataSource.getConnection();
+        }
+        Slot slot = slots.get(key);
+        if (slot != null && slot.dataSource == dataSource && !slot.inUse && !slot.physical.isClosed()) {
+            slot.inUse = true;
+            return slot.proxy;
+        }
+        if (slot != null && slot.inUse) {
+            return dataSource.getConnection();
+        }
+        if (slot != null) {
+            // 数据源已被替换或连接已失效，换一条
+            slots.remove(key);
+            slot.release(key);
+        }
+        Connection physical = dataSource.getConnection();
+        slot = new Slot(dataSource, physical);
+        slots.put(key, slot);
+        slot.inUse = true;
+        return slot.proxy;
+    }
+
+    private static final class Slot {
+        private final DataSource dataSource;
+        private final Connection physical;
+        private final Connection proxy;
+        private boolean inUse;
+        private boolean ended;
+
+        Slot(DataSource dataSource, Connection physical) {
+            this.dataSource = dataSource;
+            this.physical = physical;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close":
+                                onClose();
+                                return null;
+                            case "isClosed":
+                                return !inUse || physical.isClosed();
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "toString":
+                                return "AffinityConnection " + physical;
+                            default:
+                                break;
+                        }
+                        try {
+                            return method.invoke(physical, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    });
+        }
+
+        /**
+         * 调用方close：留在作用域内待复用，作用域已结束则归还；遗留的事务先回滚，和连接池回收时的处理一致
+         */
+        private void onClose() throws SQLException {
+            if (!inUse) {
+                return;
+            }
+            inUse = false;
+            if (ended) {
+                physical.close();
+                return;
+            }
+            if (!physical.isClosed() && !physical.getAutoCommit()) {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+        }
+
+        private void release(String key) {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                log.debug("---归还亲和连接失败---:{},{}", key, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.xunfeng.example.dynamic.affinity;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * 为每个请求开启连接亲和作用域，请求处理返回时（包括异常、开启异步处理后返回）归还保留的连接；
+ * 异步分派不经过该过滤器，异步线程上的查询按普通方式借还连接
+ *
+ * @author
+ * @date 2026/10/18 23:30
+ */
+public class ConnectionAffinityFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        boolean owner = ConnectionAffinity.begin();
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (owner) {
+                ConnectionAffinity.end();
+            }
+        }
+    }
+}
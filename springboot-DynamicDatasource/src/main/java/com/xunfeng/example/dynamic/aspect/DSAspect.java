@@ -2,20 +2,24 @@ package com.xunfeng.example.dynamic.aspect;
 
 
 import com.baomidou.mybatisplus.core.toolkit.StringUtils;
-import com.xunfeng.example.domain.entity.DataSourceEntity;
 import com.xunfeng.example.dynamic.DataSourceContextHolder;
-import com.xunfeng.example.dynamic.annotation.DataSource;
 import org.aspectj.lang.ProceedingJoinPoint;
 import org.aspectj.lang.annotation.Around;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Pointcut;
 import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.core.MethodClassKey;
 import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
+ * 数据源切换切面，同时处理{@link com.xunfeng.example.dynamic.annotation.DataSource}和
+ * {@link com.baomidou.dynamic.datasource.annotation.DS}，两种注解都切换到同一个{@link DataSourceContextHolder}
+ *
  * @author 
  * @date 2024/6/17 15:18
  */
@@ -23,40 +27,42 @@ import java.util.Objects;
 @Component
 public class DSAspect {
 
-    @Pointcut("@annotation(com.xunfeng.example.dynamic.annotation.DataSource)")
+    /**
+     * 方法 -> 数据源key解析器，注解查找、入参位置、SpEL解析都只在第一次调用时做
+     */
+    private final Map<MethodClassKey, DataSourceKeyResolver> resolverCache = new ConcurrentHashMap<>();
+
+    @Pointcut("@annotation(com.xunfeng.example.dynamic.annotation.DataSource)"
+            + " || @within(com.xunfeng.example.dynamic.annotation.DataSource)"
+            + " || @annotation(com.baomidou.dynamic.datasource.annotation.DS)"
+            + " || @within(com.baomidou.dynamic.datasource.annotation.DS)")
     public void datasourcePoint() {
     }
 
     @Around("datasourcePoint()")
     public Object datasourceAround(ProceedingJoinPoint point) throws Throwable {
-        MethodSignature signature = (MethodSignature) point.getSignature();
-        Method method = signature.getMethod();
-        DataSource dataSource = method.getAnnotation(DataSource.class);
-        if (Objects.nonNull(dataSource)) {
-            // 数据源key
-            String key = null;
-            // 1.从入参中获取数据源key，并切换
-            Object[] args = point.getArgs();
-            for (Object arg : args) {
-                // 自定义入参标准，这里简单用id作为key
-                if (arg instanceof DataSourceEntity) {
-                    DataSourceEntity req = (DataSourceEntity) arg;
-                    key = req.getId().toString();
-                }
-            }
-            // 2.获取注解中的value为数据源key
-            if (StringUtils.isEmpty(key)) {
-                key = dataSource.value();
-            }
-            // 实时切换默认数据源
-            DataSourceContextHolder.setDataSource(key);
-
-
+        String key = resolver(point).resolve(point.getArgs());
+        if (StringUtils.isBlank(key)) {
+            return point.proceed();
         }
+        // 实时切换数据源，嵌套调用结束后恢复外层数据源
+        DataSourceContextHolder.push(key);
         try {
             return point.proceed();
         } finally {
-            DataSourceContextHolder.removeDataSource();
+            DataSourceContextHolder.poll();
+        }
+    }
+
+    private DataSourceKeyResolver resolver(ProceedingJoinPoint point) {
+        Method method = ((MethodSignature) point.getSignature()).getMethod();
+        Class<?> targetClass = point.getTarget() != null ? AopUtils.getTargetClass(point.getTarget()) : method.getDeclaringClass();
+        MethodClassKey cacheKey = new MethodClassKey(method, targetClass);
+        DataSourceKeyResolver resolver = resolverCache.get(cacheKey);
+        if (resolver == null) {
+            resolver = resolverCache.computeIfAbsent(cacheKey,
+                    k -> DataSourceKeyResolver.build(AopUtils.getMostSpecificMethod(method, targetClass), targetClass));
         }
+        return resolver;
     }
 }
@@ -0,0 +1,108 @@
+package com.xunfeng.example.dynamic.aspect;
+
+import com.baomidou.dynamic.datasource.annotation.DS;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.annotation.DataSource;
+import org.springframework.context.expression.MethodBasedEvaluationContext;
+import org.springframework.core.DefaultParameterNameDiscoverer;
+import org.springframework.core.ParameterNameDiscoverer;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.expression.Expression;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+
+/**
+ * 数据源key解析器，每个方法第一次调用时构建一次并缓存
+ * <p>
+ * 解析顺序与原先一致：入参中的{@link DataSourceEntity}（取其id）优先，其次注解value；
+ * 注解可以标在方法或类上，value以#开头时作为SpEL表达式（如#req.tenantId、#p0）解析。
+ * 同时识别{@link DataSource}和baomidou的{@link DS}，同一位置两者都有时以{@link DataSource}为准；
+ * {@link DS}的#header、#session等内置处理器不支持，请求级租户由租户过滤器解析。
+ *
+ * @author
+ * @date 2026/10/18 15:00
+ */
+@FunctionalInterface
+public interface DataSourceKeyResolver {
+
+    /**
+     * 没有数据源注解时使用，返回null表示不切换
+     */
+    DataSourceKeyResolver NONE = args -> null;
+
+    /**
+     * 根据本次调用的入参解析数据源key
+     *
+     * @param args 方法入参
+     * @return 数据源key
+     */
+    String resolve(Object[] args);
+
+    /**
+     * 为方法构建解析器
+     *
+     * @param method      目标类上的具体方法
+     * @param targetClass 目标类
+     * @return 解析器
+     */
+    static DataSourceKeyResolver build(Method method, Class<?> targetClass) {
+        String value = findValue(method);
+        if (value == null) {
+            value = findValue(targetClass);
+        }
+        if (value == null) {
+            return NONE;
+        }
+        DataSourceKeyResolver fallback = annotationResolver(method, value);
+        // 自定义入参标准，这里简单用id作为key，多个时以最后一个为准
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        for (int i = parameterTypes.length - 1; i >= 0; i--) {
+            if (DataSourceEntity.class.isAssignableFrom(parameterTypes[i])) {
+                int index = i;
+                return args -> {
+                    DataSourceEntity req = (DataSourceEntity) args[index];
+                    return req != null && req.getId() != null ? req.getId().toString() : fallback.resolve(args);
+                };
+            }
+        }
+        return fallback;
+    }
+
+    /**
+     * @return 注解value，没有数据源注解时返回null
+     */
+    static String findValue(AnnotatedElement element) {
+        DataSource dataSource = AnnotatedElementUtils.findMergedAnnotation(element, DataSource.class);
+        if (dataSource != null) {
+            return dataSource.value();
+        }
+        DS ds = AnnotatedElementUtils.findMergedAnnotation(element, DS.class);
+        return ds != null ? ds.value() : null;
+    }
+
+    static DataSourceKeyResolver annotationResolver(Method method, String value) {
+        if (value == null || !value.startsWith("#")) {
+            return args -> value;
+        }
+        Expression expression = Holder.PARSER.parseExpression(value);
+        return args -> {
+            MethodBasedEvaluationContext context =
+                    new MethodBasedEvaluationContext(null, method, args, Holder.PARAMETER_NAME_DISCOVERER);
+            Object key = expression.getValue(context);
+            return key == null ? null : key.toString();
+        };
+    }
+
+    /**
+     * 表达式解析器与参数名发现器均线程安全，全局共用
+     */
+    final class Holder {
+        private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+        private static final ParameterNameDiscoverer PARAMETER_NAME_DISCOVERER = new DefaultParameterNameDiscoverer();
+
+        private Holder() {
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.xunfeng.example.dynamic.cache;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 查询缓存端点：/actuator/querycache 查看各Mapper缓存的命中率等统计，DELETE清空指定缓存
+ *
+ * @author
+ * @date 2026/10/18 19:00
+ */
+@Endpoint(id = "querycache")
+public class QueryCacheEndpoint {
+
+    @ReadOperation
+    public Map<String, Object> caches() {
+        Map<String, Object> result = new TreeMap<>();
+        TenantAwareCache.getCaches().forEach((id, cache) -> result.put(id, describe(cache)));
+        return result;
+    }
+
+    @DeleteOperation
+    public void clear(@Selector String id) {
+        TenantAwareCache cache = TenantAwareCache.getCaches().get(id);
+        if (cache != null) {
+            cache.clearAll();
+        }
+    }
+
+    private static Map<String, Object> describe(TenantAwareCache cache) {
+        TenantAwareCache.Stats stats = cache.getStats();
+        long requests = stats.getHits() + stats.getMisses();
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("size", cache.getSize());
+        info.put("tenants", cache.getTenantCount());
+        info.put("hits", stats.getHits());
+        info.put("misses", stats.getMisses());
+        info.put("hitRate", requests == 0 ? 0 : (double) stats.getHits() / requests);
+        info.put("evictions", stats.getEvictions());
+        info.put("expirations", stats.getExpirations());
+        info.put("clears", stats.getClears());
+        return info;
+    }
+}
@@ -0,0 +1,304 @@
+package com.xunfeng.example.dynamic.cache;
+
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按数据源隔离的MyBatis二级缓存
+ * <p>
+ * 缓存按数据源key分段，不同租户的相同查询互不可见；每个租户的条目数与租户段数都有上限，
+ * 超出时按最近访问淘汰，条目超过存活时间后失效。增删改触发的clear只清空写入过的租户的分段。
+ * 数据源key由{@link TenantCacheInterceptor}在查询时放进CacheKey、在增删改时登记，为实际路由到的key，
+ * 不读取事务提交时线程上的数据源上下文；不带数据源key的查询不缓存，没有登记信息的clear清空全部分段。
+ * 通过{@code @CacheNamespace(implementation = TenantAwareCache.class)}启用，
+ * 参数用{@code @Property}配置：maxEntriesPerTenant、maxTenants、ttlMillis、readOnly。
+ *
+ * @author
+ * @date 2026/10/18 19:00
+ */
+public class TenantAwareCache implements Cache {
+
+    /**
+     * 所有实例，用于端点展示统计
+     */
+    private static final Map<String, TenantAwareCache> CACHES = new ConcurrentHashMap<>();
+
+    /**
+     * 事务提交期间待清空的分段：缓存id -> 数据源key
+     */
+    private static final ThreadLocal<Map<String, Set<String>>> CLEAR_SCOPE = new ThreadLocal<>();
+
+    /**
+     * 登记的数据源中包含该值时清空全部分段
+     */
+    static final String ALL_TENANTS = "*";
+
+    private final String id;
+    private final Map<String, Segment> segments;
+    private final Stats stats = new Stats();
+
+    private int maxEntriesPerTenant = 1000;
+    private int maxTenants = 200;
+    private long ttlMillis = 60000;
+    /**
+     * false时存取都复制一份（序列化），调用方修改返回的对象不会污染缓存
+     */
+    private boolean readOnly = false;
+
+    public TenantAwareCache(String id) {
+        this.id = id;
+        this.segments = Collections.synchronizedMap(new LinkedHashMap<String, Segment>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Segment> eldest) {
+                if (size() > maxTenants) {
+                    stats.evictions.add(eldest.getValue().size());
+                    return true;
+                }
+                return false;
+            }
+        });
+        CACHES.put(id, this);
+    }
+
+    public static Map<String, TenantAwareCache> getCaches() {
+        return Collections.unmodifiableMap(CACHES);
+    }
+
+    /**
+     * MyBatis会给自定义缓存包一层LoggingCache，按id判断
+     */
+    static boolean isTenantAware(Cache cache) {
+        return cache != null && CACHES.containsKey(cache.getId());
+    }
+
+    static void beginClear(Map<String, Set<String>> tenantsByCache) {
+        if (tenantsByCache != null) {
+            CLEAR_SCOPE.set(tenantsByCache);
+        }
+    }
+
+    static void endClear() {
+        CLEAR_SCOPE.remove();
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public void putObject(Object key, Object value) {
+        Segment segment = segment(key, true);
+        if (segment == null) {
+            return;
+        }
+        segment.put(key, new Entry(readOnly ? value : copy(value), System.currentTimeMillis() + ttlMillis));
+    }
+
+    @Override
+    public Object getObject(Object key) {
+        Segment segment = segment(key, false);
+        Entry entry = segment == null ? null : segment.get(key);
+        if (entry == null) {
+            stats.misses.increment();
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            segment.remove(key, entry);
+            stats.expirations.increment();
+            stats.misses.increment();
+            return null;
+        }
+        stats.hits.increment();
+        return readOnly ? entry.value : copy(entry.value);
+    }
+
+    @Override
+    public Object removeObject(Object key) {
+        Segment segment = segment(key, false);
+        Entry entry = segment == null ? null : segment.remove(key);
+        return entry == null ? null : entry.value;
+    }
+
+    /**
+     * 只清空本次提交中写入过的数据源的分段，其他租户的缓存不受影响
+     */
+    @Override
+    public void clear() {
+        Map<String, Set<String>> scope = CLEAR_SCOPE.get();
+        Set<String> tenants = scope == null ? null : scope.get(id);
+        if (tenants == null || tenants.contains(ALL_TENANTS)) {
+            segments.clear();
+        } else {
+            tenants.forEach(segments::remove);
+        }
+        stats.clears.increment();
+    }
+
+    /**
+     * 清空所有租户的缓存
+     */
+    public void clearAll() {
+        segments.clear();
+        stats.clears.increment();
+    }
+
+    @Override
+    public int getSize() {
+        synchronized (segments) {
+            return segments.values().stream().mapToInt(Segment::size).sum();
+        }
+    }
+
+    public int getTenantCount() {
+        return segments.size();
+    }
+
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * 不带数据源key的CacheKey返回null，不缓存
+     */
+    private Segment segment(Object key, boolean create) {
+        String tenant = key instanceof TenantCacheKey ? ((TenantCacheKey) key).getTenant() : null;
+        if (tenant == null) {
+            return null;
+        }
+        if (!create) {
+            return segments.get(tenant);
+        }
+        return segments.computeIfAbsent(tenant, k -> new Segment());
+    }
+
+    private static Object copy(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(value);
+            }
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                return in.readObject();
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            throw new CacheException("缓存对象复制失败，结果对象需要实现Serializable:" + value.getClass(), e);
+        }
+    }
+
+    public void setMaxEntriesPerTenant(int maxEntriesPerTenant) {
+        this.maxEntriesPerTenant = maxEntriesPerTenant;
+    }
+
+    public void setMaxTenants(int maxTenants) {
+        this.maxTenants = maxTenants;
+    }
+
+    public void setTtlMillis(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || (o instanceof Cache && id.equals(((Cache) o).getId()));
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final long expireAt;
+
+        Entry(Object value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+
+    /**
+     * 单个租户的LRU分段
+     */
+    private final class Segment {
+        private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+        synchronized Entry get(Object key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(Object key, Entry entry) {
+            entries.put(key, entry);
+            if (entries.size() > maxEntriesPerTenant) {
+                Iterator<Entry> eldest = entries.values().iterator();
+                eldest.next();
+                eldest.remove();
+                stats.evictions.increment();
+            }
+        }
+
+        synchronized Entry remove(Object key) {
+            return entries.remove(key);
+        }
+
+        synchronized void remove(Object key, Entry entry) {
+            entries.remove(key, entry);
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+    }
+
+    /**
+     * 命中、未命中、容量淘汰、过期、清空次数
+     */
+    public static class Stats {
+        private final LongAdder hits = new LongAdder();
+        private final LongAdder misses = new LongAdder();
+        private final LongAdder evictions = new LongAdder();
+        private final LongAdder expirations = new LongAdder();
+        private final LongAdder clears = new LongAdder();
+
+        public long getHits() {
+            return hits.sum();
+        }
+
+        public long getMisses() {
+            return misses.sum();
+        }
+
+        public long getEvictions() {
+            return evictions.sum();
+        }
+
+        public long getExpirations() {
+            return expirations.sum();
+        }
+
+        public long getClears() {
+            return clears.sum();
+        }
+    }
+}
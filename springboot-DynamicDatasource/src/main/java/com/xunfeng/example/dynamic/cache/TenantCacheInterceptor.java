@@ -0,0 +1,136 @@
+package com.xunfeng.example.dynamic.cache;
+
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link TenantAwareCache}的数据源绑定
+ * <p>
+ * 二级缓存的写入和清空都推迟到事务提交（TransactionalCache），提交时线程上的数据源上下文可能已经出栈或切换。
+ * 这里在查询时把数据源key放进CacheKey，在增删改时记下涉及的数据源，提交时只清空这些数据源的分段。
+ * 使用的是实际路由到的key（未知key回退到默认数据源），而不是上下文里请求的key；
+ * 目标熔断时可能切换到备用数据源，查询不缓存，写入清空该缓存的全部分段。
+ * CachingExecutor内部调用createCacheKey不经过插件，因此同时拦截两种query。
+ *
+ * @author
+ * @date 2026/10/19 15:00
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "createCacheKey",
+                args = {MappedStatement.class, Object.class, RowBounds.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "update", args = {MappedStatement.class, Object.class}),
+        @Signature(type = Executor.class, method = "commit", args = {boolean.class}),
+        @Signature(type = Executor.class, method = "rollback", args = {boolean.class}),
+        @Signature(type = Executor.class, method = "close", args = {boolean.class})
+})
+public class TenantCacheInterceptor implements Interceptor {
+
+    /**
+     * 每个SqlSession（Executor）待提交的清空：缓存id -> 数据源key
+     */
+    private final Map<Executor, Map<String, Set<String>>> pendingClears = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final DynamicDataSource dynamicDataSource;
+
+    public TenantCacheInterceptor(DynamicDataSource dynamicDataSource) {
+        this.dynamicDataSource = dynamicDataSource;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Executor executor = (Executor) invocation.getTarget();
+        Object[] args = invocation.getArgs();
+        switch (invocation.getMethod().getName()) {
+            case "createCacheKey":
+                return scoped((MappedStatement) args[0], (CacheKey) invocation.proceed());
+            case "query":
+                return query(invocation, executor, args);
+            case "update":
+                recordClear(executor, (MappedStatement) args[0]);
+                return invocation.proceed();
+            case "rollback":
+                if ((Boolean) args[0]) {
+                    pendingClears.remove(executor);
+                }
+                return invocation.proceed();
+            case "close":
+                if ((Boolean) args[0]) {
+                    // 强制回滚，不会提交
+                    pendingClears.remove(executor);
+                    return invocation.proceed();
+                }
+                return commit(invocation, executor);
+            default:
+                return commit(invocation, executor);
+        }
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private Object query(Invocation invocation, Executor executor, Object[] args) throws Throwable {
+        MappedStatement ms = (MappedStatement) args[0];
+        if (!TenantAwareCache.isTenantAware(ms.getCache())) {
+            return invocation.proceed();
+        }
+        recordClear(executor, ms);
+        if (args.length == 6) {
+            args[4] = scoped(ms, (CacheKey) args[4]);
+            return invocation.proceed();
+        }
+        Object parameter = args[1];
+        RowBounds rowBounds = (RowBounds) args[2];
+        BoundSql boundSql = ms.getBoundSql(parameter);
+        CacheKey key = scoped(ms, executor.createCacheKey(ms, parameter, rowBounds, boundSql));
+        return executor.query(ms, parameter, rowBounds, (ResultHandler) args[3], key, boundSql);
+    }
+
+    /**
+     * 数据源key为null（目标熔断）时TenantAwareCache不存取该key
+     */
+    private CacheKey scoped(MappedStatement ms, CacheKey key) {
+        if (key instanceof TenantCacheKey || !TenantAwareCache.isTenantAware(ms.getCache())) {
+            return key;
+        }
+        return new TenantCacheKey(dynamicDataSource.resolveRouteKey(), key);
+    }
+
+    /**
+     * 会触发清空缓存的语句，记下实际路由到的数据源，解析不出时清空全部分段
+     */
+    private void recordClear(Executor executor, MappedStatement ms) {
+        if (ms.isFlushCacheRequired() && TenantAwareCache.isTenantAware(ms.getCache())) {
+            String routeKey = dynamicDataSource.resolveRouteKey();
+            pendingClears.computeIfAbsent(executor, k -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(ms.getCache().getId(), k -> ConcurrentHashMap.newKeySet())
+                    .add(routeKey == null ? TenantAwareCache.ALL_TENANTS : routeKey);
+        }
+    }
+
+    private Object commit(Invocation invocation, Executor executor) throws Throwable {
+        Map<String, Set<String>> pending = pendingClears.remove(executor);
+        TenantAwareCache.beginClear(pending);
+        try {
+            return invocation.proceed();
+        } finally {
+            TenantAwareCache.endClear();
+        }
+    }
+}
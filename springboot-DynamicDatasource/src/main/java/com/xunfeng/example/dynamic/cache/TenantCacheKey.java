@@ -0,0 +1,28 @@
+package com.xunfeng.example.dynamic.cache;
+
+import org.apache.ibatis.cache.CacheKey;
+
+/**
+ * 带数据源key的缓存key
+ * <p>
+ * 在查询时（数据源上下文仍有效）生成，事务提交时写入缓存不再依赖提交线程上的数据源上下文。
+ *
+ * @author
+ * @date 2026/10/19 15:00
+ */
+final class TenantCacheKey extends CacheKey {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String tenant;
+
+    TenantCacheKey(String tenant, CacheKey key) {
+        this.tenant = tenant;
+        update(tenant);
+        update(key);
+    }
+
+    String getTenant() {
+        return tenant;
+    }
+}
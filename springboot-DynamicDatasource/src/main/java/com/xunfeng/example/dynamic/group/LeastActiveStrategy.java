@@ -0,0 +1,35 @@
+package com.xunfeng.example.dynamic.group;
+
+import com.xunfeng.example.dynamic.pool.TenantPools;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 最少活跃连接，依据借出未归还的连接数；尚未创建连接池的从库视为0
+ *
+ * @author
+ * @date 2026/10/18 13:00
+ */
+public class LeastActiveStrategy implements LoadBalanceStrategy {
+
+    @Override
+    public ReplicaGroup.Replica select(ReplicaGroup group, List<ReplicaGroup.Replica> candidates, Map<String, DataSource> targets) {
+        int size = candidates.size();
+        // 随机起点，活跃数相同时不总是落到第一个从库
+        int start = ThreadLocalRandom.current().nextInt(size);
+        ReplicaGroup.Replica best = null;
+        int bestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            ReplicaGroup.Replica replica = candidates.get((start + i) % size);
+            int active = TenantPools.activeConnections(targets.get(replica.getKey()));
+            if (active < bestActive) {
+                best = replica;
+                bestActive = active;
+            }
+        }
+        return best;
+    }
+}
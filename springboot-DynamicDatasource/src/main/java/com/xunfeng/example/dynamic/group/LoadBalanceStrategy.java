@@ -0,0 +1,24 @@
+package com.xunfeng.example.dynamic.group;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 从库负载均衡策略，可通过声明该类型的Bean替换默认策略
+ *
+ * @author
+ * @date 2026/10/18 13:00
+ */
+public interface LoadBalanceStrategy {
+
+    /**
+     * 从候选从库中选择一个
+     *
+     * @param group      数据源组
+     * @param candidates 候选从库（已排除不可用的从库），不为空
+     * @param targets    当前路由快照
+     * @return 选中的从库
+     */
+    ReplicaGroup.Replica select(ReplicaGroup group, List<ReplicaGroup.Replica> candidates, Map<String, DataSource> targets);
+}
@@ -0,0 +1,74 @@
+package com.xunfeng.example.dynamic.group;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 读写分离数据源组：一个主库加若干从库，组的key即主库的key
+ *
+ * @author
+ * @date 2026/10/18 13:00
+ */
+public class ReplicaGroup {
+
+    private final String primaryKey;
+    private final List<Replica> replicas;
+    /**
+     * 权重前缀和，用于按权重随机选择
+     */
+    private final int[] cumulativeWeights;
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    public ReplicaGroup(String primaryKey, List<Replica> replicas) {
+        this.primaryKey = primaryKey;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.cumulativeWeights = new int[replicas.size()];
+        int total = 0;
+        for (int i = 0; i < replicas.size(); i++) {
+            total += Math.max(1, replicas.get(i).getWeight());
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    public String getPrimaryKey() {
+        return primaryKey;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    int[] getCumulativeWeights() {
+        return cumulativeWeights;
+    }
+
+    /**
+     * 轮询游标，溢出后仍保持非负
+     */
+    int nextCursor() {
+        return cursor.getAndIncrement() & Integer.MAX_VALUE;
+    }
+
+    /**
+     * 从库
+     */
+    public static class Replica {
+        private final String key;
+        private final int weight;
+
+        public Replica(String key, int weight) {
+            this.key = key;
+            this.weight = weight;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+    }
+}
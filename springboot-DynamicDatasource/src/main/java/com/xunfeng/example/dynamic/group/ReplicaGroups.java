@@ -0,0 +1,40 @@
+package com.xunfeng.example.dynamic.group;
+
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 根据data_source表的primary_id构建读写分离数据源组
+ *
+ * @author
+ * @date 2026/10/18 13:00
+ */
+public final class ReplicaGroups {
+
+    private ReplicaGroups() {
+    }
+
+    /**
+     * primary_id不为空的记录作为对应主库的从库
+     *
+     * @param dataSources 数据源实体集合
+     * @return 主库key -> 数据源组，只包含至少有一个从库的主库
+     */
+    public static Map<String, ReplicaGroup> from(List<DataSourceEntity> dataSources) {
+        Map<String, List<ReplicaGroup.Replica>> replicas = new HashMap<>();
+        for (DataSourceEntity ds : dataSources) {
+            if (ds.getPrimaryId() != null) {
+                int weight = ds.getWeight() == null ? 1 : ds.getWeight();
+                replicas.computeIfAbsent(String.valueOf(ds.getPrimaryId()), k -> new ArrayList<>())
+                        .add(new ReplicaGroup.Replica(String.valueOf(ds.getId()), weight));
+            }
+        }
+        Map<String, ReplicaGroup> groups = new HashMap<>(replicas.size());
+        replicas.forEach((primaryKey, list) -> groups.put(primaryKey, new ReplicaGroup(primaryKey, list)));
+        return groups;
+    }
+}
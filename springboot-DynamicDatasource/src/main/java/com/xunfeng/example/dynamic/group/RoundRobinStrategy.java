@@ -0,0 +1,19 @@
+package com.xunfeng.example.dynamic.group;
+
+import javax.sql.DataSource;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 轮询
+ *
+ * @author
+ * @date 2026/10/18 13:00
+ */
+public class RoundRobinStrategy implements LoadBalanceStrategy {
+
+    @Override
+    public ReplicaGroup.Replica select(ReplicaGroup group, List<ReplicaGroup.Replica> candidates, Map<String, DataSource> targets) {
+        return candidates.get(group.nextCursor() % candidates.size());
+    }
+}
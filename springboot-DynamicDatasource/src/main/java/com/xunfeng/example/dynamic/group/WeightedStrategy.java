@@ -0,0 +1,39 @@
+package com.xunfeng.example.dynamic.group;
+
+import javax.sql.DataSource;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 按权重随机
+ *
+ * @author
+ * @date 2026/10/18 13:00
+ */
+public class WeightedStrategy implements LoadBalanceStrategy {
+
+    @Override
+    public ReplicaGroup.Replica select(ReplicaGroup group, List<ReplicaGroup.Replica> candidates, Map<String, DataSource> targets) {
+        if (candidates.size() == group.getReplicas().size()) {
+            // 全部可用时直接在预先计算的权重前缀和上二分查找
+            int[] cumulative = group.getCumulativeWeights();
+            int point = ThreadLocalRandom.current().nextInt(cumulative[cumulative.length - 1]);
+            int index = Arrays.binarySearch(cumulative, point + 1);
+            return candidates.get(index >= 0 ? index : -index - 1);
+        }
+        int total = 0;
+        for (ReplicaGroup.Replica replica : candidates) {
+            total += Math.max(1, replica.getWeight());
+        }
+        int point = ThreadLocalRandom.current().nextInt(total);
+        for (ReplicaGroup.Replica replica : candidates) {
+            point -= Math.max(1, replica.getWeight());
+            if (point < 0) {
+                return replica;
+            }
+        }
+        return candidates.get(candidates.size() - 1);
+    }
+}
@@ -0,0 +1,266 @@
+package com.xunfeng.example.dynamic.health;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.pool.LazyTenantDataSource;
+import com.xunfeng.example.dynamic.pool.TenantPools;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据源健康检查与熔断
+ * <p>
+ * 每个路由目标维护UP/DEGRADED/DOWN状态：连续失败达到阈值后熔断为DOWN，获取连接时直接失败
+ * 或切换到配置的备用数据源；后台按带抖动的间隔主动探测，连续成功后恢复UP。
+ * 懒加载且尚未创建连接池的租户只有在出现失败后才会被主动探测，避免为探测而建连。
+ *
+ * @author
+ * @date 2026/10/18 12:00
+ */
+@Slf4j
+public class DataSourceHealthChecker implements DisposableBean {
+
+    /**
+     * 调度器检查到期探测任务的间隔
+     */
+    private static final long TICK_MILLIS = 1000;
+
+    private final DynamicDataSource dynamicDataSource;
+    private final DynamicDataSourceProperties.Health config;
+    private final Map<String, TargetHealth> healthMap = new ConcurrentHashMap<>();
+    /**
+     * 正在探测中的key，避免同一目标的探测堆积
+     */
+    private final Set<String> probing = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService ticker;
+    private final ThreadPoolExecutor probeExecutor;
+
+    public DataSourceHealthChecker(DynamicDataSource dynamicDataSource, DynamicDataSourceProperties properties) {
+        this.dynamicDataSource = dynamicDataSource;
+        this.config = properties.getHealth();
+        CustomizableThreadFactory tickerFactory = new CustomizableThreadFactory("ds-health-ticker-");
+        tickerFactory.setDaemon(true);
+        this.ticker = Executors.newSingleThreadScheduledExecutor(tickerFactory);
+        CustomizableThreadFactory probeFactory = new CustomizableThreadFactory("ds-health-probe-");
+        probeFactory.setDaemon(true);
+        this.probeExecutor = new ThreadPoolExecutor(config.getProbeConcurrency(), config.getProbeConcurrency(),
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), probeFactory);
+        this.ticker.scheduleWithFixedDelay(this::tick, TICK_MILLIS, TICK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 获取连接前检查目标状态
+     *
+     * @param key 路由key
+     * @return 实际使用的路由key，熔断时可能是备用数据源的key
+     * @throws SQLTransientConnectionException 目标已熔断且没有可用的备用数据源
+     */
+    public String admit(String key) throws SQLException {
+        TargetHealth health = healthMap.get(key);
+        if (health == null || health.getState() != HealthState.DOWN) {
+            return key;
+        }
+        String fallback = config.getFallbacks().get(key);
+        if (fallback != null && dynamicDataSource.existsDataSource(fallback) && getState(fallback) != HealthState.DOWN) {
+            return fallback;
+        }
+        throw new SQLTransientConnectionException("数据源已熔断:" + key + "," + health.getLastError());
+    }
+
+    /**
+     * 记录获取连接成功，只有非UP状态才需要更新
+     */
+    public void recordSuccess(String key) {
+        TargetHealth health = healthMap.get(key);
+        if (health != null && health.getState() != HealthState.UP) {
+            onSuccess(health);
+        }
+    }
+
+    /**
+     * 记录获取连接失败
+     * <p>
+     * 只统计建连失败（异常链中SQLState为08类）；连接池等待超时、连接预算不足等
+     * 说明的是本地资源紧张而非数据库不可达，计入会把繁忙的租户误判为熔断。
+     */
+    public void recordFailure(String key, SQLException e) {
+        if (isConnectFailure(e)) {
+            onFailure(health(key), e);
+        }
+    }
+
+    /**
+     * 异常链中是否有连接类异常（SQLState 08xxx）
+     */
+    static boolean isConnectFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                String state = ((SQLException) cause).getSQLState();
+                if (state != null && state.startsWith("08")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public HealthState getState(String key) {
+        TargetHealth health = healthMap.get(key);
+        return health == null ? HealthState.UP : health.getState();
+    }
+
+    public Map<String, TargetHealth> getHealthMap() {
+        return Collections.unmodifiableMap(healthMap);
+    }
+
+    private TargetHealth health(String key) {
+        return healthMap.computeIfAbsent(key, k -> new TargetHealth(k,
+                System.currentTimeMillis() + ThreadLocalRandom.current().nextLong(Math.max(1, config.getIntervalMillis()))));
+    }
+
+    /**
+     * 找出到期的目标并提交探测，新目标的首次探测时间在一个周期内随机分布
+     */
+    void tick() {
+        try {
+            Map<String, DataSource> targets = dynamicDataSource.getTargetDataSourceMap();
+            healthMap.keySet().retainAll(targets.keySet());
+            long now = System.currentTimeMillis();
+            targets.forEach((key, dataSource) -> {
+                TargetHealth health = health(key);
+                if (now < health.nextProbeMillis) {
+                    return;
+                }
+                health.nextProbeMillis = now + jitteredInterval();
+                boolean materialized = !(dataSource instanceof LazyTenantDataSource) || TenantPools.unwrap(dataSource) != null;
+                if ((materialized || health.getState() != HealthState.UP) && probing.add(key)) {
+                    submitProbe(health, dataSource);
+                }
+            });
+        } catch (RuntimeException e) {
+            log.warn("---数据源健康检查调度异常---:{}", e.getMessage());
+        }
+    }
+
+    private void submitProbe(TargetHealth health, DataSource dataSource) {
+        try {
+            probeExecutor.execute(() -> {
+                try {
+                    probe(health, dataSource);
+                } finally {
+                    probing.remove(health.getKey());
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            probing.remove(health.getKey());
+        }
+    }
+
+    private long jitteredInterval() {
+        long interval = config.getIntervalMillis();
+        long jitter = (long) (interval * config.getJitter());
+        return interval - jitter + ThreadLocalRandom.current().nextLong(2 * jitter + 1);
+    }
+
+    private void probe(TargetHealth health, DataSource dataSource) {
+        try (Connection connection = openProbeConnection(dataSource)) {
+            int timeoutSeconds = Math.max(1, config.getTimeoutMillis() / 1000);
+            if (!connection.isValid(timeoutSeconds)) {
+                throw new SQLException("连接校验失败");
+            }
+            onSuccess(health);
+        } catch (SQLException | RuntimeException e) {
+            onFailure(health, e);
+        }
+    }
+
+    /**
+     * 已有连接池时从连接池取连接（限时等待），懒加载未建池时直接用驱动建一条临时连接
+     */
+    private Connection openProbeConnection(DataSource dataSource) throws SQLException {
+        DruidDataSource pool = TenantPools.unwrap(dataSource);
+        if (pool != null) {
+            return pool.getConnection(config.getTimeoutMillis());
+        }
+        if (dataSource instanceof LazyTenantDataSource) {
+            return connectDirectly(((LazyTenantDataSource) dataSource).getDescriptor());
+        }
+        return dataSource.getConnection();
+    }
+
+    private Connection connectDirectly(DataSourceEntity ds) throws SQLException {
+        try {
+            Class.forName(ds.getDriverClassName());
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("驱动不存在:" + ds.getDriverClassName(), e);
+        }
+        Driver driver = DriverManager.getDriver(ds.getUrl());
+        Properties info = new Properties();
+        if (ds.getUsername() != null) {
+            info.setProperty("user", ds.getUsername());
+        }
+        if (ds.getPassword() != null) {
+            info.setProperty("password", ds.getPassword());
+        }
+        int timeout = config.getTimeoutMillis();
+        if (ds.getUrl().startsWith("jdbc:postgresql")) {
+            // PostgreSQL驱动的超时单位为秒
+            String seconds = String.valueOf(Math.max(1, timeout / 1000));
+            info.setProperty("connectTimeout", seconds);
+            info.setProperty("socketTimeout", seconds);
+            info.setProperty("loginTimeout", seconds);
+        } else {
+            info.setProperty("connectTimeout", String.valueOf(timeout));
+            info.setProperty("socketTimeout", String.valueOf(timeout));
+        }
+        Connection connection = driver.connect(ds.getUrl(), info);
+        if (connection == null) {
+            throw new SQLException("驱动不支持该地址:" + ds.getUrl());
+        }
+        return connection;
+    }
+
+    private void onSuccess(TargetHealth health) {
+        HealthState before = health.getState();
+        HealthState after = health.onSuccess(config.getRecoveryThreshold());
+        if (before != after) {
+            log.info("---数据源状态变化---:{},{} -> {}", health.getKey(), before, after);
+        }
+    }
+
+    private void onFailure(TargetHealth health, Exception e) {
+        HealthState before = health.getState();
+        HealthState after = health.onFailure(e.getMessage(), config.getDownThreshold());
+        if (before != after) {
+            log.warn("---数据源状态变化---:{},{} -> {},{}", health.getKey(), before, after, e.getMessage());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        ticker.shutdownNow();
+        probeExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,22 @@
+package com.xunfeng.example.dynamic.health;
+
+/**
+ * 数据源健康状态
+ *
+ * @author
+ * @date 2026/10/18 12:00
+ */
+public enum HealthState {
+    /**
+     * 正常
+     */
+    UP,
+    /**
+     * 出现失败但未达到熔断阈值，或熔断后正在恢复，仍允许访问
+     */
+    DEGRADED,
+    /**
+     * 熔断，访问直接失败或切换备用数据源
+     */
+    DOWN
+}
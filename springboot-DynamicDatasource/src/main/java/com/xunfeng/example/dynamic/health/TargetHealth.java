@@ -0,0 +1,63 @@
+package com.xunfeng.example.dynamic.health;
+
+import lombok.Getter;
+
+/**
+ * 单个路由目标的健康状态
+ *
+ * @author
+ * @date 2026/10/18 12:00
+ */
+@Getter
+public class TargetHealth {
+
+    private final String key;
+    private volatile HealthState state = HealthState.UP;
+    private int consecutiveFailures;
+    private int consecutiveSuccesses;
+    private volatile String lastError;
+    private volatile long lastChangeMillis = System.currentTimeMillis();
+    /**
+     * 下次主动探测的时间
+     */
+    volatile long nextProbeMillis;
+
+    TargetHealth(String key, long nextProbeMillis) {
+        this.key = key;
+        this.nextProbeMillis = nextProbeMillis;
+    }
+
+    /**
+     * 记录一次失败
+     *
+     * @return 变化后的状态
+     */
+    synchronized HealthState onFailure(String error, int downThreshold) {
+        consecutiveSuccesses = 0;
+        consecutiveFailures++;
+        lastError = error;
+        return transition(consecutiveFailures >= downThreshold ? HealthState.DOWN : HealthState.DEGRADED);
+    }
+
+    /**
+     * 记录一次成功，DOWN先恢复到DEGRADED，连续成功达到阈值后恢复UP
+     *
+     * @return 变化后的状态
+     */
+    synchronized HealthState onSuccess(int recoveryThreshold) {
+        consecutiveFailures = 0;
+        consecutiveSuccesses++;
+        if (state == HealthState.DOWN) {
+            return transition(HealthState.DEGRADED);
+        }
+        return transition(consecutiveSuccesses >= recoveryThreshold ? HealthState.UP : state);
+    }
+
+    private HealthState transition(HealthState next) {
+        if (next != state) {
+            state = next;
+            lastChangeMillis = System.currentTimeMillis();
+        }
+        return next;
+    }
+}
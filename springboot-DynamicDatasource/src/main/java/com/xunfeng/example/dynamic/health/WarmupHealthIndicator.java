@@ -0,0 +1,26 @@
+package com.xunfeng.example.dynamic.health;
+
+import com.xunfeng.example.dynamic.init.DataSourceWarmer;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+
+/**
+ * 数据源预热就绪检查，加入readiness组后预热未完成时 /actuator/health/readiness 返回OUT_OF_SERVICE
+ *
+ * @author
+ * @date 2026/10/18 23:00
+ */
+public class WarmupHealthIndicator implements HealthIndicator {
+
+    private final DataSourceWarmer warmer;
+
+    public WarmupHealthIndicator(DataSourceWarmer warmer) {
+        this.warmer = warmer;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = warmer.isReady() ? Health.up() : Health.outOfService();
+        return builder.withDetails(warmer.getProgress()).build();
+    }
+}
@@ -3,14 +3,15 @@ package com.xunfeng.example.dynamic.init;
 import com.baomidou.mybatisplus.core.toolkit.CollectionUtils;
 
 import com.xunfeng.example.domain.entity.DataSourceEntity;
-import com.xunfeng.example.dynamic.DynamicDataSource;
 import com.xunfeng.example.mapper.DataSourceMapper;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.Resource;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * @author 
@@ -20,14 +21,23 @@ import java.util.List;
 public class AnotherLoadDataSourceRunner implements CommandLineRunner {
     @Autowired
     private DataSourceMapper dataSourceMapper;
-    @Resource(name = "anotherDynamicDataSource")
-    private DynamicDataSource anotherDynamicDataSource;
+    @Resource
+    private DataSourceBootstrapper dataSourceBootstrapper;
+    @Autowired
+    private ObjectProvider<DataSourceReloader> dataSourceReloader;
+    @Autowired
+    private ObjectProvider<DataSourceWarmer> dataSourceWarmer;
 
     @Override
     public void run(String... args) throws Exception {
         List<DataSourceEntity> list = dataSourceMapper.selectList(null);
-        if (CollectionUtils.isNotEmpty(list)) {
-            anotherDynamicDataSource.createDataSource(list);
+        List<DataSourceEntity> enabled = list.stream().filter(DataSourceReloader::isEnabled).collect(Collectors.toList());
+        if (CollectionUtils.isNotEmpty(enabled)) {
+            dataSourceBootstrapper.bootstrap(enabled);
         }
+        // 后台预热，完成前readiness为OUT_OF_SERVICE
+        dataSourceWarmer.ifAvailable(DataSourceWarmer::start);
+        // 之后的新增、变更、删除由热加载增量处理
+        dataSourceReloader.ifAvailable(reloader -> reloader.start(list));
     }
 }
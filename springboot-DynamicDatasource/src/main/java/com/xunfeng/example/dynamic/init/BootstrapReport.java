@@ -0,0 +1,63 @@
+package com.xunfeng.example.dynamic.init;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 租户数据源启动报告
+ *
+ * @author
+ * @date 2026/10/18 10:00
+ */
+@Data
+public class BootstrapReport {
+    /**
+     * 启动加载总耗时（毫秒）
+     */
+    private long totalMillis;
+    /**
+     * 各租户初始化结果
+     */
+    private List<TenantInitResult> results = new ArrayList<>();
+
+    public long getSuccessCount() {
+        return results.stream().filter(TenantInitResult::isSuccess).count();
+    }
+
+    public long getFailureCount() {
+        return results.size() - getSuccessCount();
+    }
+
+    /**
+     * 按耗时倒序排列，方便定位拖慢启动的租户
+     */
+    public List<TenantInitResult> getSlowest(int limit) {
+        List<TenantInitResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingLong(TenantInitResult::getElapsedMillis).reversed());
+        return sorted.subList(0, Math.min(limit, sorted.size()));
+    }
+
+    @Data
+    public static class TenantInitResult {
+        /**
+         * 数据源key
+         */
+        private String key;
+        /**
+         * 连接名称
+         */
+        private String name;
+        private boolean success;
+        /**
+         * 初始化耗时（毫秒）
+         */
+        private long elapsedMillis;
+        /**
+         * 失败原因
+         */
+        private String error;
+    }
+}
@@ -0,0 +1,333 @@
+package com.xunfeng.example.dynamic.init;
+
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.TenantDataSourceFactory;
+import com.xunfeng.example.dynamic.group.ReplicaGroups;
+import com.xunfeng.example.dynamic.init.BootstrapReport.TenantInitResult;
+import com.xunfeng.example.dynamic.pool.PoolDrainer;
+import com.xunfeng.example.dynamic.pool.SharedPoolRegistry;
+import com.xunfeng.example.dynamic.pool.SharedSchemaDataSource;
+import com.xunfeng.example.dynamic.pool.TenantPoolManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 租户数据源并行初始化
+ * <p>
+ * 按配置的并发数同时初始化各租户连接池，单个租户超时或失败不会拖慢其他租户；
+ * 失败的租户进入隔离区，由后台按指数退避重试，成功后再加入路由表。
+ * 开启懒加载时只登记数据源描述，连接池在首次访问时创建。
+ *
+ * @author
+ * @date 2026/10/18 10:00
+ */
+@Slf4j
+@Component
+public class DataSourceBootstrapper implements DisposableBean {
+
+    @Resource(name = "anotherDynamicDataSource")
+    private DynamicDataSource dynamicDataSource;
+    @Resource
+    private TenantDataSourceFactory tenantDataSourceFactory;
+    @Resource
+    private DynamicDataSourceProperties properties;
+    @Resource
+    private TenantPoolManager tenantPoolManager;
+    @Resource
+    private PoolDrainer poolDrainer;
+    @Autowired
+    private ObjectProvider<SharedPoolRegistry> sharedPoolRegistry;
+
+    /**
+     * 超时中断与重试调度
+     */
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(daemonThreadFactory("ds-bootstrap-timer-"));
+    /**
+     * 隔离租户的后台重试线程，与调度线程分开，避免重试阻塞超时中断；
+     * 线程数与初始化并发数相同，个别租户卡住时其他租户仍按时重试
+     */
+    private ThreadPoolExecutor retryExecutor;
+    /**
+     * 初始化失败、等待重试的租户
+     */
+    private final Map<String, DataSourceEntity> quarantine = new ConcurrentHashMap<>();
+
+    private volatile BootstrapReport lastReport;
+
+    @PostConstruct
+    public void init() {
+        int threads = Math.max(1, properties.getBootstrap().getConcurrency());
+        retryExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                daemonThreadFactory("ds-bootstrap-retry-"));
+        retryExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 并行初始化所有租户数据源，并将成功的连接池一次性发布到路由表
+     *
+     * @param dataSources 数据源实体集合
+     * @return 启动报告
+     */
+    public BootstrapReport bootstrap(List<DataSourceEntity> dataSources) {
+        dynamicDataSource.setReplicaGroups(ReplicaGroups.from(dataSources));
+        if (properties.getLazy().isEnabled()) {
+            return register(dataSources);
+        }
+        DynamicDataSourceProperties.Bootstrap config = properties.getBootstrap();
+        int threads = Math.max(1, Math.min(config.getConcurrency(), dataSources.size()));
+        ExecutorService executor = Executors.newFixedThreadPool(threads, daemonThreadFactory("ds-bootstrap-"));
+        Map<String, DataSource> created = new ConcurrentHashMap<>();
+        BootstrapReport report = new BootstrapReport();
+        long start = System.nanoTime();
+        try {
+            List<Future<TenantInitResult>> futures = new ArrayList<>(dataSources.size());
+            for (DataSourceEntity ds : dataSources) {
+                futures.add(executor.submit(() -> initTenant(ds, created)));
+            }
+            for (Future<TenantInitResult> future : futures) {
+                report.getResults().add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            log.error("---数据源并行初始化异常---", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        dynamicDataSource.putDataSources(created).values().forEach(DynamicDataSource::closeQuietly);
+        report.setTotalMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        logReport(report);
+        this.lastReport = report;
+        return report;
+    }
+
+    /**
+     * 懒加载模式：只登记描述信息，不建立连接
+     */
+    private BootstrapReport register(List<DataSourceEntity> dataSources) {
+        long start = System.nanoTime();
+        Map<String, DataSource> registered = new LinkedHashMap<>();
+        for (DataSourceEntity ds : dataSources) {
+            String key = String.valueOf(ds.getId());
+            try {
+                registered.put(key, open(key, ds));
+            } catch (SQLException e) {
+                log.error("---数据源登记错误---:{}({}),{}", key, ds.getName(), e.getMessage());
+                quarantine(ds, properties.getBootstrap().getRetryInitialDelayMillis());
+            }
+        }
+        dynamicDataSource.putDataSources(registered).values().forEach(DynamicDataSource::closeQuietly);
+        BootstrapReport report = new BootstrapReport();
+        report.setTotalMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        log.info("---数据源懒加载登记完成---:总数{},耗时{}ms", registered.size(), report.getTotalMillis());
+        this.lastReport = report;
+        return report;
+    }
+
+    /**
+     * 初始化单个租户，失败时放入隔离区并安排重试
+     */
+    private TenantInitResult initTenant(DataSourceEntity ds, Map<String, DataSource> created) {
+        String key = String.valueOf(ds.getId());
+        TenantInitResult result = new TenantInitResult();
+        result.setKey(key);
+        result.setName(ds.getName());
+        DataSource dataSource = createWithTimeout(ds, result);
+        if (dataSource != null) {
+            created.put(key, dataSource);
+            quarantine.remove(key);
+        } else {
+            quarantine(ds, properties.getBootstrap().getRetryInitialDelayMillis());
+        }
+        return result;
+    }
+
+    /**
+     * 为租户创建路由目标：同服务器共享的连接池、懒加载数据源或已初始化的独立连接池
+     *
+     * @param key 租户key
+     * @param ds  数据源实体
+     * @return 可加入路由表的数据源
+     */
+    public DataSource open(String key, DataSourceEntity ds) throws SQLException {
+        boolean lazy = properties.getLazy().isEnabled();
+        SharedPoolRegistry shared = sharedPoolRegistry.getIfAvailable();
+        if (shared != null && shared.supports(ds)) {
+            SharedSchemaDataSource dataSource = shared.acquire(key, ds);
+            if (!lazy) {
+                // 借一次连接，确认服务器可达并且租户的库存在
+                try (Connection ignored = dataSource.getConnection()) {
+                    log.debug("---共享连接池切换库成功---:{}", key);
+                } catch (SQLException | RuntimeException e) {
+                    dataSource.close();
+                    throw e;
+                }
+            }
+            return dataSource;
+        }
+        return lazy ? tenantPoolManager.register(key, ds) : tenantDataSourceFactory.create(ds);
+    }
+
+    /**
+     * 在超时时间内创建连接池，超时由定时任务中断工作线程
+     */
+    private DataSource createWithTimeout(DataSourceEntity ds, TenantInitResult result) {
+        int timeout = properties.getBootstrap().getTenantTimeoutMillis();
+        Watchdog watchdog = new Watchdog(Thread.currentThread());
+        ScheduledFuture<?> timer = scheduler.schedule(watchdog::fire, timeout, TimeUnit.MILLISECONDS);
+        long start = System.nanoTime();
+        DataSource dataSource = null;
+        try {
+            dataSource = open(result.getKey(), ds);
+        } catch (Exception e) {
+            result.setError(e.getMessage());
+        } finally {
+            timer.cancel(false);
+            watchdog.disarm();
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        result.setElapsedMillis(elapsed);
+        if (dataSource != null && (watchdog.fired || elapsed > timeout)) {
+            DynamicDataSource.closeQuietly(dataSource);
+            dataSource = null;
+            result.setError("初始化超时:" + elapsed + "ms");
+        }
+        result.setSuccess(dataSource != null);
+        if (dataSource == null) {
+            log.error("---数据源初始化错误---:{}({}),{}", result.getKey(), ds.getName(), result.getError());
+        }
+        return dataSource;
+    }
+
+    /**
+     * 初始化失败的租户交给隔离区，按指数退避在后台重试
+     */
+    public void retryLater(DataSourceEntity ds) {
+        quarantine(ds, properties.getBootstrap().getRetryInitialDelayMillis());
+    }
+
+    /**
+     * 放入隔离区，延迟后在后台重试；已在隔离区时只更新描述，沿用已有的重试
+     */
+    private void quarantine(DataSourceEntity ds, long delayMillis) {
+        String key = String.valueOf(ds.getId());
+        if (quarantine.put(key, ds) != null) {
+            return;
+        }
+        scheduler.schedule(() -> retryExecutor.execute(() -> retry(key, delayMillis)), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void retry(String key, long lastDelayMillis) {
+        DataSourceEntity ds = quarantine.get(key);
+        if (ds == null) {
+            // 已被移除或已恢复
+            return;
+        }
+        TenantInitResult result = new TenantInitResult();
+        result.setKey(key);
+        DataSource dataSource = createWithTimeout(ds, result);
+        if (dataSource != null && quarantine.remove(key, ds)) {
+            poolDrainer.drain(key, dynamicDataSource.replaceDataSource(key, dataSource));
+            log.info("---隔离数据源重试成功---:{},耗时{}ms", key, result.getElapsedMillis());
+            return;
+        }
+        if (dataSource != null) {
+            DynamicDataSource.closeQuietly(dataSource);
+            return;
+        }
+        long nextDelay = Math.min(lastDelayMillis * 2, properties.getBootstrap().getRetryMaxDelayMillis());
+        if (quarantine.containsKey(key)) {
+            scheduler.schedule(() -> retryExecutor.execute(() -> retry(key, nextDelay)), nextDelay, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 不再重试某个租户（例如已从数据源表中删除）
+     */
+    public void forget(String key) {
+        quarantine.remove(key);
+    }
+
+    public Set<String> getQuarantinedKeys() {
+        return quarantine.keySet();
+    }
+
+    public BootstrapReport getLastReport() {
+        return lastReport;
+    }
+
+    private void logReport(BootstrapReport report) {
+        log.info("---数据源启动加载完成---:总数{},成功{},失败{},总耗时{}ms", report.getResults().size(),
+                report.getSuccessCount(), report.getFailureCount(), report.getTotalMillis());
+        for (TenantInitResult result : report.getSlowest(report.getResults().size())) {
+            log.info("    {}({}) {} {}ms{}", result.getKey(), result.getName(), result.isSuccess() ? "成功" : "失败",
+                    result.getElapsedMillis(), result.isSuccess() ? "" : "," + result.getError());
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        retryExecutor.shutdownNow();
+    }
+
+    private static CustomizableThreadFactory daemonThreadFactory(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    /**
+     * 超时中断器，disarm之后不会再中断工作线程
+     */
+    private static class Watchdog {
+        private final Thread worker;
+        private boolean armed = true;
+        private volatile boolean fired;
+
+        Watchdog(Thread worker) {
+            this.worker = worker;
+        }
+
+        synchronized void fire() {
+            if (armed) {
+                fired = true;
+                worker.interrupt();
+            }
+        }
+
+        synchronized void disarm() {
+            armed = false;
+            // 清除可能残留的中断标记，避免影响线程池中的下一个任务
+            Thread.interrupted();
+        }
+    }
+}
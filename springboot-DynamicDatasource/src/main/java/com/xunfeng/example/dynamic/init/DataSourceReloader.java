@@ -0,0 +1,204 @@
+package com.xunfeng.example.dynamic.init;
+
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.group.ReplicaGroups;
+import com.xunfeng.example.dynamic.pool.PoolDrainer;
+import com.xunfeng.example.mapper.DataSourceMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 数据源表变更热加载
+ * <p>
+ * 按update_time增量拉取data_source表的变更，只处理有差异的租户：新增的建连接池，连接信息变化的
+ * 用新连接池替换，删除或停用的从路由表移除；被替换、移除的旧连接池等借出的连接归还后再关闭。
+ * update_time为空或物理删除的记录靠定期全量比对发现。
+ *
+ * @author
+ * @date 2026/10/18 17:00
+ */
+@Slf4j
+public class DataSourceReloader implements DisposableBean {
+
+    private final DataSourceMapper dataSourceMapper;
+    private final DynamicDataSource dynamicDataSource;
+    private final DataSourceBootstrapper bootstrapper;
+    private final PoolDrainer poolDrainer;
+    private final DynamicDataSourceProperties properties;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 已生效的数据源描述，只在轮询线程（加锁）内修改
+     */
+    private final Map<String, DataSourceEntity> known = new HashMap<>();
+    /**
+     * 已处理到的最大update_time
+     */
+    private LocalDateTime watermark;
+    private long lastFullSyncMillis;
+    private boolean started;
+
+    public DataSourceReloader(DataSourceMapper dataSourceMapper, DynamicDataSource dynamicDataSource,
+                              DataSourceBootstrapper bootstrapper, PoolDrainer poolDrainer,
+                              DynamicDataSourceProperties properties) {
+        this.dataSourceMapper = dataSourceMapper;
+        this.dynamicDataSource = dynamicDataSource;
+        this.bootstrapper = bootstrapper;
+        this.poolDrainer = poolDrainer;
+        this.properties = properties;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ds-reloader-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * 未删除的数据源才加入路由
+     * <p>
+     * state只记录上次连接的结果（0连接失败，1连接成功），不是停用标记：连接失败的数据源照常加入，
+     * 由启动隔离区和健康检查处理，否则一次连不上就永远不会再被加载。
+     */
+    public static boolean isEnabled(DataSourceEntity ds) {
+        return !"1".equals(ds.getDelFlag());
+    }
+
+    /**
+     * 以启动时加载的数据为基线开始轮询
+     *
+     * @param loaded 启动时读取的全部记录
+     */
+    public synchronized void start(List<DataSourceEntity> loaded) {
+        if (started) {
+            return;
+        }
+        started = true;
+        for (DataSourceEntity ds : loaded) {
+            advanceWatermark(ds);
+            if (isEnabled(ds)) {
+                known.put(String.valueOf(ds.getId()), ds);
+            }
+        }
+        lastFullSyncMillis = System.currentTimeMillis();
+        long interval = properties.getReload().getIntervalMillis();
+        scheduler.scheduleWithFixedDelay(this::poll, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 一次轮询：到期时全量比对，否则按update_time增量拉取
+     */
+    synchronized void poll() {
+        try {
+            long now = System.currentTimeMillis();
+            if (now - lastFullSyncMillis >= properties.getReload().getFullSyncIntervalMillis()) {
+                apply(dataSourceMapper.selectList(null), true);
+                lastFullSyncMillis = now;
+            } else if (watermark != null) {
+                // 时间精度只到秒，用>=重复拉取同一秒的记录，没有差异的记录不会被处理
+                apply(dataSourceMapper.selectList(Wrappers.<DataSourceEntity>lambdaQuery()
+                        .ge(DataSourceEntity::getUpdateTime, watermark)), false);
+            }
+        } catch (RuntimeException e) {
+            log.warn("---数据源变更检查异常---:{}", e.getMessage());
+        }
+    }
+
+    private void apply(List<DataSourceEntity> rows, boolean full) {
+        Map<String, DataSource> upserts = new LinkedHashMap<>();
+        Set<String> removals = new HashSet<>();
+        Set<String> seen = new HashSet<>();
+        boolean groupsChanged = false;
+        for (DataSourceEntity row : rows) {
+            advanceWatermark(row);
+            String key = String.valueOf(row.getId());
+            if (!isEnabled(row)) {
+                if (known.remove(key) != null) {
+                    removals.add(key);
+                }
+                continue;
+            }
+            seen.add(key);
+            DataSourceEntity old = known.put(key, row);
+            if (old == null || connectionChanged(old, row)) {
+                DataSource dataSource = open(key, row);
+                if (dataSource != null) {
+                    upserts.put(key, dataSource);
+                }
+            }
+            groupsChanged |= old == null || !Objects.equals(old.getPrimaryId(), row.getPrimaryId())
+                    || !Objects.equals(old.getWeight(), row.getWeight());
+        }
+        if (full) {
+            // 物理删除的记录
+            for (String key : new ArrayList<>(known.keySet())) {
+                if (!seen.contains(key)) {
+                    known.remove(key);
+                    removals.add(key);
+                }
+            }
+        }
+        if (upserts.isEmpty() && removals.isEmpty() && !groupsChanged) {
+            return;
+        }
+        // 先发布新连接池，再更新数据源组，最后摘除旧数据源，保证数据源组引用的key都已可路由
+        dynamicDataSource.putDataSources(upserts).forEach(poolDrainer::drain);
+        dynamicDataSource.setReplicaGroups(ReplicaGroups.from(new ArrayList<>(known.values())));
+        for (String key : removals) {
+            bootstrapper.forget(key);
+            poolDrainer.drain(key, dynamicDataSource.removeDataSource(key));
+        }
+        log.info("---数据源变更已生效---:新增或更新{},移除{}", upserts.keySet(), removals);
+    }
+
+    /**
+     * 为新增或变更的记录创建数据源，失败时交给隔离区重试，旧连接池继续服务
+     */
+    private DataSource open(String key, DataSourceEntity ds) {
+        // 先停止旧描述的重试，避免旧配置的连接池在之后覆盖新连接池
+        bootstrapper.forget(key);
+        try {
+            return bootstrapper.open(key, ds);
+        } catch (Exception e) {
+            log.error("---数据源变更后初始化失败，稍后重试---:{}({}),{}", key, ds.getName(), e.getMessage());
+            bootstrapper.retryLater(ds);
+            return null;
+        }
+    }
+
+    /**
+     * 影响连接池的字段：地址、驱动、账号密码
+     */
+    private static boolean connectionChanged(DataSourceEntity old, DataSourceEntity row) {
+        return !Objects.equals(old.getUrl(), row.getUrl())
+                || !Objects.equals(old.getDriverClassName(), row.getDriverClassName())
+                || !Objects.equals(old.getUsername(), row.getUsername())
+                || !Objects.equals(old.getPassword(), row.getPassword());
+    }
+
+    private void advanceWatermark(DataSourceEntity ds) {
+        if (ds.getUpdateTime() != null && (watermark == null || ds.getUpdateTime().isAfter(watermark))) {
+            watermark = ds.getUpdateTime();
+        }
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,292 @@
+package com.xunfeng.example.dynamic.init;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.pool.LazyTenantDataSource;
+import com.xunfeng.example.dynamic.pool.SharedSchemaDataSource;
+import com.xunfeng.example.dynamic.pool.TenantPools;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 数据源预热
+ * <p>
+ * 启动加载完成后在后台逐个预热路由目标：同时借出max(minIdle, 1)条连接，把连接池按自身的minIdle建满
+ * （不修改连接池配置），再在每条连接上预编译预热语句填充PSCache，无参数的语句顺带执行一次。
+ * 懒加载租户只预热warmup.hot-keys中的，且只在存活连接池名额和连接预算有空余时建池，不淘汰已有连接池；
+ * 共享连接池由多个租户共用，只借一条连接预编译，不改动其minIdle。
+ * 预热成功的数据源达到配置比例前应用报告为未就绪；预热失败的数据源按退避重试，部署时不可达的租户
+ * 恢复后仍能让应用就绪，已从路由表移除或替换的不再重试，也不计入比例。
+ *
+ * @author
+ * @date 2026/10/18 23:00
+ */
+@Slf4j
+public class DataSourceWarmer implements DisposableBean {
+
+    private final DynamicDataSource dynamicDataSource;
+    private final ObjectProvider<SqlSessionFactory> sqlSessionFactory;
+    private final DynamicDataSourceProperties.Warmup config;
+    private final int concurrency;
+
+    private final AtomicInteger warmed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger skipped = new AtomicInteger();
+    /**
+     * 尚未完成首次预热的数据源数量
+     */
+    private final AtomicInteger pending = new AtomicInteger();
+    private volatile int total = -1;
+    private volatile long startMillis;
+    private volatile long finishMillis;
+    private volatile ScheduledExecutorService executor;
+
+    public DataSourceWarmer(DynamicDataSource dynamicDataSource, ObjectProvider<SqlSessionFactory> sqlSessionFactory,
+                            DynamicDataSourceProperties properties) {
+        this.dynamicDataSource = dynamicDataSource;
+        this.sqlSessionFactory = sqlSessionFactory;
+        this.config = properties.getWarmup();
+        this.concurrency = Math.max(1, properties.getBootstrap().getConcurrency());
+    }
+
+    /**
+     * 预热当前路由表中已建池的数据源和配置的懒加载租户，立即返回
+     */
+    public synchronized void start() {
+        if (total >= 0) {
+            return;
+        }
+        List<WarmupStatement> statements = resolveStatements();
+        Set<String> hotKeys = new HashSet<>(config.getHotKeys());
+        Map<String, DataSource> targets = new LinkedHashMap<>();
+        dynamicDataSource.getTargetDataSourceMap().forEach((key, dataSource) -> {
+            if (!(dataSource instanceof LazyTenantDataSource) || hotKeys.contains(key)) {
+                targets.put(key, dataSource);
+            }
+        });
+        startMillis = System.currentTimeMillis();
+        total = targets.size();
+        if (targets.isEmpty()) {
+            finishMillis = startMillis;
+            return;
+        }
+        pending.set(total);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ds-warmup-");
+        threadFactory.setDaemon(true);
+        executor = Executors.newScheduledThreadPool(Math.min(concurrency, targets.size()), threadFactory);
+        targets.forEach((key, dataSource) -> executor.execute(() -> warm(key, dataSource, statements, 0)));
+        log.info("---开始预热数据源---:{}个,预热语句{}条", total, statements.size());
+    }
+
+    /**
+     * 预热一个数据源
+     *
+     * @param attempt 第几次重试，0为首次预热；重试期间失败计数保持不变，成功时转为预热成功
+     */
+    private void warm(String key, DataSource dataSource, List<WarmupStatement> statements, int attempt) {
+        if (attempt > 0 && dynamicDataSource.getTargetDataSourceMap().get(key) != dataSource) {
+            failed.decrementAndGet();
+            skipped.incrementAndGet();
+            log.info("---数据源已移除或替换,停止预热重试---:{}", key);
+            return;
+        }
+        List<Connection> connections = new ArrayList<>();
+        boolean retry = false;
+        try {
+            DruidDataSource pool;
+            DataSource source = dataSource;
+            if (dataSource instanceof LazyTenantDataSource) {
+                pool = ((LazyTenantDataSource) dataSource).materializeIfRoom();
+                if (pool == null) {
+                    if (attempt > 0) {
+                        failed.decrementAndGet();
+                    }
+                    skipped.incrementAndGet();
+                    log.info("---连接池名额不足,跳过预热---:{}", key);
+                    return;
+                }
+                // 直接从刚建的连接池借，期间被回收时报错而不是重新建池淘汰别的租户
+                source = pool;
+            } else {
+                pool = TenantPools.unwrap(dataSource);
+            }
+            // 共享连接池由多个租户共用，只借一条；其余按连接池自身的minIdle建满，不修改配置
+            boolean shared = dataSource instanceof SharedSchemaDataSource;
+            int size = pool == null || shared ? 1 : Math.min(Math.max(pool.getMinIdle(), 1), pool.getMaxActive());
+            // 同时持有多条连接，迫使连接池建立对应数量的物理连接
+            while (connections.size() < size) {
+                connections.add(source.getConnection());
+            }
+            for (Connection connection : connections) {
+                prepare(key, connection, statements);
+            }
+            if (attempt > 0) {
+                failed.decrementAndGet();
+            }
+            if (pool != null && (pool.isClosed() || TenantPools.unwrap(dataSource) != pool)) {
+                // 预热期间连接池被回收或替换，预建的连接已经随之关闭
+                skipped.incrementAndGet();
+                log.info("---预热期间连接池已回收---:{}", key);
+            } else {
+                warmed.incrementAndGet();
+            }
+        } catch (SQLException | RuntimeException e) {
+            if (attempt == 0) {
+                failed.incrementAndGet();
+            }
+            retry = true;
+            log.warn("---数据源预热失败---:{},第{}次重试,{}", key, attempt, e.getMessage());
+        } finally {
+            for (Connection connection : connections) {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    log.debug("---归还预热连接失败---:{},{}", key, e.getMessage());
+                }
+            }
+            if (attempt == 0) {
+                onFinished();
+            }
+        }
+        if (retry) {
+            scheduleRetry(key, dataSource, statements, attempt + 1);
+        }
+    }
+
+    /**
+     * 按退避延迟重试，已就绪或已关闭时不再重试
+     */
+    private void scheduleRetry(String key, DataSource dataSource, List<WarmupStatement> statements, int attempt) {
+        if (isReady()) {
+            return;
+        }
+        long delay = config.getRetryInitialDelayMillis() << Math.min(attempt - 1, 20);
+        delay = Math.min(delay, config.getRetryMaxDelayMillis());
+        try {
+            executor.schedule(() -> warm(key, dataSource, statements, attempt), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("---预热已停止,不再重试---:{}", key);
+        }
+    }
+
+    /**
+     * 预编译语句，关闭后由Druid放入该连接的PSCache；单条语句失败（例如租户缺表）不影响预热结果
+     */
+    private void prepare(String key, Connection connection, List<WarmupStatement> statements) {
+        for (WarmupStatement statement : statements) {
+            try (PreparedStatement ps = connection.prepareStatement(statement.sql)) {
+                if (statement.executable) {
+                    ps.setMaxRows(1);
+                    try (ResultSet ignored = ps.executeQuery()) {
+                        // 只需要执行，结果丢弃
+                    }
+                }
+            } catch (SQLException e) {
+                log.debug("---预热语句执行失败---:{},{},{}", key, statement.sql, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 所有数据源都完成首次预热，失败的仍在后台重试
+     */
+    private void onFinished() {
+        if (pending.decrementAndGet() == 0) {
+            finishMillis = System.currentTimeMillis();
+            log.info("---数据源预热完成---:成功{},失败{},跳过{},耗时{}ms", warmed.get(), failed.get(), skipped.get(),
+                    finishMillis - startMillis);
+        }
+    }
+
+    /**
+     * 预热语句：直接配置的SQL，以及按id取自MyBatis映射语句的SQL（与运行时执行的SQL文本一致才能命中PSCache）
+     */
+    private List<WarmupStatement> resolveStatements() {
+        List<WarmupStatement> statements = new ArrayList<>();
+        for (String sql : config.getStatements()) {
+            statements.add(new WarmupStatement(sql, sql.indexOf('?') < 0));
+        }
+        SqlSessionFactory factory = sqlSessionFactory.getIfAvailable();
+        if (factory == null) {
+            return statements;
+        }
+        org.apache.ibatis.session.Configuration configuration = factory.getConfiguration();
+        for (String id : config.getMappedStatements()) {
+            try {
+                BoundSql boundSql = configuration.getMappedStatement(id).getBoundSql(new HashMap<>());
+                statements.add(new WarmupStatement(boundSql.getSql(), boundSql.getParameterMappings().isEmpty()));
+            } catch (RuntimeException e) {
+                // 动态SQL的文本取决于参数，无法预先得到
+                log.warn("---预热语句无法解析---:{},{}", id, e.getMessage());
+            }
+        }
+        return statements;
+    }
+
+    /**
+     * 是否可以接收流量：预热成功的数据源达到配置比例，因名额不足、被回收或被移除而跳过的不计入；
+     * 首次预热结束但成功数不够时仍未就绪，等失败的数据源重试成功
+     */
+    public boolean isReady() {
+        int count = total;
+        if (count < 0) {
+            return false;
+        }
+        return warmed.get() >= Math.ceil((count - skipped.get()) * config.getReadyRatio());
+    }
+
+    public Map<String, Object> getProgress() {
+        Map<String, Object> progress = new HashMap<>();
+        progress.put("total", Math.max(total, 0));
+        progress.put("warmed", warmed.get());
+        progress.put("failed", failed.get());
+        progress.put("skipped", skipped.get());
+        progress.put("finished", finishMillis > 0);
+        if (startMillis > 0) {
+            progress.put("elapsedMillis", (finishMillis > 0 ? finishMillis : System.currentTimeMillis()) - startMillis);
+        }
+        return Collections.unmodifiableMap(progress);
+    }
+
+    @Override
+    public void destroy() {
+        ScheduledExecutorService current = executor;
+        if (current != null) {
+            current.shutdownNow();
+        }
+    }
+
+    private static final class WarmupStatement {
+        private final String sql;
+        private final boolean executable;
+
+        WarmupStatement(String sql, boolean executable) {
+            this.sql = sql;
+            this.executable = executable;
+        }
+    }
+}
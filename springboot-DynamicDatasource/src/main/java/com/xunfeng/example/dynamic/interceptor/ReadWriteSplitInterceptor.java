@@ -0,0 +1,48 @@
+package com.xunfeng.example.dynamic.interceptor;
+
+import com.xunfeng.example.dynamic.ReadWriteContextHolder;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.executor.Executor;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.SqlCommandType;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+import org.apache.ibatis.session.RowBounds;
+
+/**
+ * 读写分离拦截器
+ * <p>
+ * 查询语句执行期间标记为只读，MyBatis在此期间获取连接时由DynamicDataSource路由到从库；
+ * 写语句不做标记，始终使用主库。事务中的连接在事务开始时已绑定主库，不受影响。
+ *
+ * @author
+ * @date 2026/10/18 13:00
+ */
+@Intercepts({
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class}),
+        @Signature(type = Executor.class, method = "query",
+                args = {MappedStatement.class, Object.class, RowBounds.class, ResultHandler.class, CacheKey.class, BoundSql.class}),
+        @Signature(type = Executor.class, method = "queryCursor",
+                args = {MappedStatement.class, Object.class, RowBounds.class})
+})
+public class ReadWriteSplitInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        MappedStatement ms = (MappedStatement) invocation.getArgs()[0];
+        if (ms.getSqlCommandType() != SqlCommandType.SELECT) {
+            return invocation.proceed();
+        }
+        Boolean previous = ReadWriteContextHolder.markRead();
+        try {
+            return invocation.proceed();
+        } finally {
+            ReadWriteContextHolder.restore(previous);
+        }
+    }
+}
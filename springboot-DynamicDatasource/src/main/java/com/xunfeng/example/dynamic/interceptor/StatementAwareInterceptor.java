@@ -0,0 +1,50 @@
+package com.xunfeng.example.dynamic.interceptor;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.sql.Statement;
+
+/**
+ * 把正在执行的Statement交给ResultHandler
+ * <p>
+ * ResultHandler实现{@link StatementAware}时，查询执行期间可以拿到对应的Statement，
+ * 用于在处理中途调用{@link Statement#cancel()}终止数据库端的查询。
+ * MySQL流式读取时仅调用ResultContext.stop()不会停止读取，关闭结果集时驱动仍会读完剩余的行。
+ *
+ * @author
+ * @date 2026/10/19 16:00
+ */
+@Intercepts(@Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}))
+public class StatementAwareInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Object handler = invocation.getArgs()[1];
+        if (!(handler instanceof StatementAware)) {
+            return invocation.proceed();
+        }
+        StatementAware aware = (StatementAware) handler;
+        aware.setStatement((Statement) invocation.getArgs()[0]);
+        try {
+            return invocation.proceed();
+        } finally {
+            aware.setStatement(null);
+        }
+    }
+
+    /**
+     * 需要拿到执行中Statement的ResultHandler
+     */
+    public interface StatementAware {
+
+        /**
+         * 查询开始前传入Statement，查询结束后传入null
+         */
+        void setStatement(Statement statement);
+    }
+}
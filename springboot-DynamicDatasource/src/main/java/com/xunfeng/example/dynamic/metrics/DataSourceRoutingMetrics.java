@@ -0,0 +1,171 @@
+package com.xunfeng.example.dynamic.metrics;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.pool.TenantPools;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 动态数据源路由与连接池指标
+ * <p>
+ * 按数据源key统计路由次数、获取连接耗时，并为每个key注册Druid连接池的活跃、空闲、等待线程、
+ * 建连失败数量。租户key数量不可控，超过上限的key统一记到{@link #OTHER}下，避免指标无限增长。
+ *
+ * @author
+ * @date 2026/10/18 14:00
+ */
+public class DataSourceRoutingMetrics {
+
+    public static final String OTHER = "other";
+
+    private static final String PREFIX = "dynamic.datasource.";
+
+    private final MeterRegistry registry;
+    private final DynamicDataSource dynamicDataSource;
+    private final int maxTaggedKeys;
+
+    private final Map<String, KeyMeters> keyMeters = new ConcurrentHashMap<>();
+    private final KeyMeters otherMeters;
+    private final Counter fallbacks;
+    private final Counter rejections;
+    /**
+     * 上次清理时的路由表快照，路由表没变时超出上限的key直接计入other，不再加锁清理
+     */
+    private volatile Map<String, ?> prunedTargets;
+
+    public DataSourceRoutingMetrics(MeterRegistry registry, DynamicDataSource dynamicDataSource, int maxTaggedKeys) {
+        this.registry = registry;
+        this.dynamicDataSource = dynamicDataSource;
+        this.maxTaggedKeys = maxTaggedKeys;
+        this.otherMeters = new KeyMeters(OTHER, false);
+        this.fallbacks = Counter.builder(PREFIX + "fallbacks")
+                .description("路由key不存在而回退到默认数据源的次数")
+                .register(registry);
+        this.rejections = Counter.builder(PREFIX + "rejections")
+                .description("数据源熔断导致直接失败的次数")
+                .register(registry);
+    }
+
+    public void recordLookup(String key) {
+        meters(key).lookups.increment();
+    }
+
+    public void recordFallback() {
+        fallbacks.increment();
+    }
+
+    public void recordRejection() {
+        rejections.increment();
+    }
+
+    /**
+     * 记录一次获取连接的耗时
+     */
+    public void recordBorrow(String key, long nanos, boolean success) {
+        KeyMeters meters = meters(key);
+        (success ? meters.borrowSuccess : meters.borrowFailure).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public int getTaggedKeyCount() {
+        return keyMeters.size();
+    }
+
+    private KeyMeters meters(String key) {
+        KeyMeters meters = keyMeters.get(key);
+        if (meters != null) {
+            return meters;
+        }
+        if (keyMeters.size() >= maxTaggedKeys && prunedTargets == dynamicDataSource.getTargetDataSourceMap()) {
+            return otherMeters;
+        }
+        return register(key);
+    }
+
+    private synchronized KeyMeters register(String key) {
+        KeyMeters meters = keyMeters.get(key);
+        if (meters != null) {
+            return meters;
+        }
+        if (keyMeters.size() >= maxTaggedKeys) {
+            prune();
+            if (keyMeters.size() >= maxTaggedKeys) {
+                return otherMeters;
+            }
+        }
+        meters = new KeyMeters(key, true);
+        keyMeters.put(key, meters);
+        return meters;
+    }
+
+    /**
+     * 释放已从路由表移除的key占用的名额
+     */
+    private void prune() {
+        Map<String, ?> targets = dynamicDataSource.getTargetDataSourceMap();
+        prunedTargets = targets;
+        keyMeters.entrySet().removeIf(entry -> {
+            if (targets.containsKey(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().meters.forEach(registry::remove);
+            return true;
+        });
+    }
+
+    private double poolStat(String key, ToDoubleFunction<DruidDataSource> stat) {
+        DruidDataSource pool = TenantPools.unwrap(dynamicDataSource.getTargetDataSourceMap().get(key));
+        return pool == null ? 0 : stat.applyAsDouble(pool);
+    }
+
+    private class KeyMeters {
+        private final List<Meter> meters = new ArrayList<>();
+        private final Counter lookups;
+        private final Timer borrowSuccess;
+        private final Timer borrowFailure;
+
+        KeyMeters(String key, boolean poolGauges) {
+            lookups = add(Counter.builder(PREFIX + "lookups").tag("key", key)
+                    .description("路由到该数据源的次数").register(registry));
+            borrowSuccess = add(borrowTimer(key, "success"));
+            borrowFailure = add(borrowTimer(key, "failure"));
+            if (poolGauges) {
+                gauge(key, "pool.active", "借出的连接数", DruidDataSource::getActiveCount);
+                gauge(key, "pool.idle", "空闲的连接数", DruidDataSource::getPoolingCount);
+                gauge(key, "pool.waiting", "等待获取连接的线程数", DruidDataSource::getWaitThreadCount);
+                gauge(key, "pool.create.errors", "建立物理连接失败次数", DruidDataSource::getCreateErrorCount);
+            }
+        }
+
+        private Timer borrowTimer(String key, String outcome) {
+            return Timer.builder(PREFIX + "borrow")
+                    .tag("key", key)
+                    .tag("outcome", outcome)
+                    .description("从连接池获取连接的耗时")
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+
+        private void gauge(String key, String name, String description, ToDoubleFunction<DruidDataSource> stat) {
+            add(Gauge.builder(PREFIX + name, () -> poolStat(key, stat))
+                    .tag("key", key)
+                    .description(description)
+                    .register(registry));
+        }
+
+        private <M extends Meter> M add(M meter) {
+            meters.add(meter);
+            return meter;
+        }
+    }
+}
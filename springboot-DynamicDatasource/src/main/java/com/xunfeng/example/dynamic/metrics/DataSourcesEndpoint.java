@@ -0,0 +1,107 @@
+package com.xunfeng.example.dynamic.metrics;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.group.ReplicaGroup;
+import com.xunfeng.example.dynamic.health.DataSourceHealthChecker;
+import com.xunfeng.example.dynamic.init.BootstrapReport;
+import com.xunfeng.example.dynamic.init.DataSourceBootstrapper;
+import com.xunfeng.example.dynamic.pool.LazyTenantDataSource;
+import com.xunfeng.example.dynamic.pool.TenantPoolManager;
+import com.xunfeng.example.dynamic.pool.TenantPools;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * 动态数据源端点：/actuator/datasources 列出所有路由目标及其连接池状态
+ *
+ * @author
+ * @date 2026/10/18 14:00
+ */
+@Endpoint(id = "datasources")
+public class DataSourcesEndpoint {
+
+    private final DynamicDataSource dynamicDataSource;
+    private final ObjectProvider<DataSourceHealthChecker> healthChecker;
+    private final ObjectProvider<DataSourceBootstrapper> bootstrapper;
+    private final ObjectProvider<TenantPoolManager> poolManager;
+
+    public DataSourcesEndpoint(DynamicDataSource dynamicDataSource,
+                               ObjectProvider<DataSourceHealthChecker> healthChecker,
+                               ObjectProvider<DataSourceBootstrapper> bootstrapper,
+                               ObjectProvider<TenantPoolManager> poolManager) {
+        this.dynamicDataSource = dynamicDataSource;
+        this.healthChecker = healthChecker;
+        this.bootstrapper = bootstrapper;
+        this.poolManager = poolManager;
+    }
+
+    @ReadOperation
+    public Map<String, Object> datasources() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        Map<String, Object> targets = new TreeMap<>();
+        dynamicDataSource.getTargetDataSourceMap().forEach((key, dataSource) -> targets.put(key, describe(key, dataSource)));
+        result.put("count", targets.size());
+        TenantPoolManager manager = poolManager.getIfAvailable();
+        if (manager != null) {
+            result.put("livePools", manager.getLivePoolCount());
+            result.put("reservedConnections", manager.getReservedConnections());
+        }
+        DataSourceBootstrapper boot = bootstrapper.getIfAvailable();
+        if (boot != null) {
+            result.put("quarantined", boot.getQuarantinedKeys());
+            BootstrapReport report = boot.getLastReport();
+            if (report != null) {
+                Map<String, Object> bootstrap = new LinkedHashMap<>();
+                bootstrap.put("totalMillis", report.getTotalMillis());
+                bootstrap.put("success", report.getSuccessCount());
+                bootstrap.put("failure", report.getFailureCount());
+                bootstrap.put("slowest", report.getSlowest(10));
+                result.put("bootstrap", bootstrap);
+            }
+        }
+        result.put("targets", targets);
+        return result;
+    }
+
+    @ReadOperation
+    public Map<String, Object> datasource(@Selector String key) {
+        DataSource dataSource = dynamicDataSource.getTargetDataSourceMap().get(key);
+        return dataSource == null ? null : describe(key, dataSource);
+    }
+
+    private Map<String, Object> describe(String key, DataSource dataSource) {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("type", dataSource instanceof LazyTenantDataSource ? "lazy" : dataSource.getClass().getSimpleName());
+        DataSourceHealthChecker checker = healthChecker.getIfAvailable();
+        if (checker != null) {
+            info.put("health", checker.getState(key));
+        }
+        ReplicaGroup group = dynamicDataSource.getReplicaGroups().get(key);
+        if (group != null) {
+            info.put("replicas", group.getReplicas().stream()
+                    .collect(Collectors.toMap(ReplicaGroup.Replica::getKey, ReplicaGroup.Replica::getWeight)));
+        }
+        DruidDataSource pool = TenantPools.unwrap(dataSource);
+        info.put("materialized", pool != null);
+        if (pool != null) {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("active", pool.getActiveCount());
+            stats.put("idle", pool.getPoolingCount());
+            stats.put("waiting", pool.getWaitThreadCount());
+            stats.put("maxActive", pool.getMaxActive());
+            stats.put("minIdle", pool.getMinIdle());
+            stats.put("createErrors", pool.getCreateErrorCount());
+            info.put("pool", stats);
+        }
+        return info;
+    }
+}
@@ -0,0 +1,44 @@
+package com.xunfeng.example.dynamic.metrics;
+
+import com.xunfeng.example.dynamic.pool.PoolAutotuner;
+import com.xunfeng.example.dynamic.pool.TenantPoolManager;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 连接池自动调整端点：/actuator/poolautotune 查看全局上限与最近的调整记录
+ *
+ * @author
+ * @date 2026/10/18 22:00
+ */
+@Endpoint(id = "poolautotune")
+public class PoolAutotuneEndpoint {
+
+    private final ObjectProvider<PoolAutotuner> autotuner;
+    private final ObjectProvider<TenantPoolManager> poolManager;
+
+    public PoolAutotuneEndpoint(ObjectProvider<PoolAutotuner> autotuner, ObjectProvider<TenantPoolManager> poolManager) {
+        this.autotuner = autotuner;
+        this.poolManager = poolManager;
+    }
+
+    @ReadOperation
+    public Map<String, Object> autotune() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        PoolAutotuner tuner = autotuner.getIfAvailable();
+        result.put("enabled", tuner != null);
+        if (tuner != null) {
+            result.put("globalCeiling", tuner.getGlobalCeiling());
+            TenantPoolManager manager = poolManager.getIfAvailable();
+            if (manager != null) {
+                result.put("reservedConnections", manager.getReservedConnections());
+            }
+            result.put("adjustments", tuner.getHistory());
+        }
+        return result;
+    }
+}
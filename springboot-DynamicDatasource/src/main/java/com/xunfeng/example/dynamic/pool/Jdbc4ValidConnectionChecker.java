@@ -0,0 +1,25 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.alibaba.druid.pool.ValidConnectionChecker;
+
+import java.sql.Connection;
+import java.util.Properties;
+
+/**
+ * 使用JDBC4 Connection.isValid校验连接，MySQL驱动实现为COM_PING，不需要解析执行SQL
+ *
+ * @author
+ * @date 2026/10/18 23:30
+ */
+public class Jdbc4ValidConnectionChecker implements ValidConnectionChecker {
+
+    @Override
+    public boolean isValidConnection(Connection connection, String validationQuery, int validationQueryTimeout)
+            throws Exception {
+        return !connection.isClosed() && connection.isValid(Math.max(validationQueryTimeout, 0));
+    }
+
+    @Override
+    public void configFromProperties(Properties properties) {
+    }
+}
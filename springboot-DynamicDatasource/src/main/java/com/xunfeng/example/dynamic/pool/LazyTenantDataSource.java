@@ -0,0 +1,226 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.alibaba.druid.pool.DataSourceClosedException;
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.TenantDataSourceFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 懒加载的租户数据源
+ * <p>
+ * 注册时只保存data_source表中的描述信息，第一次获取连接时才创建Druid连接池；
+ * 同一时刻只有一个线程负责创建，其余线程等待其结果，避免突发请求重复建池。
+ * 连接池空闲时可被{@link TenantPoolManager}关闭回收，下次访问重新创建。
+ *
+ * @author
+ * @date 2026/10/18 11:00
+ */
+@Slf4j
+public class LazyTenantDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private final String key;
+    private final DataSourceEntity descriptor;
+    private final TenantDataSourceFactory factory;
+    private final TenantPoolManager manager;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private volatile DruidDataSource pool;
+    private volatile long lastAccessMillis;
+    private volatile boolean closed;
+
+    public LazyTenantDataSource(String key, DataSourceEntity descriptor, TenantDataSourceFactory factory,
+                                TenantPoolManager manager) {
+        this.key = key;
+        this.descriptor = descriptor;
+        this.factory = factory;
+        this.manager = manager;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        lastAccessMillis = System.currentTimeMillis();
+        DruidDataSource current = pool;
+        if (current == null) {
+            current = materialize();
+        }
+        try {
+            return current.getConnection();
+        } catch (DataSourceClosedException e) {
+            // 取连接的同时连接池恰好被回收，重新创建一次
+            return materialize().getConnection();
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        lastAccessMillis = System.currentTimeMillis();
+        DruidDataSource current = pool;
+        if (current == null) {
+            current = materialize();
+        }
+        try {
+            return current.getConnection(username, password);
+        } catch (DataSourceClosedException e) {
+            return materialize().getConnection(username, password);
+        }
+    }
+
+    /**
+     * 创建连接池（单飞），已存在时直接返回
+     */
+    DruidDataSource materialize() throws SQLException {
+        return materialize(true);
+    }
+
+    /**
+     * 在不淘汰其它连接池的前提下创建连接池，供预热使用
+     *
+     * @return 连接池，存活数量或连接预算已满时返回null
+     */
+    public DruidDataSource materializeIfRoom() throws SQLException {
+        lastAccessMillis = System.currentTimeMillis();
+        return materialize(false);
+    }
+
+    private DruidDataSource materialize(boolean evict) throws SQLException {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new SQLException("数据源已移除:" + key);
+            }
+            DruidDataSource current = pool;
+            if (current != null && !current.isClosed()) {
+                return current;
+            }
+            long start = System.currentTimeMillis();
+            DruidDataSource created = factory.build(descriptor);
+            if (evict) {
+                manager.admit(this, created.getMaxActive());
+            } else if (!manager.tryAdmit(this, created.getMaxActive())) {
+                created.close();
+                return null;
+            }
+            try {
+                created.init();
+            } catch (SQLException | RuntimeException e) {
+                created.close();
+                manager.release(this);
+                throw e;
+            }
+            this.pool = created;
+            log.info("---懒加载创建连接池---:{},耗时{}ms", key, System.currentTimeMillis() - start);
+            return created;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 连接池已创建且没有借出的连接
+     */
+    boolean isIdle() {
+        DruidDataSource current = pool;
+        return current != null && current.getActiveCount() == 0;
+    }
+
+    /**
+     * 空闲时关闭连接池，保留描述信息，下次访问重新创建
+     *
+     * @return 是否已回收
+     */
+    boolean evict() {
+        lock.lock();
+        try {
+            return evictIdle();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不等待锁的回收，锁被占用（正在建池、回收或关闭）时直接放弃，供淘汰其它连接池时使用
+     *
+     * @return 是否已回收
+     */
+    boolean tryEvict() {
+        if (!lock.tryLock()) {
+            return false;
+        }
+        try {
+            return evictIdle();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean evictIdle() {
+        DruidDataSource current = pool;
+        if (current == null || current.getActiveCount() > 0) {
+            return false;
+        }
+        pool = null;
+        current.close();
+        manager.release(this);
+        log.info("---回收空闲连接池---:{}", key);
+        return true;
+    }
+
+    /**
+     * 从路由表移除时调用，之后不再创建连接池
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            DruidDataSource current = pool;
+            pool = null;
+            if (current != null) {
+                current.close();
+                manager.release(this);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public DataSourceEntity getDescriptor() {
+        return descriptor;
+    }
+
+    /**
+     * 当前连接池，未创建或已回收时返回null
+     */
+    public DruidDataSource getPool() {
+        return pool;
+    }
+
+    public long getLastAccessMillis() {
+        return lastAccessMillis;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        DruidDataSource current = pool;
+        if (current != null && iface.isInstance(current)) {
+            return (T) current;
+        }
+        return super.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return (pool != null && iface.isInstance(pool)) || super.isWrapperFor(iface);
+    }
+}
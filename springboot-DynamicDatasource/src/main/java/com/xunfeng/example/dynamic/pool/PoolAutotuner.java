@@ -0,0 +1,277 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 租户连接池大小自动调整
+ * <p>
+ * 定时采样每个租户Druid连接池的借出连接数、等待线程数、等待次数与耗时、建连失败次数：
+ * 出现等待的连接池按比例调大maxActive，持续空闲的连接池逐步调小，minIdle跟随平均借出数；
+ * 所有租户连接池maxActive之和不超过全局上限，上限不足时优先满足等待最多的连接池。
+ * 每次调整都记日志并保留最近的调整记录供端点查询。默认数据源不参与调整。
+ *
+ * @author
+ * @date 2026/10/18 22:00
+ */
+@Slf4j
+public class PoolAutotuner implements DisposableBean {
+
+    /**
+     * 借出数平滑系数
+     */
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final DynamicDataSource dynamicDataSource;
+    private final TenantPoolManager tenantPoolManager;
+    private final DynamicDataSourceProperties.Autotune config;
+    private final int globalCeiling;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * 每个连接池上次的采样，只在调度线程内访问
+     */
+    private final Map<DruidDataSource, PoolState> states = new IdentityHashMap<>();
+    private final Deque<Adjustment> history = new ArrayDeque<>();
+
+    public PoolAutotuner(DynamicDataSource dynamicDataSource, TenantPoolManager tenantPoolManager,
+                         DynamicDataSourceProperties properties) {
+        this.dynamicDataSource = dynamicDataSource;
+        this.tenantPoolManager = tenantPoolManager;
+        this.config = properties.getAutotune();
+        this.globalCeiling = config.getMaxTotalConnections() > 0
+                ? config.getMaxTotalConnections() : properties.getLazy().getConnectionBudget();
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ds-pool-autotune-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.scheduler.scheduleWithFixedDelay(this::tune, config.getIntervalMillis(), config.getIntervalMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 一轮采样与调整：先缩小空闲连接池释放额度，再按等待程度依次扩大繁忙连接池
+     */
+    void tune() {
+        try {
+            Map<DruidDataSource, PoolState> live = sample();
+            states.keySet().retainAll(live.keySet());
+            int total = live.keySet().stream().mapToInt(DruidDataSource::getMaxActive).sum();
+            List<PoolState> growing = new ArrayList<>();
+            for (PoolState state : live.values()) {
+                if (state.isPressured()) {
+                    state.idleSamples = 0;
+                    growing.add(state);
+                } else if (state.ewmaActive < state.pool.getMaxActive() / 4.0) {
+                    state.idleSamples++;
+                    if (state.idleSamples >= config.getShrinkAfterIdleSamples()) {
+                        state.idleSamples = 0;
+                        total -= shrink(state);
+                    }
+                } else {
+                    state.idleSamples = 0;
+                }
+            }
+            growing.sort(Comparator.comparingLong((PoolState state) -> state.waiting)
+                    .thenComparingLong(state -> state.deltaWaitMillis).reversed());
+            for (PoolState state : growing) {
+                total += grow(state, globalCeiling - total);
+            }
+        } catch (RuntimeException e) {
+            log.warn("---连接池自动调整异常---:{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 采样所有租户连接池，共享连接池只采样一次
+     */
+    private Map<DruidDataSource, PoolState> sample() {
+        Map<DruidDataSource, PoolState> live = new IdentityHashMap<>();
+        dynamicDataSource.getTargetDataSourceMap().forEach((key, dataSource) -> {
+            DruidDataSource pool = TenantPools.unwrap(dataSource);
+            if (pool == null || pool.isClosed() || DynamicDataSource.MASTER.equals(key)) {
+                return;
+            }
+            PoolState state = live.get(pool);
+            if (state == null) {
+                state = states.computeIfAbsent(pool, PoolState::new);
+                state.keys.clear();
+                state.sample();
+                live.put(pool, state);
+            }
+            state.keys.add(key);
+            if (dataSource instanceof LazyTenantDataSource) {
+                state.lazy = (LazyTenantDataSource) dataSource;
+            }
+        });
+        return live;
+    }
+
+    /**
+     * @return 增加的连接数
+     */
+    private int grow(PoolState state, int available) {
+        DruidDataSource pool = state.pool;
+        int current = pool.getMaxActive();
+        if (state.deltaCreateErrors > 0) {
+            // 数据库正在拒绝建连，加大连接池只会加重压力
+            log.debug("---连接池建连失败，暂不扩大---:{}", state.keys);
+            return 0;
+        }
+        int wanted = Math.min(config.getMaxActiveCeiling(),
+                Math.max(current + 1, (int) Math.ceil(current * config.getGrowFactor())));
+        int target = current + Math.min(wanted - current, available);
+        if (target <= current) {
+            if (wanted > current) {
+                log.warn("---连接总数已达上限{}，无法扩大连接池---:{},等待线程{}", globalCeiling, state.keys, state.waiting);
+            }
+            return 0;
+        }
+        resize(state, target, "等待线程" + state.waiting + ",等待次数+" + state.deltaWaitCount
+                + ",等待耗时+" + state.deltaWaitMillis + "ms");
+        return target - current;
+    }
+
+    /**
+     * @return 减少的连接数
+     */
+    private int shrink(PoolState state) {
+        int current = state.pool.getMaxActive();
+        int target = Math.max(config.getMaxActiveFloor(),
+                Math.max(state.pool.getActiveCount(), (int) Math.ceil(state.ewmaActive * 2)));
+        target = Math.max(target, current / 2);
+        if (target >= current) {
+            return 0;
+        }
+        resize(state, target, String.format("持续空闲,平均借出%.1f", state.ewmaActive));
+        return current - target;
+    }
+
+    private void resize(PoolState state, int maxActive, String reason) {
+        DruidDataSource pool = state.pool;
+        int oldMax = pool.getMaxActive();
+        int oldMinIdle = pool.getMinIdle();
+        int minIdle = Math.min(Math.min(config.getMinIdleCeiling(), maxActive), (int) Math.round(state.ewmaActive));
+        // Druid要求minIdle不大于maxActive：缩小时先降minIdle，扩大时先升maxActive
+        if (maxActive < oldMax) {
+            pool.setMinIdle(Math.min(minIdle, maxActive));
+            pool.setMaxActive(maxActive);
+        } else {
+            pool.setMaxActive(maxActive);
+            pool.setMinIdle(minIdle);
+        }
+        if (state.lazy != null) {
+            tenantPoolManager.reserve(state.lazy, maxActive);
+        }
+        Adjustment adjustment = new Adjustment();
+        adjustment.setTime(System.currentTimeMillis());
+        adjustment.setKeys(new ArrayList<>(state.keys));
+        adjustment.setMaxActiveBefore(oldMax);
+        adjustment.setMaxActiveAfter(maxActive);
+        adjustment.setMinIdleBefore(oldMinIdle);
+        adjustment.setMinIdleAfter(minIdle);
+        adjustment.setReason(reason);
+        synchronized (history) {
+            history.addFirst(adjustment);
+            while (history.size() > config.getHistorySize()) {
+                history.removeLast();
+            }
+        }
+        log.info("---连接池大小调整---:{},maxActive {} -> {},minIdle {} -> {},{}", state.keys, oldMax, maxActive,
+                oldMinIdle, minIdle, reason);
+    }
+
+    /**
+     * 最近的调整记录，新的在前
+     */
+    public List<Adjustment> getHistory() {
+        synchronized (history) {
+            return new ArrayList<>(history);
+        }
+    }
+
+    public int getGlobalCeiling() {
+        return globalCeiling;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 单个连接池的采样状态，累计值取两次采样的差
+     */
+    private static final class PoolState {
+        private final DruidDataSource pool;
+        private final List<String> keys = new ArrayList<>();
+        private LazyTenantDataSource lazy;
+        private boolean sampled;
+        private long lastWaitCount;
+        private long lastWaitMillis;
+        private long lastCreateErrors;
+        private int waiting;
+        private long deltaWaitCount;
+        private long deltaWaitMillis;
+        private long deltaCreateErrors;
+        private double ewmaActive;
+        private int idleSamples;
+
+        PoolState(DruidDataSource pool) {
+            this.pool = pool;
+        }
+
+        void sample() {
+            long waitCount = pool.getNotEmptyWaitCount();
+            long waitMillis = pool.getNotEmptyWaitMillis();
+            long createErrors = pool.getCreateErrorCount();
+            int active = pool.getActiveCount();
+            waiting = pool.getWaitThreadCount();
+            if (sampled) {
+                deltaWaitCount = waitCount - lastWaitCount;
+                deltaWaitMillis = waitMillis - lastWaitMillis;
+                deltaCreateErrors = createErrors - lastCreateErrors;
+                ewmaActive = EWMA_ALPHA * active + (1 - EWMA_ALPHA) * ewmaActive;
+            } else {
+                ewmaActive = active;
+            }
+            sampled = true;
+            lastWaitCount = waitCount;
+            lastWaitMillis = waitMillis;
+            lastCreateErrors = createErrors;
+        }
+
+        /**
+         * 有线程正在等待，或者采样间隔内发生过等待且连接几乎全部借出
+         */
+        boolean isPressured() {
+            return waiting > 0 || (deltaWaitCount > 0 && pool.getActiveCount() >= pool.getMaxActive() * 0.8);
+        }
+    }
+
+    @Data
+    public static class Adjustment {
+        private long time;
+        private List<String> keys;
+        private int maxActiveBefore;
+        private int maxActiveAfter;
+        private int minIdleBefore;
+        private int minIdleAfter;
+        private String reason;
+    }
+}
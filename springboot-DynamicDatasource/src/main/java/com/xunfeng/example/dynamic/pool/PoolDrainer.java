@@ -0,0 +1,88 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 优雅关闭被替换或移除的连接池
+ * <p>
+ * 数据源从路由表摘除后，已借出的连接仍在使用，这里定时检查借出连接数，归零或超过等待时间后才关闭，
+ * 不影响正在执行的SQL。
+ *
+ * @author
+ * @date 2026/10/18 17:00
+ */
+@Slf4j
+public class PoolDrainer implements DisposableBean {
+
+    /**
+     * 检查借出连接数的间隔，第一次检查也延迟该时间，留给刚拿到旧快照的请求取完连接
+     */
+    private static final long CHECK_MILLIS = 500;
+
+    private final long timeoutMillis;
+    private final ScheduledExecutorService scheduler;
+    /**
+     * 等待关闭的数据源 -> 截止时间
+     */
+    private final Map<DataSource, Long> draining = new ConcurrentHashMap<>();
+
+    public PoolDrainer(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ds-pool-drainer-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+    }
+
+    /**
+     * 等待借出的连接归还后关闭数据源
+     *
+     * @param key        数据源key，仅用于日志
+     * @param dataSource 已从路由表摘除的数据源
+     */
+    public void drain(String key, DataSource dataSource) {
+        if (dataSource == null || draining.putIfAbsent(dataSource, System.currentTimeMillis() + timeoutMillis) != null) {
+            return;
+        }
+        scheduler.schedule(() -> check(key, dataSource), CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void check(String key, DataSource dataSource) {
+        Long deadline = draining.get(dataSource);
+        if (deadline == null) {
+            return;
+        }
+        int active = TenantPools.activeConnections(dataSource);
+        if (active > 0 && System.currentTimeMillis() < deadline) {
+            scheduler.schedule(() -> check(key, dataSource), CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            return;
+        }
+        draining.remove(dataSource);
+        if (active > 0) {
+            log.warn("---连接池等待归还超时，强制关闭---:{},借出连接{}", key, active);
+        } else {
+            log.info("---旧连接池已关闭---:{}", key);
+        }
+        DynamicDataSource.closeQuietly(dataSource);
+    }
+
+    public int getDrainingCount() {
+        return draining.size();
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+        draining.keySet().forEach(DynamicDataSource::closeQuietly);
+        draining.clear();
+    }
+}
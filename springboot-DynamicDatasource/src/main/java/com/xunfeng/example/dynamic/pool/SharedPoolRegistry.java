@@ -0,0 +1,170 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.TenantDataSourceFactory;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 同一数据库服务器上的租户共享连接池
+ * <p>
+ * 按(host, port, username)为每台MySQL服务器只建一个连接池，连接地址去掉库名，租户通过
+ * {@link SharedSchemaDataSource}在借出连接时切换到自己的库。连接池按引用计数管理，
+ * 最后一个租户释放后关闭。
+ *
+ * @author
+ * @date 2026/10/18 18:00
+ */
+@Slf4j
+public class SharedPoolRegistry {
+
+    private final TenantDataSourceFactory factory;
+    private final DynamicDataSourceProperties.SharedPool config;
+    private final Map<ServerKey, SharedPool> pools = new HashMap<>();
+
+    public SharedPoolRegistry(TenantDataSourceFactory factory, DynamicDataSourceProperties properties) {
+        this.factory = factory;
+        this.config = properties.getSharedPool();
+    }
+
+    /**
+     * 只有通过catalog切换库的MySQL/MariaDB并且能确定库名的数据源才共享连接池
+     */
+    public boolean supports(DataSourceEntity ds) {
+        String url = ds.getUrl();
+        return url != null && (url.startsWith("jdbc:mysql:") || url.startsWith("jdbc:mariadb:"))
+                && ds.getHost() != null && ds.getPort() != null && ds.getUsername() != null
+                && databaseOf(ds) != null;
+    }
+
+    /**
+     * 获取租户在共享连接池上的数据源，连接池不存在时创建（不初始化，首次取连接时建连）
+     *
+     * @param key 租户key
+     * @param ds  数据源实体
+     * @return 租户数据源，移除时调用close释放引用
+     */
+    public synchronized SharedSchemaDataSource acquire(String key, DataSourceEntity ds) {
+        ServerKey serverKey = new ServerKey(ds.getHost(), ds.getPort(), ds.getUsername(), ds.getPassword());
+        SharedPool shared = pools.computeIfAbsent(serverKey, k -> createPool(k, ds));
+        shared.refs++;
+        return new SharedSchemaDataSource(key, databaseOf(ds), shared.pool, () -> release(serverKey, shared));
+    }
+
+    private SharedPool createPool(ServerKey serverKey, DataSourceEntity ds) {
+        DataSourceEntity server = new DataSourceEntity();
+        server.setUrl(stripDatabase(ds.getUrl()));
+        server.setDriverClassName(ds.getDriverClassName());
+        server.setUsername(ds.getUsername());
+        server.setPassword(ds.getPassword());
+        server.setName(serverKey.toString());
+        DruidDataSource pool = factory.build(server);
+        pool.setMaxActive(config.getMaxActive());
+        pool.setMinIdle(Math.min(config.getMinIdle(), config.getMaxActive()));
+        log.info("---创建共享连接池---:{}", serverKey);
+        return new SharedPool(pool);
+    }
+
+    private synchronized void release(ServerKey serverKey, SharedPool shared) {
+        if (--shared.refs > 0 || pools.get(serverKey) != shared) {
+            return;
+        }
+        pools.remove(serverKey);
+        shared.pool.close();
+        log.info("---关闭共享连接池---:{}", serverKey);
+    }
+
+    public synchronized int getPoolCount() {
+        return pools.size();
+    }
+
+    /**
+     * 优先取data_base字段，为空时从连接地址中解析
+     */
+    static String databaseOf(DataSourceEntity ds) {
+        if (ds.getDataBase() != null && !ds.getDataBase().isEmpty()) {
+            return ds.getDataBase();
+        }
+        int[] range = databaseRange(ds.getUrl());
+        return range == null ? null : ds.getUrl().substring(range[0], range[1]);
+    }
+
+    /**
+     * 去掉地址中的库名，避免某个租户的库被删除后整个共享连接池无法建连
+     */
+    static String stripDatabase(String url) {
+        int[] range = databaseRange(url);
+        return range == null ? url : url.substring(0, range[0]) + url.substring(range[1]);
+    }
+
+    /**
+     * jdbc:mysql://host:port/db?params 中库名的起止位置
+     */
+    private static int[] databaseRange(String url) {
+        int hostStart = url == null ? -1 : url.indexOf("//");
+        if (hostStart < 0) {
+            return null;
+        }
+        int slash = url.indexOf('/', hostStart + 2);
+        if (slash < 0) {
+            return null;
+        }
+        int end = url.indexOf('?', slash);
+        end = end < 0 ? url.length() : end;
+        return end > slash + 1 ? new int[]{slash + 1, end} : null;
+    }
+
+    private static class SharedPool {
+        private final DruidDataSource pool;
+        private int refs;
+
+        SharedPool(DruidDataSource pool) {
+            this.pool = pool;
+        }
+    }
+
+    private static final class ServerKey {
+        private final String host;
+        private final int port;
+        private final String username;
+        /**
+         * 同一账号密码不一致时（例如改密过程中）不共享，避免连接池用错密码
+         */
+        private final String password;
+
+        ServerKey(String host, int port, String username, String password) {
+            this.host = host;
+            this.port = port;
+            this.username = username;
+            this.password = password;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ServerKey)) {
+                return false;
+            }
+            ServerKey that = (ServerKey) o;
+            return port == that.port && host.equals(that.host) && username.equals(that.username)
+                    && Objects.equals(password, that.password);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, port, username);
+        }
+
+        @Override
+        public String toString() {
+            return username + "@" + host + ":" + port;
+        }
+    }
+}
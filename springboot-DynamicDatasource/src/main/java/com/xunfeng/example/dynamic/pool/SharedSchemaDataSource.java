@@ -0,0 +1,150 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 共享连接池上的租户数据源
+ * <p>
+ * 从服务器级连接池借出连接后切换到租户的库（MySQL驱动本地记录了当前库，库名相同时不会发起请求），
+ * 连接归还时不再切回：共享连接池的地址不带库名，没有可以复位的"默认库"，而每次借出都会先切库，
+ * 省掉归还时的一次往返。这里统计本租户借出的连接数，用于替换或移除时等待连接归还。
+ *
+ * @author
+ * @date 2026/10/18 18:00
+ */
+public class SharedSchemaDataSource extends AbstractDataSource implements AutoCloseable {
+
+    private final String key;
+    private final String database;
+    private final DruidDataSource pool;
+    private final Runnable releaser;
+    private final AtomicInteger borrowed = new AtomicInteger();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    SharedSchemaDataSource(String key, String database, DruidDataSource pool, Runnable releaser) {
+        this.key = key;
+        this.database = database;
+        this.pool = pool;
+        this.releaser = releaser;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        checkOpen();
+        return switchDatabase(pool.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        checkOpen();
+        return switchDatabase(pool.getConnection(username, password));
+    }
+
+    private void checkOpen() throws SQLException {
+        if (closed.get()) {
+            throw new SQLException("数据源已移除:" + key);
+        }
+    }
+
+    /**
+     * 切换到租户的库并计数，切换失败时归还连接
+     */
+    private Connection switchDatabase(Connection connection) throws SQLException {
+        try {
+            if (!database.equals(connection.getCatalog())) {
+                connection.setCatalog(database);
+            }
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        borrowed.incrementAndGet();
+        return wrap(connection);
+    }
+
+    /**
+     * 代理连接，close时只计数一次
+     */
+    private Connection wrap(Connection target) {
+        AtomicBoolean returned = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close":
+                            if (returned.compareAndSet(false, true)) {
+                                borrowed.decrementAndGet();
+                            }
+                            break;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "toString":
+                            return "SharedSchemaConnection[" + key + "] " + target;
+                        default:
+                            break;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    /**
+     * 从路由表移除时调用，释放对共享连接池的引用
+     */
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            releaser.run();
+        }
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getDatabase() {
+        return database;
+    }
+
+    /**
+     * 本租户借出未归还的连接数
+     */
+    public int getBorrowedCount() {
+        return borrowed.get();
+    }
+
+    public DruidDataSource getPool() {
+        return pool;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T unwrap(Class<T> iface) throws SQLException {
+        if (iface.isInstance(pool)) {
+            return (T) pool;
+        }
+        return super.unwrap(iface);
+    }
+
+    @Override
+    public boolean isWrapperFor(Class<?> iface) throws SQLException {
+        return iface.isInstance(pool) || super.isWrapperFor(iface);
+    }
+
+    @Override
+    public String toString() {
+        return "SharedSchemaDataSource[" + key + " -> " + database + "]";
+    }
+}
@@ -0,0 +1,170 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.TenantDataSourceFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.sql.SQLException;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 租户连接池管理
+ * <p>
+ * 控制同时存活的连接池数量和连接总预算：新建连接池前先申请名额，超限时按最近访问时间
+ * 淘汰最久未使用的空闲连接池；后台定时关闭空闲超时的连接池。
+ *
+ * @author
+ * @date 2026/10/18 11:00
+ */
+@Slf4j
+public class TenantPoolManager implements DisposableBean {
+
+    private final DynamicDataSourceProperties.Lazy config;
+    private final TenantDataSourceFactory factory;
+
+    /**
+     * 存活连接池 -> 占用的连接预算（maxActive）
+     */
+    private final Map<LazyTenantDataSource, Integer> livePools = new ConcurrentHashMap<>();
+    private final ReentrantLock admissionLock = new ReentrantLock();
+    private final ScheduledExecutorService evictor;
+
+    public TenantPoolManager(DynamicDataSourceProperties properties, TenantDataSourceFactory factory) {
+        this.config = properties.getLazy();
+        this.factory = factory;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("ds-pool-evictor-");
+        threadFactory.setDaemon(true);
+        this.evictor = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.evictor.scheduleWithFixedDelay(this::evictIdle, config.getEvictIntervalMillis(),
+                config.getEvictIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 创建懒加载数据源，只登记描述信息
+     */
+    public LazyTenantDataSource register(String key, DataSourceEntity descriptor) {
+        return new LazyTenantDataSource(key, descriptor, factory, this);
+    }
+
+    /**
+     * 申请新建连接池的名额，超出上限时淘汰最久未使用的空闲连接池
+     * <p>
+     * 调用方持有候选数据源的锁，淘汰需要受害者的锁：在admissionLock之外淘汰，并且只尝试加锁，
+     * 否则与正在建池（持有自身的锁、等待admissionLock）的受害者互相等待。
+     *
+     * @param candidate   待创建的数据源
+     * @param connections 需要占用的连接数
+     */
+    void admit(LazyTenantDataSource candidate, int connections) throws SQLException {
+        Set<LazyTenantDataSource> busy = new HashSet<>();
+        while (true) {
+            Optional<LazyTenantDataSource> victim;
+            admissionLock.lock();
+            try {
+                if (!isFull(connections)) {
+                    livePools.put(candidate, connections);
+                    return;
+                }
+                victim = livePools.keySet().stream()
+                        .filter(dataSource -> !busy.contains(dataSource))
+                        .filter(LazyTenantDataSource::isIdle)
+                        .min(Comparator.comparingLong(LazyTenantDataSource::getLastAccessMillis));
+            } finally {
+                admissionLock.unlock();
+            }
+            if (!victim.isPresent()) {
+                throw new SQLException("租户连接池数量或连接预算已满，且没有可回收的空闲连接池:" + candidate.getKey());
+            }
+            if (!victim.get().tryEvict()) {
+                // 正被其它线程操作或刚好被借出连接，换一个
+                busy.add(victim.get());
+            }
+        }
+    }
+
+    /**
+     * 有空余名额时登记，不淘汰其它连接池
+     *
+     * @param candidate   待创建的数据源
+     * @param connections 需要占用的连接数
+     * @return 是否登记成功
+     */
+    boolean tryAdmit(LazyTenantDataSource candidate, int connections) {
+        admissionLock.lock();
+        try {
+            if (isFull(connections)) {
+                return false;
+            }
+            livePools.put(candidate, connections);
+            return true;
+        } finally {
+            admissionLock.unlock();
+        }
+    }
+
+    private boolean isFull(int connections) {
+        return livePools.size() >= config.getMaxLivePools()
+                || getReservedConnections() + connections > config.getConnectionBudget();
+    }
+
+    /**
+     * 连接池关闭后归还名额
+     */
+    void release(LazyTenantDataSource dataSource) {
+        livePools.remove(dataSource);
+    }
+
+    /**
+     * 连接池大小被调整后更新占用的连接预算，已回收的连接池忽略
+     */
+    void reserve(LazyTenantDataSource dataSource, int connections) {
+        // 与admit共用一把锁，避免admit判断预算时读到调整到一半的占用
+        admissionLock.lock();
+        try {
+            livePools.replace(dataSource, connections);
+        } finally {
+            admissionLock.unlock();
+        }
+    }
+
+    /**
+     * 关闭空闲超时的连接池
+     */
+    void evictIdle() {
+        long deadline = System.currentTimeMillis() - config.getIdleEvictMillis();
+        for (LazyTenantDataSource dataSource : livePools.keySet()) {
+            if (dataSource.getLastAccessMillis() < deadline && dataSource.isIdle()) {
+                try {
+                    dataSource.evict();
+                } catch (RuntimeException e) {
+                    log.warn("---回收连接池失败---:{},{}", dataSource.getKey(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    public int getLivePoolCount() {
+        return livePools.size();
+    }
+
+    public int getReservedConnections() {
+        return livePools.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    @Override
+    public void destroy() {
+        evictor.shutdownNow();
+    }
+}
@@ -0,0 +1,50 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.alibaba.druid.pool.DruidDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * 路由目标与Druid连接池之间的转换工具
+ *
+ * @author
+ * @date 2026/10/18 12:00
+ */
+public final class TenantPools {
+
+    private TenantPools() {
+    }
+
+    /**
+     * 获取路由目标当前的Druid连接池
+     *
+     * @param dataSource 路由表中的数据源
+     * @return 连接池，懒加载尚未创建或不是Druid连接池时返回null
+     */
+    public static DruidDataSource unwrap(DataSource dataSource) {
+        if (dataSource instanceof DruidDataSource) {
+            return (DruidDataSource) dataSource;
+        }
+        if (dataSource instanceof LazyTenantDataSource) {
+            return ((LazyTenantDataSource) dataSource).getPool();
+        }
+        if (dataSource instanceof SharedSchemaDataSource) {
+            return ((SharedSchemaDataSource) dataSource).getPool();
+        }
+        return null;
+    }
+
+    /**
+     * 路由目标借出未归还的连接数，共享连接池只统计该租户自己借出的连接
+     *
+     * @param dataSource 路由表中的数据源
+     * @return 借出的连接数，没有连接池时为0
+     */
+    public static int activeConnections(DataSource dataSource) {
+        if (dataSource instanceof SharedSchemaDataSource) {
+            return ((SharedSchemaDataSource) dataSource).getBorrowedCount();
+        }
+        DruidDataSource pool = unwrap(dataSource);
+        return pool == null ? 0 : pool.getActiveCount();
+    }
+}
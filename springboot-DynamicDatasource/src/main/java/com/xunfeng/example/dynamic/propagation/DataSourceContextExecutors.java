@@ -0,0 +1,70 @@
+package com.xunfeng.example.dynamic.propagation;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 线程池包装：execute时捕获提交线程的数据源上下文
+ * <p>
+ * submit、invokeAll以及CompletableFuture.supplyAsync(supplier, executor)最终都经由execute提交，
+ * 因此都会在提交线程上捕获上下文。
+ *
+ * @author
+ * @date 2026/10/18 16:00
+ */
+public final class DataSourceContextExecutors {
+
+    private DataSourceContextExecutors() {
+    }
+
+    public static Executor wrap(Executor executor) {
+        return command -> executor.execute(DataSourceContextHolder.wrap(command));
+    }
+
+    public static ExecutorService wrap(ExecutorService executorService) {
+        return new ContextExecutorService(executorService);
+    }
+
+    private static class ContextExecutorService extends AbstractExecutorService {
+        private final ExecutorService delegate;
+
+        ContextExecutorService(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            delegate.execute(DataSourceContextHolder.wrap(command));
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+}
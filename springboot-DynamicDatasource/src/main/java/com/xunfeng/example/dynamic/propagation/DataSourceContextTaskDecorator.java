@@ -0,0 +1,20 @@
+package com.xunfeng.example.dynamic.propagation;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import org.springframework.core.task.TaskDecorator;
+
+/**
+ * 线程池任务装饰器，将提交线程的数据源上下文带到执行线程
+ * <p>
+ * 声明为Bean后，SpringBoot自动配置的applicationTaskExecutor（@Async、MVC异步请求）会自动使用。
+ *
+ * @author
+ * @date 2026/10/18 16:00
+ */
+public class DataSourceContextTaskDecorator implements TaskDecorator {
+
+    @Override
+    public Runnable decorate(Runnable runnable) {
+        return DataSourceContextHolder.wrap(runnable);
+    }
+}
@@ -0,0 +1,64 @@
+package com.xunfeng.example.dynamic.scatter;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * 多数据源并行查询结果
+ * <p>
+ * 结果以流的形式按到达顺序（或归并排序后）逐条消费，只能消费一次，查询线程随消费进度写入；
+ * 流消费完毕后{@link #getFailures()}包含全部失败的数据源及原因。
+ *
+ * @author
+ * @date 2026/10/18 17:00
+ */
+public class ScatterGatherResult<T> implements AutoCloseable {
+
+    private final Stream<T> stream;
+    private final Set<String> succeeded;
+    private final Map<String, Throwable> failures;
+    private final Runnable cancel;
+
+    ScatterGatherResult(Stream<T> stream, Set<String> succeeded, Map<String, Throwable> failures, Runnable cancel) {
+        this.stream = stream;
+        this.succeeded = succeeded;
+        this.failures = failures;
+        this.cancel = cancel;
+    }
+
+    /**
+     * 合并后的结果流
+     */
+    public Stream<T> stream() {
+        return stream;
+    }
+
+    /**
+     * 已成功返回的数据源key
+     */
+    public Set<String> getSucceeded() {
+        return Collections.unmodifiableSet(succeeded);
+    }
+
+    /**
+     * 查询失败或超时的数据源key及原因
+     */
+    public Map<String, Throwable> getFailures() {
+        return Collections.unmodifiableMap(failures);
+    }
+
+    public boolean isPartial() {
+        return !failures.isEmpty();
+    }
+
+    /**
+     * 放弃尚未开始的数据源查询，并中断正在执行的查询
+     */
+    @Override
+    public void close() {
+        cancel.run();
+        stream.close();
+    }
+}
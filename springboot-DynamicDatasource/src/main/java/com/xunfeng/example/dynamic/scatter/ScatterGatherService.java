@@ -0,0 +1,477 @@
+package com.xunfeng.example.dynamic.scatter;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 多数据源并行查询（scatter-gather）
+ * <p>
+ * 在选定的一组数据源上并行执行同一个查询，各数据源的结果逐行写入有界缓冲，调用方边消费边查询：
+ * <ul>
+ *     <li>无序模式每次调用同时最多执行parallelism个数据源，共享一个缓冲，按到达顺序输出；</li>
+ *     <li>归并模式要求各数据源按comparator有序输出，所有数据源同时执行，每个数据源一个缓冲，
+ *     归并时每个数据源只取一条队首记录比较。</li>
+ * </ul>
+ * 单个数据源超时或失败只记录在结果的failures中，不影响其他数据源；超时会中断查询线程并通过
+ * {@link ScatterQueryTimeoutInterceptor}设置语句超时，查询线程真正退出后才让出并发名额。
+ * 失败的数据源在失败前已输出的行不会撤回，需要完整结果时检查{@link ScatterGatherResult#isPartial()}。
+ *
+ * @author
+ * @date 2026/10/18 17:00
+ */
+@Slf4j
+public class ScatterGatherService implements DisposableBean {
+
+    /**
+     * 数据源结束标记，不占用缓冲
+     */
+    private static final Object END = new Object();
+
+    /**
+     * 当前工作线程正在查询的数据源
+     */
+    private static final ThreadLocal<Tenant> CURRENT = new ThreadLocal<>();
+
+    private final DynamicDataSource dynamicDataSource;
+    private final DynamicDataSourceProperties.Scatter config;
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService timer;
+
+    public ScatterGatherService(DynamicDataSource dynamicDataSource, DynamicDataSourceProperties properties) {
+        this.dynamicDataSource = dynamicDataSource;
+        this.config = properties.getScatter();
+        CustomizableThreadFactory workerFactory = new CustomizableThreadFactory("ds-scatter-");
+        workerFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), workerFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+        CustomizableThreadFactory timerFactory = new CustomizableThreadFactory("ds-scatter-timer-");
+        timerFactory.setDaemon(true);
+        this.timer = Executors.newSingleThreadScheduledExecutor(timerFactory);
+    }
+
+    /**
+     * 当前线程正在执行的并行查询剩余的超时秒数，不在并行查询中时返回0
+     */
+    static int currentQueryTimeoutSeconds() {
+        Tenant tenant = CURRENT.get();
+        if (tenant == null) {
+            return 0;
+        }
+        long remaining = tenant.run.timeoutMillis - tenant.activeMillis();
+        return (int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining + 999));
+    }
+
+    /**
+     * 并行查询，结果按数据源返回的先后顺序输出
+     *
+     * @param keys   数据源key
+     * @param source 在已切换到对应数据源的线程上执行的查询
+     */
+    public <T> ScatterGatherResult<T> unordered(Collection<String> keys, TenantSource<T> source) {
+        return unordered(keys, source, config.getParallelism(), config.getTenantTimeoutMillis());
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> ScatterGatherResult<T> unordered(Collection<String> keys, TenantSource<T> source,
+                                                int parallelism, long tenantTimeoutMillis) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+        Channel channel = new Channel(config.getBufferSize());
+        Run<T> run = new Run<>(distinct, source, tenantTimeoutMillis, key -> channel);
+        run.start(Math.max(1, parallelism));
+        Iterator<T> iterator = new Iterator<T>() {
+            private int finished;
+            private Object next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null) {
+                    if (finished == run.total) {
+                        return false;
+                    }
+                    Object item = run.take(channel);
+                    if (item == null) {
+                        return false;
+                    }
+                    if (item == END) {
+                        finished++;
+                    } else {
+                        next = item;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                T value = (T) next;
+                next = null;
+                return value;
+            }
+        };
+        return run.result(iterator);
+    }
+
+    /**
+     * 并行查询后k路归并，要求每个数据源按comparator有序输出
+     * <p>
+     * 所有数据源同时执行（各占一个线程和一条连接），数量不能超过线程数；
+     * 每个数据源输出第一条记录（或结束）后开始归并输出。
+     */
+    public <T> ScatterGatherResult<T> sorted(Collection<String> keys, TenantSource<T> source,
+                                             Comparator<? super T> comparator) {
+        return sorted(keys, source, comparator, config.getTenantTimeoutMillis());
+    }
+
+    public <T> ScatterGatherResult<T> sorted(Collection<String> keys, TenantSource<T> source,
+                                             Comparator<? super T> comparator, long tenantTimeoutMillis) {
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(keys));
+        if (distinct.size() > config.getThreads()) {
+            // 未启动的数据源拿不到队首记录，归并会一直等待
+            throw new IllegalArgumentException("归并查询的数据源数量" + distinct.size() + "超过线程数" + config.getThreads());
+        }
+        Map<String, Channel> channels = new LinkedHashMap<>();
+        for (String key : distinct) {
+            channels.put(key, new Channel(config.getBufferSize()));
+        }
+        Run<T> run = new Run<>(distinct, source, tenantTimeoutMillis, channels::get);
+        run.start(distinct.size());
+        Iterator<T> iterator = new Iterator<T>() {
+            private PriorityQueue<Head<T>> heap;
+
+            private PriorityQueue<Head<T>> heap() {
+                if (heap == null) {
+                    heap = new PriorityQueue<>(Math.max(1, channels.size()), (a, b) -> comparator.compare(a.value, b.value));
+                    for (Channel channel : channels.values()) {
+                        Head<T> head = new Head<>(run, channel);
+                        if (head.advance()) {
+                            heap.add(head);
+                        }
+                    }
+                }
+                return heap;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !heap().isEmpty();
+            }
+
+            @Override
+            public T next() {
+                Head<T> head = heap().poll();
+                if (head == null) {
+                    throw new NoSuchElementException();
+                }
+                T value = head.value;
+                if (head.advance()) {
+                    heap.add(head);
+                }
+                return value;
+            }
+        };
+        return run.result(iterator);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+        timer.shutdownNow();
+    }
+
+    /**
+     * 有界行缓冲：写满时查询线程等待，结束标记不占名额，超时线程写入时不会阻塞
+     */
+    private static class Channel {
+        private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+        private final Semaphore space;
+
+        Channel(int capacity) {
+            this.space = new Semaphore(Math.max(1, capacity));
+        }
+
+        boolean tryPut(Object row) {
+            if (!space.tryAcquire()) {
+                return false;
+            }
+            queue.add(row);
+            return true;
+        }
+
+        void put(Object row) throws InterruptedException {
+            space.acquire();
+            queue.add(row);
+        }
+
+        void end() {
+            queue.add(END);
+        }
+
+        Object take() throws InterruptedException {
+            Object item = queue.take();
+            if (item != END) {
+                space.release();
+            }
+            return item;
+        }
+    }
+
+    /**
+     * 归并时单个数据源的队首记录
+     */
+    private static class Head<T> {
+        private final Run<T> run;
+        private final Channel channel;
+        private T value;
+
+        Head(Run<T> run, Channel channel) {
+            this.run = run;
+            this.channel = channel;
+        }
+
+        @SuppressWarnings("unchecked")
+        boolean advance() {
+            Object item = run.take(channel);
+            if (item == null || item == END) {
+                return false;
+            }
+            value = (T) item;
+            return true;
+        }
+    }
+
+    /**
+     * 单个数据源的一次查询，同时作为写入缓冲的sink
+     */
+    private class Tenant implements Consumer<Object> {
+        private final String key;
+        private final Run<?> run;
+        private final Channel channel;
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile Future<?> future;
+        private volatile ScheduledFuture<?> timeout;
+        private volatile long startNanos;
+        private volatile long blockedNanos;
+        private volatile long blockedSince;
+
+        Tenant(String key, Run<?> run, Channel channel) {
+            this.key = key;
+            this.run = run;
+            this.channel = channel;
+        }
+
+        @Override
+        public void accept(Object row) {
+            if (done.get()) {
+                throw new CancellationException("查询已结束:" + key);
+            }
+            if (channel.tryPut(row)) {
+                return;
+            }
+            // 等待消费的时间不计入超时
+            blockedSince = System.nanoTime();
+            try {
+                channel.put(row);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException("查询已取消:" + key);
+            } finally {
+                blockedNanos += System.nanoTime() - blockedSince;
+                blockedSince = 0;
+            }
+        }
+
+        /**
+         * 已执行的时间，不含等待消费的时间
+         */
+        long activeMillis() {
+            long now = System.nanoTime();
+            long since = blockedSince;
+            long blocked = blockedNanos + (since == 0 ? 0 : now - since);
+            return TimeUnit.NANOSECONDS.toMillis(now - startNanos - blocked);
+        }
+    }
+
+    /**
+     * 一次并行查询：滑动窗口提交，查询线程结束后才提交下一个数据源
+     */
+    private class Run<T> {
+        private final Iterator<String> pending;
+        private final int total;
+        private final TenantSource<T> source;
+        private final long timeoutMillis;
+        private final Function<String, Channel> channels;
+        private final Set<String> succeeded = ConcurrentHashMap.newKeySet();
+        private final Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        private final Set<Tenant> running = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        Run(List<String> keys, TenantSource<T> source, long timeoutMillis, Function<String, Channel> channels) {
+            this.pending = keys.iterator();
+            this.total = keys.size();
+            this.source = source;
+            this.timeoutMillis = timeoutMillis;
+            this.channels = channels;
+        }
+
+        void start(int parallelism) {
+            for (int i = 0; i < parallelism; i++) {
+                launchNext();
+            }
+        }
+
+        private void launchNext() {
+            while (true) {
+                String key;
+                synchronized (pending) {
+                    if (cancelled.get() || !pending.hasNext()) {
+                        return;
+                    }
+                    key = pending.next();
+                }
+                Tenant tenant = new Tenant(key, this, channels.apply(key));
+                if (!dynamicDataSource.existsDataSource(key)) {
+                    // 不存在的key不能回退到默认数据源执行，也不占并发名额
+                    finish(tenant, new IllegalArgumentException("数据源不存在:" + key));
+                    continue;
+                }
+                FutureTask<Void> task = new FutureTask<>(() -> execute(tenant), null);
+                tenant.future = task;
+                running.add(tenant);
+                try {
+                    executor.execute(task);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    running.remove(tenant);
+                    finish(tenant, e);
+                }
+            }
+        }
+
+        private void execute(Tenant tenant) {
+            tenant.startNanos = System.nanoTime();
+            tenant.timeout = timer.schedule(() -> checkTimeout(tenant), timeoutMillis, TimeUnit.MILLISECONDS);
+            CURRENT.set(tenant);
+            DataSourceContextHolder.push(tenant.key);
+            try {
+                source.fetch(tenant.key, tenant);
+                finish(tenant, null);
+            } catch (Throwable e) {
+                finish(tenant, e);
+            } finally {
+                DataSourceContextHolder.poll();
+                CURRENT.remove();
+                tenant.timeout.cancel(false);
+                running.remove(tenant);
+                // 查询线程真正退出后才让出名额
+                launchNext();
+            }
+        }
+
+        /**
+         * 超时检查：等待消费的时间不计入，未到期时按剩余时间重新检查
+         */
+        private void checkTimeout(Tenant tenant) {
+            if (tenant.done.get()) {
+                return;
+            }
+            long remaining = timeoutMillis - tenant.activeMillis();
+            if (remaining > 0) {
+                tenant.timeout = timer.schedule(() -> checkTimeout(tenant), remaining, TimeUnit.MILLISECONDS);
+                return;
+            }
+            if (finish(tenant, new TimeoutException("查询超时:" + timeoutMillis + "ms"))) {
+                tenant.future.cancel(true);
+            }
+        }
+
+        /**
+         * 每个数据源只记录一次结果（正常结束、失败与超时以先到者为准）
+         *
+         * @return 是否由本次调用记录
+         */
+        private boolean finish(Tenant tenant, Throwable error) {
+            if (!tenant.done.compareAndSet(false, true)) {
+                return false;
+            }
+            if (error == null) {
+                succeeded.add(tenant.key);
+            } else {
+                failures.put(tenant.key, error);
+                log.warn("---多数据源查询失败---:{},{}", tenant.key, error.getMessage());
+            }
+            tenant.channel.end();
+            return true;
+        }
+
+        /**
+         * 从缓冲取下一项，调用线程被中断时取消本次查询并返回null
+         */
+        Object take(Channel channel) {
+            if (cancelled.get()) {
+                return null;
+            }
+            try {
+                return channel.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                cancel();
+                return null;
+            }
+        }
+
+        /**
+         * 不再提交新的数据源，并中断正在执行的查询
+         */
+        void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                running.forEach(tenant -> tenant.future.cancel(true));
+            }
+        }
+
+        ScatterGatherResult<T> result(Iterator<T> iterator) {
+            Stream<T> stream = StreamSupport.stream(
+                    Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED), false);
+            return new ScatterGatherResult<>(stream.onClose(this::cancel), succeeded, failures, this::cancel);
+        }
+    }
+}
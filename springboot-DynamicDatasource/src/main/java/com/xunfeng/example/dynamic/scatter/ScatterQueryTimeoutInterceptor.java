@@ -0,0 +1,33 @@
+package com.xunfeng.example.dynamic.scatter;
+
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * 多数据源并行查询的语句超时
+ * <p>
+ * 在{@link ScatterGatherService}的工作线程上创建Statement时，按该数据源剩余的超时时间设置queryTimeout，
+ * 超时后由驱动取消数据库端的执行，而不只是放弃等待结果。
+ *
+ * @author
+ * @date 2026/10/19 14:00
+ */
+@Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+public class ScatterQueryTimeoutInterceptor implements Interceptor {
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        Statement statement = (Statement) invocation.proceed();
+        int seconds = ScatterGatherService.currentQueryTimeoutSeconds();
+        if (seconds > 0 && (statement.getQueryTimeout() == 0 || statement.getQueryTimeout() > seconds)) {
+            statement.setQueryTimeout(seconds);
+        }
+        return statement;
+    }
+}
@@ -0,0 +1,27 @@
+package com.xunfeng.example.dynamic.scatter;
+
+import java.util.function.Consumer;
+
+/**
+ * 单个数据源的查询
+ * <p>
+ * 在已切换到对应数据源的工作线程上执行，结果逐行交给sink。用ResultHandler流式读取时不需要先装进集合，
+ * 结果较少时也可以查出列表后逐个交给sink，例如：
+ * <pre>
+ * (key, sink) -&gt; sysUserMapper.streamAll(context -&gt; sink.accept(context.getResultObject()))
+ * (key, sink) -&gt; sysUserMapper.selectList(null).forEach(sink)
+ * </pre>
+ * 缓冲已满时sink会阻塞到调用方消费；查询超时或调用方关闭结果后sink抛出{@link java.util.concurrent.CancellationException}。
+ *
+ * @author
+ * @date 2026/10/19 14:00
+ */
+@FunctionalInterface
+public interface TenantSource<T> {
+
+    /**
+     * @param key  数据源key
+     * @param sink 逐行接收结果
+     */
+    void fetch(String key, Consumer<? super T> sink) throws Exception;
+}
@@ -0,0 +1,145 @@
+package com.xunfeng.example.dynamic.sqlstats;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SQL指纹：把字面量替换为?，多个空白合并为一个空格，只含占位符的括号列表（IN列表、VALUES行）合并为(?+)，
+ * 使参数个数不同、字面量不同的同类语句归为一条。只有单引号内是字符串字面量，双引号按标准SQL是带引号的标识符，原样保留。
+ * <p>
+ * MyBatis的静态SQL每次执行都是同一个字符串，按原文缓存指纹，命中时不做解析也不分配对象；
+ * 缓存满后不再加入，未命中的语句每次重新计算。
+ *
+ * @author
+ * @date 2026/10/19 11:00
+ */
+public class SqlFingerprint {
+
+    private static final int MAX_DEPTH = 32;
+
+    private final Map<String, String> cache = new ConcurrentHashMap<>();
+    private final int cacheSize;
+
+    public SqlFingerprint(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public String of(String sql) {
+        String fingerprint = cache.get(sql);
+        if (fingerprint != null) {
+            return fingerprint;
+        }
+        fingerprint = normalize(sql);
+        if (cache.size() < cacheSize) {
+            cache.putIfAbsent(sql, fingerprint);
+        }
+        return fingerprint;
+    }
+
+    public int getCachedCount() {
+        return cache.size();
+    }
+
+    static String normalize(String sql) {
+        StringBuilder out = new StringBuilder(sql.length());
+        // 每层括号在out中的起始位置，以及该层是否只有占位符
+        int[] open = new int[MAX_DEPTH];
+        boolean[] onlyPlaceholders = new boolean[MAX_DEPTH];
+        int depth = 0;
+        int length = sql.length();
+        int i = 0;
+        while (i < length) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                i = skipQuoted(sql, i, c);
+                out.append('?');
+                continue;
+            }
+            if (c == '"') {
+                int end = skipQuoted(sql, i, c);
+                out.append(sql, i, end);
+                i = end;
+                if (depth > 0 && depth <= MAX_DEPTH) {
+                    onlyPlaceholders[depth - 1] = false;
+                }
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                while (i < length && Character.isWhitespace(sql.charAt(i))) {
+                    i++;
+                }
+                if (out.length() > 0 && i < length) {
+                    out.append(' ');
+                }
+                continue;
+            }
+            if (Character.isDigit(c) && !isIdentifierPart(out)) {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+                    i++;
+                }
+                out.append('?');
+                continue;
+            }
+            if (c == '(') {
+                if (depth < MAX_DEPTH) {
+                    open[depth] = out.length();
+                    onlyPlaceholders[depth] = true;
+                }
+                depth++;
+                out.append(c);
+            } else if (c == ')') {
+                if (depth > 0) {
+                    depth--;
+                    if (depth < MAX_DEPTH && onlyPlaceholders[depth] && out.length() > open[depth] + 1) {
+                        out.setLength(open[depth] + 1);
+                        out.append("?+");
+                    }
+                }
+                out.append(c);
+            } else {
+                out.append(c);
+            }
+            if (depth > 0 && depth <= MAX_DEPTH && c != '(' && c != ',' && c != '?'
+                    && onlyPlaceholders[depth - 1]) {
+                onlyPlaceholders[depth - 1] = false;
+            }
+            i++;
+        }
+        return out.toString();
+    }
+
+    /**
+     * 跳过引号内的内容，支持重复引号和反斜杠转义
+     *
+     * @return 结束引号之后的位置
+     */
+    private static int skipQuoted(String sql, int start, char quote) {
+        int i = start + 1;
+        while (i < sql.length()) {
+            char c = sql.charAt(i);
+            if (c == '\\') {
+                i += 2;
+            } else if (c == quote) {
+                if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+                    i += 2;
+                } else {
+                    return i + 1;
+                }
+            } else {
+                i++;
+            }
+        }
+        return i;
+    }
+
+    /**
+     * 数字紧跟在标识符后面时（如t1、col_2）是标识符的一部分
+     */
+    private static boolean isIdentifierPart(StringBuilder out) {
+        if (out.length() == 0) {
+            return false;
+        }
+        char last = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_' || last == '$' || last == '`';
+    }
+}
@@ -0,0 +1,338 @@
+package com.xunfeng.example.dynamic.sqlstats;
+
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import lombok.Data;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按(数据源key, SQL指纹)汇总执行次数、失败次数和耗时分布，并保留最近的慢SQL样本
+ * <p>
+ * 记录路径只有两次ConcurrentHashMap查找和几次原子累加，已登记的语句不分配对象；耗时按对数分桶
+ * （每个2的幂区间再分4档，误差不超过25%）计数，分位数从桶中估算。登记的语句数量有上限，
+ * 满了以后按space-saving的做法替换：随机抽样若干条，淘汰其中排序值（累计耗时加继承值）最小的一条，
+ * 新语句继承被淘汰语句的排序值，避免新语句刚登记就被下一条新语句挤掉、统计表反复抖动。
+ * 替换通过槽位CAS完成，不持有全局锁。
+ *
+ * @author
+ * @date 2026/10/19 11:00
+ */
+public class SqlStatsCollector {
+
+    /**
+     * 2^36微秒约19小时，超过的计入最后一个桶
+     */
+    private static final int BUCKETS = bucket(1L << 36) + 1;
+
+    /**
+     * 淘汰时抽样的槽位数，语句数量不超过该值时全部比较
+     */
+    private static final int EVICTION_SAMPLES = 8;
+
+    private final DynamicDataSourceProperties.SqlStats config;
+    private final SqlFingerprint fingerprint;
+    private final long slowThresholdNanos;
+
+    /**
+     * 数据源key -> SQL指纹 -> 统计，两级Map避免每次记录都创建组合key
+     */
+    private final Map<String, Map<String, StatementStats>> stats = new ConcurrentHashMap<>();
+    /**
+     * 已登记语句所在的槽位，淘汰只在槽位上抽样
+     */
+    private final AtomicReferenceArray<StatementStats> slots;
+    private final AtomicInteger size = new AtomicInteger();
+    private final LongAdder evictions = new LongAdder();
+    private final Deque<SlowQuery> slowQueries = new ArrayDeque<>();
+
+    public SqlStatsCollector(DynamicDataSourceProperties properties) {
+        this.config = properties.getSqlStats();
+        this.fingerprint = new SqlFingerprint(config.getFingerprintCacheSize());
+        this.slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowThresholdMillis());
+        this.slots = new AtomicReferenceArray<>(Math.max(1, config.getMaxStatements()));
+    }
+
+    /**
+     * 记录一次执行
+     *
+     * @param key    数据源key
+     * @param sql    执行的SQL（含?占位符）
+     * @param nanos  耗时
+     * @param failed 是否抛出异常
+     * @return 该语句的统计
+     */
+    public StatementStats record(String key, String sql, long nanos, boolean failed) {
+        StatementStats statementStats = lookup(key, fingerprint.of(sql));
+        statementStats.record(nanos, failed);
+        return statementStats;
+    }
+
+    public boolean isSlow(long nanos) {
+        return nanos >= slowThresholdNanos;
+    }
+
+    public void addSlowQuery(SlowQuery slowQuery) {
+        synchronized (slowQueries) {
+            slowQueries.addFirst(slowQuery);
+            while (slowQueries.size() > config.getSlowSamples()) {
+                slowQueries.removeLast();
+            }
+        }
+    }
+
+    private StatementStats lookup(String key, String sqlFingerprint) {
+        Map<String, StatementStats> byFingerprint = stats.get(key);
+        if (byFingerprint != null) {
+            StatementStats statementStats = byFingerprint.get(sqlFingerprint);
+            if (statementStats != null) {
+                return statementStats;
+            }
+        }
+        return register(key, sqlFingerprint);
+    }
+
+    private StatementStats register(String key, String sqlFingerprint) {
+        Map<String, StatementStats> byFingerprint = stats.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        StatementStats created = new StatementStats(key, sqlFingerprint);
+        StatementStats existing = byFingerprint.putIfAbsent(sqlFingerprint, created);
+        if (existing != null) {
+            return existing;
+        }
+        // 放入槽位之前不会被抽样到，先登记再占槽位
+        while (true) {
+            int n = size.get();
+            if (n < slots.length()) {
+                if (size.compareAndSet(n, n + 1)) {
+                    slots.set(n, created);
+                    return created;
+                }
+            } else if (replaceVictim(created)) {
+                return created;
+            }
+        }
+    }
+
+    /**
+     * 抽样选出排序值最小的语句，用新语句替换其槽位并继承其排序值；
+     * 淘汰后仍在执行的记录会计入已移除的对象，不影响正确性
+     *
+     * @return 是否替换成功，槽位被其它线程抢先替换时返回false
+     */
+    private boolean replaceVictim(StatementStats created) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int capacity = slots.length();
+        int victimSlot = -1;
+        StatementStats victim = null;
+        for (int i = 0; i < Math.min(EVICTION_SAMPLES, capacity); i++) {
+            int slot = capacity <= EVICTION_SAMPLES ? i : random.nextInt(capacity);
+            StatementStats candidate = slots.get(slot);
+            if (candidate != null && (victim == null || candidate.getRank() < victim.getRank())) {
+                victim = candidate;
+                victimSlot = slot;
+            }
+        }
+        if (victim == null) {
+            return false;
+        }
+        created.inheritedNanos = victim.getRank();
+        if (!slots.compareAndSet(victimSlot, victim, created)) {
+            return false;
+        }
+        // 空的内层Map保留，避免与并发登记同一数据源的语句相互覆盖
+        Map<String, StatementStats> byFingerprint = stats.get(victim.key);
+        if (byFingerprint != null) {
+            byFingerprint.remove(victim.fingerprint, victim);
+        }
+        evictions.increment();
+        return true;
+    }
+
+    /**
+     * 按累计耗时倒序
+     *
+     * @param key   只看指定数据源，null表示全部
+     * @param limit 最多返回条数
+     */
+    public List<StatementStats> top(String key, int limit) {
+        List<StatementStats> all = new ArrayList<>();
+        stats.forEach((dsKey, byFingerprint) -> {
+            if (key == null || key.equals(dsKey)) {
+                all.addAll(byFingerprint.values());
+            }
+        });
+        all.sort(Comparator.comparingLong(StatementStats::getTotalNanos).reversed());
+        return all.size() > limit ? new ArrayList<>(all.subList(0, limit)) : all;
+    }
+
+    public List<SlowQuery> getSlowQueries() {
+        synchronized (slowQueries) {
+            return new ArrayList<>(slowQueries);
+        }
+    }
+
+    public void reset() {
+        stats.clear();
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+        size.set(0);
+        synchronized (slowQueries) {
+            slowQueries.clear();
+        }
+    }
+
+    public int getSize() {
+        return size.get();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public int getCachedFingerprints() {
+        return fingerprint.getCachedCount();
+    }
+
+    /**
+     * 耗时（微秒）所在的桶：0~3微秒各一个桶，之后每个2的幂区间分4个桶
+     */
+    static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) Math.max(0, micros);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - 2)) & 3;
+        return (exponent - 1) * 4 + sub;
+    }
+
+    /**
+     * 桶的上界（微秒）
+     */
+    static long bucketUpperBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exponent = bucket / 4 + 1;
+        int sub = bucket % 4;
+        return ((4L + sub + 1) << (exponent - 2)) - 1;
+    }
+
+    /**
+     * 一条语句在一个数据源上的统计
+     */
+    public static final class StatementStats {
+        private final String key;
+        private final String fingerprint;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+        /**
+         * 替换进来时继承的被淘汰语句的排序值
+         */
+        private volatile long inheritedNanos;
+
+        StatementStats(String key, String fingerprint) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+        }
+
+        void record(long nanos, boolean failed) {
+            count.increment();
+            if (failed) {
+                errors.increment();
+            }
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.incrementAndGet(Math.min(BUCKETS - 1, bucket(TimeUnit.NANOSECONDS.toMicros(nanos))));
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        public long getTotalNanos() {
+            return totalNanos.sum();
+        }
+
+        public long getMaxNanos() {
+            return maxNanos.get();
+        }
+
+        /**
+         * 淘汰排序值：自身累计耗时加上继承值，只用于淘汰，不计入展示的统计
+         */
+        long getRank() {
+            return getTotalNanos() + inheritedNanos;
+        }
+
+        /**
+         * 估算分位数，返回所在桶的上界
+         *
+         * @param quantile 0~1
+         * @return 微秒
+         */
+        public long percentileMicros(double quantile) {
+            long[] counts = new long[BUCKETS];
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = histogram.get(i);
+                total += counts[i];
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(bucketUpperBound(i), TimeUnit.NANOSECONDS.toMicros(getMaxNanos()));
+                }
+            }
+            return TimeUnit.NANOSECONDS.toMicros(getMaxNanos());
+        }
+    }
+
+    /**
+     * 慢SQL样本
+     */
+    @Data
+    public static class SlowQuery {
+        private Date time;
+        private String key;
+        private String statementId;
+        private String fingerprint;
+        private String sql;
+        private List<String> parameters;
+        private long elapsedMillis;
+        private boolean failed;
+    }
+}
@@ -0,0 +1,79 @@
+package com.xunfeng.example.dynamic.sqlstats;
+
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Selector;
+import org.springframework.lang.Nullable;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * SQL统计端点：/actuator/sqlstats 按累计耗时倒序查看各数据源的语句和最近的慢SQL，
+ * /actuator/sqlstats/{key} 只看一个数据源，?limit=指定条数；DELETE清空统计
+ *
+ * @author
+ * @date 2026/10/19 11:00
+ */
+@Endpoint(id = "sqlstats")
+public class SqlStatsEndpoint {
+
+    private static final int DEFAULT_LIMIT = 50;
+
+    private final SqlStatsCollector collector;
+
+    public SqlStatsEndpoint(SqlStatsCollector collector) {
+        this.collector = collector;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats(@Nullable Integer limit) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("statements", collector.getSize());
+        result.put("evictions", collector.getEvictions());
+        result.put("cachedFingerprints", collector.getCachedFingerprints());
+        result.put("top", describe(collector.top(null, limit == null ? DEFAULT_LIMIT : limit)));
+        result.put("slowQueries", collector.getSlowQueries());
+        return result;
+    }
+
+    @ReadOperation
+    public Map<String, Object> stats(@Selector String key, @Nullable Integer limit) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("top", describe(collector.top(key, limit == null ? DEFAULT_LIMIT : limit)));
+        result.put("slowQueries", collector.getSlowQueries().stream()
+                .filter(slowQuery -> key.equals(slowQuery.getKey()))
+                .collect(Collectors.toList()));
+        return result;
+    }
+
+    @DeleteOperation
+    public void reset() {
+        collector.reset();
+    }
+
+    private static List<Map<String, Object>> describe(List<SqlStatsCollector.StatementStats> statements) {
+        List<Map<String, Object>> result = new ArrayList<>(statements.size());
+        for (SqlStatsCollector.StatementStats stats : statements) {
+            long count = stats.getCount();
+            Map<String, Object> info = new LinkedHashMap<>();
+            info.put("key", stats.getKey());
+            info.put("fingerprint", stats.getFingerprint());
+            info.put("count", count);
+            info.put("errors", stats.getErrors());
+            info.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(stats.getTotalNanos()));
+            info.put("avgMillis", count == 0 ? 0 : stats.getTotalNanos() / 1e6 / count);
+            info.put("p50Millis", stats.percentileMicros(0.5) / 1000.0);
+            info.put("p95Millis", stats.percentileMicros(0.95) / 1000.0);
+            info.put("p99Millis", stats.percentileMicros(0.99) / 1000.0);
+            info.put("maxMillis", stats.getMaxNanos() / 1e6);
+            result.add(info);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,167 @@
+package com.xunfeng.example.dynamic.sqlstats;
+
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.mapping.ParameterMapping;
+import org.apache.ibatis.mapping.ParameterMode;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.reflection.MetaObject;
+import org.apache.ibatis.reflection.SystemMetaObject;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SQL执行统计拦截器
+ * <p>
+ * 拦截StatementHandler的执行方法，只计语句在数据库上的执行时间（不含获取连接、预编译和结果映射之后的
+ * 游标读取），按{@link DynamicDataSource#getLastRouteKey()}归属到实际路由的数据源。
+ * 超过阈值的语句额外解析Mapper id，作为慢SQL样本保存；开启include-parameters时附带参数的类型和长度，
+ * 参数值可能含敏感数据，不记录。语句结束后清除线程上的路由key，事务内的语句沿用同一连接，等事务结束再清除。
+ *
+ * @author
+ * @date 2026/10/19 11:00
+ */
+@Slf4j
+@Intercepts({
+        @Signature(type = StatementHandler.class, method = "query", args = {Statement.class, ResultHandler.class}),
+        @Signature(type = StatementHandler.class, method = "queryCursor", args = {Statement.class}),
+        @Signature(type = StatementHandler.class, method = "update", args = {Statement.class}),
+        @Signature(type = StatementHandler.class, method = "batch", args = {Statement.class})
+})
+public class SqlStatsInterceptor implements Interceptor {
+
+    /**
+     * 事务结束时清除路由key，同一事务内重复注册只保留一个
+     */
+    private static final TransactionSynchronization CLEAR_ROUTE_KEY = new TransactionSynchronization() {
+        @Override
+        public void afterCompletion(int status) {
+            DynamicDataSource.clearLastRouteKey();
+        }
+    };
+
+    private final SqlStatsCollector collector;
+    private final boolean includeParameters;
+
+    public SqlStatsInterceptor(SqlStatsCollector collector, boolean includeParameters) {
+        this.collector = collector;
+        this.includeParameters = includeParameters;
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try {
+            Object result = invocation.proceed();
+            failed = false;
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            StatementHandler handler = (StatementHandler) invocation.getTarget();
+            BoundSql boundSql = handler.getBoundSql();
+            String key = DynamicDataSource.getLastRouteKey();
+            if (key == null) {
+                key = DynamicDataSource.MASTER;
+            }
+            SqlStatsCollector.StatementStats stats = collector.record(key, boundSql.getSql(), elapsed, failed);
+            if (collector.isSlow(elapsed)) {
+                sample(handler, boundSql, stats, elapsed, failed);
+            }
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                TransactionSynchronizationManager.registerSynchronization(CLEAR_ROUTE_KEY);
+            } else {
+                DynamicDataSource.clearLastRouteKey();
+            }
+        }
+    }
+
+    private void sample(StatementHandler handler, BoundSql boundSql, SqlStatsCollector.StatementStats stats,
+                        long elapsed, boolean failed) {
+        SqlStatsCollector.SlowQuery slowQuery = new SqlStatsCollector.SlowQuery();
+        slowQuery.setTime(new Date());
+        slowQuery.setKey(stats.getKey());
+        slowQuery.setFingerprint(stats.getFingerprint());
+        slowQuery.setSql(boundSql.getSql());
+        slowQuery.setElapsedMillis(TimeUnit.NANOSECONDS.toMillis(elapsed));
+        slowQuery.setFailed(failed);
+        try {
+            // RoutingStatementHandler -> 实际的StatementHandler -> MappedStatement
+            MetaObject metaObject = SystemMetaObject.forObject(handler);
+            while (metaObject.hasGetter("h")) {
+                metaObject = SystemMetaObject.forObject(metaObject.getValue("h.target"));
+            }
+            MappedStatement ms = (MappedStatement) metaObject.getValue("delegate.mappedStatement");
+            slowQuery.setStatementId(ms.getId());
+            if (includeParameters) {
+                slowQuery.setParameters(parameters(ms.getConfiguration(), boundSql));
+            }
+        } catch (RuntimeException e) {
+            log.debug("---解析慢SQL参数失败---:{}", e.getMessage());
+        }
+        collector.addSlowQuery(slowQuery);
+        log.warn("---慢SQL---:{},{}ms,{},{}", slowQuery.getKey(), slowQuery.getElapsedMillis(),
+                slowQuery.getStatementId(), slowQuery.getFingerprint());
+    }
+
+    /**
+     * 按DefaultParameterHandler的规则取出参数，只保留类型和长度
+     */
+    private static List<String> parameters(Configuration configuration, BoundSql boundSql) {
+        List<String> values = new ArrayList<>();
+        Object parameterObject = boundSql.getParameterObject();
+        MetaObject metaObject = null;
+        for (ParameterMapping mapping : boundSql.getParameterMappings()) {
+            if (mapping.getMode() == ParameterMode.OUT) {
+                continue;
+            }
+            String property = mapping.getProperty();
+            Object value;
+            if (boundSql.hasAdditionalParameter(property)) {
+                value = boundSql.getAdditionalParameter(property);
+            } else if (parameterObject == null) {
+                value = null;
+            } else if (configuration.getTypeHandlerRegistry().hasTypeHandler(parameterObject.getClass())) {
+                value = parameterObject;
+            } else {
+                if (metaObject == null) {
+                    metaObject = configuration.newMetaObject(parameterObject);
+                }
+                value = metaObject.getValue(property);
+            }
+            values.add(mask(value));
+        }
+        return values;
+    }
+
+    /**
+     * 参数脱敏：字符串和二进制记为类型(长度)，其它记为类型名
+     */
+    static String mask(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        String type = value.getClass().getSimpleName();
+        if (value instanceof CharSequence) {
+            return type + "(" + ((CharSequence) value).length() + ")";
+        }
+        if (value instanceof byte[]) {
+            return type + "(" + ((byte[]) value).length + ")";
+        }
+        return type;
+    }
+}
@@ -0,0 +1,147 @@
+package com.xunfeng.example.dynamic.tenant;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 租户路由过滤器
+ * <p>
+ * 每个请求解析一次租户：依次取请求头、子域名、路径前缀后的第一段，经查找表换成数据源key后压入
+ * {@link DataSourceContextHolder}，并放入请求属性{@link #TENANT_ATTRIBUTE}供控制器使用；
+ * 请求结束时无论成败都清空上下文，不会残留在Tomcat线程上。
+ * <p>
+ * 查找表由路由表中的租户key和配置的别名组成，路由表变化后才重建；不在表中的租户直接返回404，
+ * 不会回退到默认数据源，也不会触发创建连接池。默认数据源不对租户开放。
+ *
+ * @author
+ * @date 2026/10/19 12:00
+ */
+@Slf4j
+public class TenantRoutingFilter extends OncePerRequestFilter {
+
+    public static final String TENANT_ATTRIBUTE = "com.xunfeng.example.dynamic.tenant.TENANT";
+
+    private final DynamicDataSource dynamicDataSource;
+    private final DynamicDataSourceProperties.Tenant config;
+
+    /**
+     * 构建查找表时的路由表快照和查找表：租户标识 -> 数据源key
+     */
+    private volatile Lookup lookup = new Lookup(null, Collections.emptyMap());
+
+    public TenantRoutingFilter(DynamicDataSource dynamicDataSource, DynamicDataSourceProperties properties) {
+        this.dynamicDataSource = dynamicDataSource;
+        this.config = properties.getTenant();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        String tenant = resolveTenant(request);
+        if (tenant == null) {
+            if (config.isRequired()) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "缺少租户标识");
+                return;
+            }
+            filterChain.doFilter(request, response);
+            return;
+        }
+        String key = lookup().get(tenant);
+        if (key == null) {
+            log.debug("---未知租户---:{},{}", tenant, request.getRequestURI());
+            response.sendError(HttpServletResponse.SC_NOT_FOUND, "租户不存在:" + tenant);
+            return;
+        }
+        request.setAttribute(TENANT_ATTRIBUTE, key);
+        DataSourceContextHolder.push(key);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            DataSourceContextHolder.clear();
+        }
+    }
+
+    /**
+     * 依次从请求头、子域名、路径中取租户标识
+     *
+     * @return 租户标识，都没有时返回null
+     */
+    String resolveTenant(HttpServletRequest request) {
+        if (StringUtils.hasText(config.getHeader())) {
+            String tenant = request.getHeader(config.getHeader());
+            if (StringUtils.hasText(tenant)) {
+                return tenant.trim();
+            }
+        }
+        if (StringUtils.hasText(config.getHostSuffix())) {
+            String host = request.getServerName();
+            if (host != null && host.length() > config.getHostSuffix().length()
+                    && host.regionMatches(true, host.length() - config.getHostSuffix().length(),
+                    config.getHostSuffix(), 0, config.getHostSuffix().length())) {
+                String tenant = host.substring(0, host.length() - config.getHostSuffix().length());
+                if (tenant.indexOf('.') < 0) {
+                    return tenant;
+                }
+            }
+        }
+        if (StringUtils.hasText(config.getPathPrefix())) {
+            // 前缀后的第一段且后面还有路径才是租户，如 /user/{tenant}/1，/user/1 不算
+            String path = request.getRequestURI().substring(request.getContextPath().length());
+            if (path.startsWith(config.getPathPrefix())) {
+                int start = config.getPathPrefix().length();
+                int end = path.indexOf('/', start);
+                if (end > start) {
+                    return path.substring(start, end);
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 路由表变化后重建查找表；并发重建时结果相同，不需要加锁
+     */
+    Map<String, String> lookup() {
+        Map<String, ?> targets = dynamicDataSource.getTargetDataSourceMap();
+        Lookup current = this.lookup;
+        if (current.targets == targets) {
+            return current.tenants;
+        }
+        Map<String, String> tenants = new HashMap<>(targets.size() * 2);
+        for (String key : targets.keySet()) {
+            if (!DynamicDataSource.MASTER.equals(key)) {
+                tenants.put(key, key);
+            }
+        }
+        config.getAliases().forEach((alias, key) -> {
+            if (tenants.containsKey(key)) {
+                tenants.put(alias, key);
+            }
+        });
+        this.lookup = new Lookup(targets, Collections.unmodifiableMap(tenants));
+        return tenants;
+    }
+
+    private static final class Lookup {
+        private final Map<String, ?> targets;
+        private final Map<String, String> tenants;
+
+        Lookup(Map<String, ?> targets, Map<String, String> tenants) {
+            this.targets = targets;
+            this.tenants = tenants;
+        }
+    }
+}
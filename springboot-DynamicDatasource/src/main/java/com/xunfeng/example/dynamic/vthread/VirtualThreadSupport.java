@@ -0,0 +1,50 @@
+package com.xunfeng.example.dynamic.vthread;
+
+import com.xunfeng.example.dynamic.DataSourceContextStorage;
+
+import javax.servlet.Filter;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 虚拟线程相关能力，实现位于src/main/java21，只在-Pjdk21构建时编译
+ * <p>
+ * Spring 5.3内置的ASM读不了JDK 21的class文件，实现类不能放在组件扫描的包下，也不能声明为@Configuration，
+ * 这里按类名反射加载，由Java 8编译的配置类注册为Bean。
+ *
+ * @author
+ * @date 2026/10/19 10:00
+ */
+public interface VirtualThreadSupport {
+
+    String IMPLEMENTATION = "com.xunfeng.jdk21.Jdk21VirtualThreadSupport";
+
+    /**
+     * 每个任务一个虚拟线程的执行器
+     *
+     * @param namePrefix 线程名前缀
+     */
+    ExecutorService newExecutor(String namePrefix);
+
+    /**
+     * 按请求绑定到ScopedValue的数据源栈，未绑定时（后台线程、线程池任务）使用fallback
+     */
+    DataSourceContextStorage newContextStorage(DataSourceContextStorage fallback);
+
+    /**
+     * 为每个请求绑定数据源栈的过滤器，配合{@link #newContextStorage}使用
+     */
+    Filter newContextScopeFilter();
+
+    /**
+     * 加载JDK 21实现
+     *
+     * @throws IllegalStateException 未以-Pjdk21构建或运行时不是JDK 21且未开启--enable-preview
+     */
+    static VirtualThreadSupport load() {
+        try {
+            return (VirtualThreadSupport) Class.forName(IMPLEMENTATION).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            throw new IllegalStateException("虚拟线程需要以-Pjdk21构建，并在JDK 21上以--enable-preview运行:" + e, e);
+        }
+    }
+}
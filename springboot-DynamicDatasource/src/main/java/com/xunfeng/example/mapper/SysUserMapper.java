@@ -2,12 +2,43 @@ package com.xunfeng.example.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.xunfeng.example.domain.entity.SysUser;
+import com.xunfeng.example.dynamic.cache.TenantAwareCache;
+import org.apache.ibatis.annotations.CacheNamespace;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Property;
+import org.apache.ibatis.annotations.ResultType;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 /**
  * @author
  * @date 2024/8/5 10:25
  */
 @Mapper
+@CacheNamespace(implementation = TenantAwareCache.class, properties = {
+        @Property(name = "maxEntriesPerTenant", value = "1000"),
+        @Property(name = "ttlMillis", value = "60000")
+})
 public interface SysUserMapper extends BaseMapper<SysUser> {
+
+    String EXPORT_COLUMNS = "select user_id, username, phone, nickname, name, email, dept_id, lock_flag, del_flag,"
+            + " create_by, create_time, update_by, update_time from sys_user";
+
+    /**
+     * 流式读取全部用户（MySQL），fetchSize为Integer.MIN_VALUE时驱动逐行读取，不缓存整个结果集
+     */
+    @Select(EXPORT_COLUMNS)
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE, useCache = false)
+    @ResultType(SysUser.class)
+    void streamAll(ResultHandler<SysUser> handler);
+
+    /**
+     * 游标分批读取全部用户（PostgreSQL等），需要在事务内执行，每次从服务端取fetchSize行
+     */
+    @Select(EXPORT_COLUMNS)
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = 1000, useCache = false)
+    @ResultType(SysUser.class)
+    void streamAllBatched(ResultHandler<SysUser> handler);
 }
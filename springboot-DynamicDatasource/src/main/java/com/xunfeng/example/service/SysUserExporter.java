@@ -0,0 +1,293 @@
+package com.xunfeng.example.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.xunfeng.example.domain.entity.SysUser;
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.interceptor.StatementAwareInterceptor;
+import com.xunfeng.example.mapper.SysUserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.ibatis.session.ResultContext;
+import org.apache.ibatis.session.ResultHandler;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.Resource;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 租户用户流式导出
+ * <p>
+ * 在只读事务内用服务端游标逐行读取sys_user，每行直接写到输出流，内存占用与表大小无关。
+ * MySQL使用fetchSize=Integer.MIN_VALUE逐行流式读取，其他数据库按fetchSize分批读取。
+ * 写出失败（客户端断开）时取消数据库端的查询：MySQL流式读取关闭结果集时驱动会读完剩余的行，
+ * 只停止回调并不能提前结束，需要通过{@link StatementAwareInterceptor}拿到Statement调用cancel()。
+ *
+ * @author
+ * @date 2026/10/18 21:00
+ */
+@Slf4j
+@Component
+public class SysUserExporter {
+
+    /**
+     * 每写出多少行flush一次，让客户端尽早收到数据，也能及时发现连接已断开
+     */
+    private static final int FLUSH_ROWS = 500;
+
+    /**
+     * 导出的列，不包含密码、盐值和第三方登录标识
+     */
+    private static final List<Column> COLUMNS = Arrays.asList(
+            new Column("userId", SysUser::getUserId),
+            new Column("username", SysUser::getUsername),
+            new Column("phone", SysUser::getPhone),
+            new Column("nickname", SysUser::getNickname),
+            new Column("name", SysUser::getName),
+            new Column("email", SysUser::getEmail),
+            new Column("deptId", SysUser::getDeptId),
+            new Column("lockFlag", SysUser::getLockFlag),
+            new Column("delFlag", SysUser::getDelFlag),
+            new Column("createBy", SysUser::getCreateBy),
+            new Column("createTime", SysUser::getCreateTime),
+            new Column("updateBy", SysUser::getUpdateBy),
+            new Column("updateTime", SysUser::getUpdateTime));
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    @Resource
+    private SysUserMapper sysUserMapper;
+    @Resource(name = "anotherDynamicDataSource")
+    private DynamicDataSource dynamicDataSource;
+    @Resource
+    private PlatformTransactionManager transactionManager;
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    /**
+     * 导出租户的全部用户
+     *
+     * @param dsKey  数据源key
+     * @param format 输出格式
+     * @param out    输出流，不会被关闭
+     * @return 导出行数
+     * @throws IllegalArgumentException 数据源不存在
+     * @throws IOException              写出失败，如客户端中途断开
+     */
+    public long export(String dsKey, Format format, OutputStream out) throws IOException {
+        if (!dynamicDataSource.existsDataSource(dsKey)) {
+            // 不存在的key会回退到默认数据源，这里直接拒绝，避免导出错库的数据
+            throw new IllegalArgumentException("数据源不存在:" + dsKey);
+        }
+        RowWriter writer = format == Format.CSV ? new CsvWriter(out) : new NdjsonWriter(out);
+        ExportHandler handler = new ExportHandler(writer);
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        long start = System.currentTimeMillis();
+        DataSourceContextHolder.push(dsKey);
+        try {
+            transaction.executeWithoutResult(status -> {
+                if (isMySql()) {
+                    sysUserMapper.streamAll(handler);
+                } else {
+                    sysUserMapper.streamAllBatched(handler);
+                }
+            });
+        } finally {
+            DataSourceContextHolder.poll();
+        }
+        if (handler.error != null) {
+            log.info("---用户导出中断---:{},已写出{}行,{}", dsKey, handler.count, handler.error.getMessage());
+            throw handler.error;
+        }
+        writer.finish();
+        log.info("---用户导出完成---:{},{}行,耗时{}ms", dsKey, handler.count, System.currentTimeMillis() - start);
+        return handler.count;
+    }
+
+    /**
+     * 当前事务绑定的连接是否为MySQL/MariaDB
+     */
+    private boolean isMySql() {
+        Connection connection = DataSourceUtils.getConnection(dynamicDataSource);
+        try {
+            String product = connection.getMetaData().getDatabaseProductName();
+            return product.contains("MySQL") || product.contains("MariaDB");
+        } catch (SQLException e) {
+            throw new CannotGetJdbcConnectionException("获取数据库类型失败", e);
+        } finally {
+            DataSourceUtils.releaseConnection(connection, dynamicDataSource);
+        }
+    }
+
+    private static final class ExportHandler implements ResultHandler<SysUser>, StatementAwareInterceptor.StatementAware {
+        private final RowWriter writer;
+        private long count;
+        private IOException error;
+        private Statement statement;
+
+        ExportHandler(RowWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void setStatement(Statement statement) {
+            this.statement = statement;
+        }
+
+        @Override
+        public void handleResult(ResultContext<? extends SysUser> context) {
+            try {
+                writer.write(context.getResultObject());
+                if (++count % FLUSH_ROWS == 0) {
+                    writer.flush();
+                }
+            } catch (IOException e) {
+                error = e;
+                context.stop();
+                cancel();
+            }
+        }
+
+        /**
+         * 取消数据库端的查询，驱动关闭结果集时不再读完剩余的行
+         */
+        private void cancel() {
+            if (statement == null) {
+                return;
+            }
+            try {
+                statement.cancel();
+            } catch (SQLException e) {
+                log.warn("---取消导出查询失败---:{}", e.getMessage());
+            }
+        }
+    }
+
+    private static final class Column {
+        private final String name;
+        private final Function<SysUser, Object> getter;
+
+        Column(String name, Function<SysUser, Object> getter) {
+            this.name = name;
+            this.getter = getter;
+        }
+    }
+
+    private interface RowWriter {
+        void write(SysUser user) throws IOException;
+
+        void flush() throws IOException;
+
+        void finish() throws IOException;
+    }
+
+    /**
+     * 每行一个JSON对象
+     */
+    private static final class NdjsonWriter implements RowWriter {
+        private final JsonGenerator generator;
+
+        NdjsonWriter(OutputStream out) throws IOException {
+            this.generator = JSON_FACTORY.createGenerator(out, JsonEncoding.UTF8)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                    .setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(SysUser user) throws IOException {
+            generator.writeStartObject();
+            for (Column column : COLUMNS) {
+                Object value = column.getter.apply(user);
+                generator.writeFieldName(column.name);
+                if (value == null) {
+                    generator.writeNull();
+                } else if (value instanceof Long) {
+                    generator.writeNumber((Long) value);
+                } else {
+                    generator.writeString(value.toString());
+                }
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        public void flush() throws IOException {
+            generator.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            generator.close();
+        }
+    }
+
+    /**
+     * 首行为列名，按RFC 4180转义
+     */
+    private static final class CsvWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvWriter(OutputStream out) throws IOException {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 8192);
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(COLUMNS.get(i).name);
+            }
+            writer.write("\r\n");
+        }
+
+        @Override
+        public void write(SysUser user) throws IOException {
+            for (int i = 0; i < COLUMNS.size(); i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                Object value = COLUMNS.get(i).getter.apply(user);
+                if (value != null) {
+                    writer.write(escape(value.toString()));
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private static String escape(String value) {
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                return value;
+            }
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+
+        @Override
+        public void finish() throws IOException {
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package com.xunfeng.example.service;
+
+import com.xunfeng.example.domain.entity.SysUser;
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.mapper.SysUserMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按租户合并的用户查询
+ * <p>
+ * 同一租户同一用户id的并发请求共享一次查询；短时间窗口内到达的不同id合并为一次
+ * selectBatchIds，窗口到期或攒满一批时立即执行。
+ *
+ * @author
+ * @date 2026/10/18 20:00
+ */
+@Slf4j
+@Component
+public class SysUserLoader implements DisposableBean {
+
+    private final SysUserMapper sysUserMapper;
+    private final DynamicDataSourceProperties.Loader config;
+    /**
+     * 查询中的请求：(数据源key, 用户id) -> 结果
+     */
+    private final Map<UserKey, CompletableFuture<SysUser>> inflight = new ConcurrentHashMap<>();
+    /**
+     * 每个租户正在攒的一批id
+     */
+    private final Map<String, Batch> pending = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService timer;
+    private final ThreadPoolExecutor executor;
+
+    public SysUserLoader(SysUserMapper sysUserMapper, DynamicDataSourceProperties properties) {
+        this.sysUserMapper = sysUserMapper;
+        this.config = properties.getLoader();
+        CustomizableThreadFactory timerFactory = new CustomizableThreadFactory("user-loader-timer-");
+        timerFactory.setDaemon(true);
+        this.timer = Executors.newSingleThreadScheduledExecutor(timerFactory);
+        CustomizableThreadFactory workerFactory = new CustomizableThreadFactory("user-loader-");
+        workerFactory.setDaemon(true);
+        this.executor = new ThreadPoolExecutor(config.getThreads(), config.getThreads(), 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), workerFactory);
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 查询单个用户
+     *
+     * @param dsKey  数据源key
+     * @param userId 用户id
+     * @return 用户，不存在时结果为null
+     */
+    public CompletableFuture<SysUser> load(String dsKey, Long userId) {
+        UserKey key = new UserKey(dsKey, userId);
+        CompletableFuture<SysUser> future = inflight.get(key);
+        if (future != null) {
+            return future;
+        }
+        CompletableFuture<SysUser> created = new CompletableFuture<>();
+        future = inflight.putIfAbsent(key, created);
+        if (future != null) {
+            return future;
+        }
+        enqueue(dsKey, userId, created);
+        return created;
+    }
+
+    /**
+     * 批量查询同一租户的用户
+     *
+     * @param dsKey   数据源key
+     * @param userIds 用户id
+     * @return 用户id -> 用户，只包含存在的用户，按入参顺序
+     */
+    public CompletableFuture<Map<Long, SysUser>> loadMany(String dsKey, Collection<Long> userIds) {
+        Map<Long, CompletableFuture<SysUser>> futures = new LinkedHashMap<>();
+        for (Long userId : userIds) {
+            futures.computeIfAbsent(userId, id -> load(dsKey, id));
+        }
+        return CompletableFuture.allOf(futures.values().toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            Map<Long, SysUser> result = new LinkedHashMap<>();
+            futures.forEach((id, future) -> {
+                SysUser user = future.join();
+                if (user != null) {
+                    result.put(id, user);
+                }
+            });
+            return result;
+        });
+    }
+
+    private void enqueue(String dsKey, Long userId, CompletableFuture<SysUser> future) {
+        while (true) {
+            boolean flushNow = false;
+            Batch batch = pending.get(dsKey);
+            if (batch == null) {
+                Batch created = new Batch(dsKey);
+                batch = pending.putIfAbsent(dsKey, created);
+                if (batch == null) {
+                    batch = created;
+                    try {
+                        timer.schedule(() -> flush(created), config.getWindowMillis(), TimeUnit.MILLISECONDS);
+                    } catch (RejectedExecutionException e) {
+                        // 已关闭，不再等窗口，直接提交让等待方失败
+                        flushNow = true;
+                    }
+                }
+            }
+            int size = batch.add(userId, future);
+            if (size > 0) {
+                if (flushNow || size >= config.getMaxBatchSize()) {
+                    flush(batch);
+                }
+                return;
+            }
+            // 这一批已经提交，换新的一批
+            pending.remove(dsKey, batch);
+        }
+    }
+
+    private void flush(Batch batch) {
+        if (!batch.seal()) {
+            return;
+        }
+        pending.remove(batch.dsKey, batch);
+        if (batch.futures.isEmpty()) {
+            // 窗口计时先于第一个id加入就到期，空批次不查询，加入方会换新的一批
+            return;
+        }
+        try {
+            executor.execute(() -> execute(batch));
+        } catch (RejectedExecutionException e) {
+            complete(batch, Collections.emptyMap(), e);
+        }
+    }
+
+    private void execute(Batch batch) {
+        Map<Long, SysUser> found = new HashMap<>(batch.futures.size() * 2);
+        Throwable error = null;
+        DataSourceContextHolder.push(batch.dsKey);
+        try {
+            for (SysUser user : sysUserMapper.selectBatchIds(new ArrayList<>(batch.futures.keySet()))) {
+                found.put(user.getUserId(), user);
+            }
+        } catch (Throwable e) {
+            // Error也要让等待方结束并移出登记，否则同一id之后的请求永远挂在这个future上
+            log.warn("---批量查询用户失败---:{},{}", batch.dsKey, e.toString());
+            error = e;
+        } finally {
+            DataSourceContextHolder.poll();
+        }
+        complete(batch, found, error);
+    }
+
+    private void complete(Batch batch, Map<Long, SysUser> found, Throwable error) {
+        // 先移出查询中的登记，之后到达的请求会重新查询，不会拿到过期结果
+        for (Map.Entry<Long, CompletableFuture<SysUser>> entry : batch.futures.entrySet()) {
+            inflight.remove(new UserKey(batch.dsKey, entry.getKey()), entry.getValue());
+            if (error != null) {
+                entry.getValue().completeExceptionally(error);
+            } else {
+                entry.getValue().complete(found.get(entry.getKey()));
+            }
+        }
+    }
+
+    @Override
+    public void destroy() {
+        timer.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * 一个租户的一批待查询id，提交后不再接收
+     */
+    private static final class Batch {
+        private final String dsKey;
+        private final Map<Long, CompletableFuture<SysUser>> futures = new LinkedHashMap<>();
+        private boolean sealed;
+
+        Batch(String dsKey) {
+            this.dsKey = dsKey;
+        }
+
+        /**
+         * @return 加入后的批大小，已提交时返回0
+         */
+        synchronized int add(Long userId, CompletableFuture<SysUser> future) {
+            if (sealed) {
+                return 0;
+            }
+            futures.put(userId, future);
+            return futures.size();
+        }
+
+        synchronized boolean seal() {
+            if (sealed) {
+                return false;
+            }
+            sealed = true;
+            return true;
+        }
+    }
+
+    private static final class UserKey {
+        private final String dsKey;
+        private final Long userId;
+
+        UserKey(String dsKey, Long userId) {
+            this.dsKey = dsKey;
+            this.userId = userId;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof UserKey)) {
+                return false;
+            }
+            UserKey that = (UserKey) o;
+            return dsKey.equals(that.dsKey) && userId.equals(that.userId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(dsKey, userId);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.xunfeng.example.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.baomidou.mybatisplus.core.toolkit.Wrappers;
+import com.xunfeng.example.domain.entity.SysUser;
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.mapper.SysUserMapper;
+import lombok.Data;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * 租户用户分页查询
+ * <p>
+ * 按user_id做游标分页（keyset）：每页只查 user_id > 上一页最后一个id，按主键顺序取size+1行，
+ * 多出的一行只用来判断是否还有下一页。不使用OFFSET，翻到多深都只扫描一页的行数。
+ * ASSIGN_ID生成的雪花id按时间递增，新插入的用户出现在末尾，翻页过程中不会重复或跳过已有的行。
+ * <p>
+ * 游标对客户端不透明，编码了租户、筛选条件和上一页最后一个id，换租户或换条件使用会被拒绝。
+ *
+ * @author
+ * @date 2026/10/19 13:00
+ */
+@Component
+public class SysUserPager {
+
+    public static final int DEFAULT_SIZE = 20;
+    public static final int MAX_SIZE = 200;
+
+    private static final String CURSOR_VERSION = "v1";
+    /**
+     * 分页不返回的列：密码、盐值和第三方登录标识
+     */
+    private static final Set<String> EXCLUDED_COLUMNS = new HashSet<>(Arrays.asList(
+            "password", "salt", "wx_openid", "mini_openid", "qq_openid", "gitee_login", "osc_id"));
+
+    @Resource
+    private SysUserMapper sysUserMapper;
+
+    /**
+     * 查询一页用户
+     *
+     * @param dsKey  数据源key
+     * @param deptId 部门id，为空时不筛选
+     * @param cursor 上一页返回的游标，为空时查第一页
+     * @param size   每页条数，超出范围时取默认值或上限
+     * @return 当前页，最后一页的nextCursor为null
+     * @throws IllegalArgumentException 游标无法解析，或不属于当前租户、筛选条件
+     */
+    public CursorPage page(String dsKey, Long deptId, String cursor, int size) {
+        int limit = size <= 0 ? DEFAULT_SIZE : Math.min(size, MAX_SIZE);
+        Long afterUserId = cursor == null || cursor.isEmpty() ? null : decode(cursor, dsKey, deptId);
+        LambdaQueryWrapper<SysUser> wrapper = Wrappers.<SysUser>lambdaQuery()
+                .select(SysUser.class, column -> !EXCLUDED_COLUMNS.contains(column.getColumn()))
+                .eq(deptId != null, SysUser::getDeptId, deptId)
+                .gt(afterUserId != null, SysUser::getUserId, afterUserId)
+                .orderByAsc(SysUser::getUserId)
+                .last("limit " + (limit + 1));
+        List<SysUser> records;
+        DataSourceContextHolder.push(dsKey);
+        try {
+            records = sysUserMapper.selectList(wrapper);
+        } finally {
+            DataSourceContextHolder.poll();
+        }
+        CursorPage page = new CursorPage();
+        if (records.size() > limit) {
+            records = records.subList(0, limit);
+            page.setNextCursor(encode(dsKey, deptId, records.get(limit - 1).getUserId()));
+        }
+        page.setRecords(records);
+        page.setSize(limit);
+        return page;
+    }
+
+    static String encode(String dsKey, Long deptId, Long lastUserId) {
+        String raw = String.join("|", CURSOR_VERSION, dsKey, deptId == null ? "" : deptId.toString(),
+                lastUserId.toString());
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return 上一页最后一个用户id
+     */
+    static Long decode(String cursor, String dsKey, Long deptId) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|", -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("游标格式错误");
+        }
+        if (parts.length != 4 || !CURSOR_VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("游标格式错误");
+        }
+        if (!parts[1].equals(dsKey) || !parts[2].equals(deptId == null ? "" : deptId.toString())) {
+            throw new IllegalArgumentException("游标与当前租户或筛选条件不一致");
+        }
+        try {
+            return Long.valueOf(parts[3]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("游标格式错误");
+        }
+    }
+
+    @Data
+    public static class CursorPage {
+        private List<SysUser> records;
+        /**
+         * 实际使用的每页条数
+         */
+        private int size;
+        /**
+         * 下一页游标，没有下一页时为null
+         */
+        private String nextCursor;
+
+        public boolean isHasMore() {
+            return Objects.nonNull(nextCursor);
+        }
+    }
+}
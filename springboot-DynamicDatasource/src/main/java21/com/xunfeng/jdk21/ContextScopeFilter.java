@@ -0,0 +1,32 @@
+package com.xunfeng.jdk21;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+
+/**
+ * 请求处理期间绑定一个空的数据源栈，见{@link ScopedValueContextStorage}
+ *
+ * @author
+ * @date 2026/10/19 10:00
+ */
+public class ContextScopeFilter implements Filter {
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        try {
+            ScopedValueContextStorage.call(() -> {
+                chain.doFilter(request, response);
+                return null;
+            });
+        } catch (IOException | ServletException | RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new ServletException(e);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.xunfeng.jdk21;
+
+import com.xunfeng.example.dynamic.DataSourceContextStorage;
+import com.xunfeng.example.dynamic.vthread.VirtualThreadSupport;
+
+import javax.servlet.Filter;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * {@link VirtualThreadSupport}的JDK 21实现
+ * <p>
+ * 不在com.xunfeng.example下：该包会被组件扫描，而Spring 5.3读不了JDK 21的class文件。
+ *
+ * @author
+ * @date 2026/10/19 10:00
+ */
+public class Jdk21VirtualThreadSupport implements VirtualThreadSupport {
+
+    @Override
+    public ExecutorService newExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 1).factory());
+    }
+
+    @Override
+    public DataSourceContextStorage newContextStorage(DataSourceContextStorage fallback) {
+        return new ScopedValueContextStorage(fallback);
+    }
+
+    @Override
+    public Filter newContextScopeFilter() {
+        return new ContextScopeFilter();
+    }
+}
@@ -0,0 +1,62 @@
+package com.xunfeng.jdk21;
+
+import com.xunfeng.example.dynamic.DataSourceContextStorage;
+
+import java.util.Deque;
+import java.util.concurrent.Callable;
+
+/**
+ * 以ScopedValue保存数据源栈
+ * <p>
+ * 每个请求绑定一个{@link Slot}，请求内push、poll只修改这个Slot，请求结束绑定自然失效，不需要清理，
+ * 虚拟线程也不用为此创建ThreadLocalMap。数据源栈仍可变，所以绑定的是栈的容器而不是栈本身；
+ * 子任务不共享这个容器，仍通过DataSourceContextHolder.wrap复制上下文。
+ * 未绑定时（定时任务、线程池任务、异步请求的回调线程）使用fallback。
+ *
+ * @author
+ * @date 2026/10/19 10:00
+ */
+public class ScopedValueContextStorage implements DataSourceContextStorage {
+
+    static final ScopedValue<Slot> SLOT = ScopedValue.newInstance();
+
+    private final DataSourceContextStorage fallback;
+
+    public ScopedValueContextStorage(DataSourceContextStorage fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * 在新的数据源栈作用域内执行
+     */
+    public static <T> T call(Callable<T> task) throws Exception {
+        return ScopedValue.where(SLOT, new Slot()).call(task);
+    }
+
+    @Override
+    public Deque<String> get() {
+        return SLOT.isBound() ? SLOT.get().stack : fallback.get();
+    }
+
+    @Override
+    public void set(Deque<String> stack) {
+        if (SLOT.isBound()) {
+            SLOT.get().stack = stack;
+        } else {
+            fallback.set(stack);
+        }
+    }
+
+    @Override
+    public void remove() {
+        if (SLOT.isBound()) {
+            SLOT.get().stack = null;
+        } else {
+            fallback.remove();
+        }
+    }
+
+    static final class Slot {
+        private Deque<String> stack;
+    }
+}
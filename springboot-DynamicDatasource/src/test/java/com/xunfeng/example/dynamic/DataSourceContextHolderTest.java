@@ -0,0 +1,47 @@
+package com.xunfeng.example.dynamic;
+
+import com.xunfeng.example.dynamic.propagation.DataSourceContextExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class DataSourceContextHolderTest {
+
+    @AfterEach
+    void clearContext() {
+        DataSourceContextHolder.clear();
+    }
+
+    @Test
+    void nestedPushRestoresOuterKey() {
+        DataSourceContextHolder.push("outer");
+        DataSourceContextHolder.push("inner");
+        assertEquals("inner", DataSourceContextHolder.peek());
+        DataSourceContextHolder.poll();
+        assertEquals("outer", DataSourceContextHolder.peek());
+        DataSourceContextHolder.poll();
+        assertNull(DataSourceContextHolder.peek());
+    }
+
+    @Test
+    void wrappedExecutorCarriesSubmitterContext() throws Exception {
+        ExecutorService executor = DataSourceContextExecutors.wrap(Executors.newSingleThreadExecutor());
+        try {
+            DataSourceContextHolder.push("t1");
+            assertEquals("t1", CompletableFuture.supplyAsync(DataSourceContextHolder::peek, executor).get());
+            DataSourceContextHolder.push("t2");
+            assertEquals("t2", executor.submit(DataSourceContextHolder::peek).get());
+            DataSourceContextHolder.clear();
+            // 执行线程在任务结束后恢复原状，不残留上一个任务的数据源
+            assertNull(executor.submit(DataSourceContextHolder::peek).get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.xunfeng.example.dynamic;
+
+import com.alibaba.druid.pool.GetConnectionTimeoutException;
+import com.xunfeng.example.dynamic.group.ReplicaGroup;
+import com.xunfeng.example.dynamic.health.DataSourceHealthChecker;
+import com.xunfeng.example.dynamic.health.HealthState;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DynamicDataSourceTest {
+
+    private final DataSource master = mock(DataSource.class);
+
+    @AfterEach
+    void clearContext() {
+        DataSourceContextHolder.clear();
+    }
+
+    private DynamicDataSource newDynamicDataSource() {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, master);
+        return new DynamicDataSource(master, targets);
+    }
+
+    @Test
+    void routesByStringKeyAndFallsBackToMaster() {
+        DynamicDataSource dynamicDataSource = newDynamicDataSource();
+        DataSource tenant = mock(DataSource.class);
+        assertTrue(dynamicDataSource.addDataSource(1L, tenant));
+        assertFalse(dynamicDataSource.addDataSource("1", mock(DataSource.class)));
+
+        DataSourceContextHolder.push("1");
+        assertSame(tenant, dynamicDataSource.determineTargetDataSource());
+        DataSourceContextHolder.push("404");
+        assertSame(master, dynamicDataSource.determineTargetDataSource());
+        assertSame(master, dynamicDataSource.determineTargetDataSource());
+    }
+
+    @Test
+    void replaceAndRemovePublishNewSnapshot() {
+        DynamicDataSource dynamicDataSource = newDynamicDataSource();
+        DataSource first = mock(DataSource.class);
+        DataSource second = mock(DataSource.class);
+        dynamicDataSource.addDataSource("t1", first);
+        Map<String, DataSource> before = dynamicDataSource.getTargetDataSourceMap();
+
+        assertSame(first, dynamicDataSource.replaceDataSource("t1", second));
+        assertSame(first, before.get("t1"));
+        assertSame(second, dynamicDataSource.getTargetDataSourceMap().get("t1"));
+
+        assertSame(second, dynamicDataSource.removeDataSource("t1"));
+        assertNull(dynamicDataSource.removeDataSource("t1"));
+        assertFalse(dynamicDataSource.existsDataSource("t1"));
+        assertThrows(IllegalArgumentException.class, () -> dynamicDataSource.removeDataSource(DynamicDataSource.MASTER));
+    }
+
+    @Test
+    void downTargetFailsFastWithoutBorrowing() throws Exception {
+        DynamicDataSource dynamicDataSource = newDynamicDataSource();
+        DataSource tenant = mock(DataSource.class);
+        when(tenant.getConnection()).thenThrow(new SQLException("Communications link failure", "08S01"));
+        dynamicDataSource.addDataSource("t1", tenant);
+        DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+        properties.getHealth().setDownThreshold(2);
+        DataSourceHealthChecker healthChecker = new DataSourceHealthChecker(dynamicDataSource, properties);
+        dynamicDataSource.setHealthChecker(healthChecker);
+        try {
+            for (int i = 0; i < 2; i++) {
+                DataSourceContextHolder.push("t1");
+                assertThrows(SQLException.class, dynamicDataSource::getConnection);
+            }
+            assertEquals(HealthState.DOWN, healthChecker.getState("t1"));
+            DataSourceContextHolder.push("t1");
+            assertThrows(SQLTransientConnectionException.class, dynamicDataSource::getConnection);
+            verify(tenant, times(2)).getConnection();
+        } finally {
+            healthChecker.destroy();
+        }
+    }
+
+    @Test
+    void poolWaitTimeoutDoesNotTripBreaker() throws Exception {
+        DynamicDataSource dynamicDataSource = newDynamicDataSource();
+        DataSource tenant = mock(DataSource.class);
+        when(tenant.getConnection()).thenThrow(new GetConnectionTimeoutException("wait millis 3000, active 20"));
+        dynamicDataSource.addDataSource("t1", tenant);
+        DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+        properties.getHealth().setDownThreshold(2);
+        DataSourceHealthChecker healthChecker = new DataSourceHealthChecker(dynamicDataSource, properties);
+        dynamicDataSource.setHealthChecker(healthChecker);
+        try {
+            for (int i = 0; i < 3; i++) {
+                DataSourceContextHolder.push("t1");
+                assertThrows(GetConnectionTimeoutException.class, dynamicDataSource::getConnection);
+            }
+            assertEquals(HealthState.UP, healthChecker.getState("t1"));
+            verify(tenant, times(3)).getConnection();
+        } finally {
+            healthChecker.destroy();
+        }
+    }
+
+    @Test
+    void readsGoToReplicasAndWritesStayOnPrimary() throws Exception {
+        DynamicDataSource dynamicDataSource = newDynamicDataSource();
+        DataSource primary = mock(DataSource.class);
+        DataSource replica1 = mock(DataSource.class);
+        DataSource replica2 = mock(DataSource.class);
+        Connection primaryConnection = mock(Connection.class);
+        Connection replicaConnection = mock(Connection.class);
+        when(primary.getConnection()).thenReturn(primaryConnection);
+        when(replica1.getConnection()).thenReturn(replicaConnection);
+        when(replica2.getConnection()).thenReturn(replicaConnection);
+        dynamicDataSource.addDataSource("1", primary);
+        dynamicDataSource.addDataSource("11", replica1);
+        dynamicDataSource.addDataSource("12", replica2);
+        dynamicDataSource.setReplicaGroups(Collections.singletonMap("1", new ReplicaGroup("1",
+                Arrays.asList(new ReplicaGroup.Replica("11", 1), new ReplicaGroup.Replica("12", 1)))));
+
+        DataSourceContextHolder.push("1");
+        assertSame(primaryConnection, dynamicDataSource.getConnection());
+
+        Boolean previous = ReadWriteContextHolder.markRead();
+        try {
+            for (int i = 0; i < 4; i++) {
+                DataSourceContextHolder.push("1");
+                assertSame(replicaConnection, dynamicDataSource.getConnection());
+            }
+        } finally {
+            ReadWriteContextHolder.restore(previous);
+        }
+        verify(replica1, times(2)).getConnection();
+        verify(replica2, times(2)).getConnection();
+        verify(primary, times(1)).getConnection();
+    }
+
+    @Test
+    void targetMissingAfterAdmissionFailsWithSqlException() throws Exception {
+        DynamicDataSource dynamicDataSource = newDynamicDataSource();
+        dynamicDataSource.addDataSource("t1", mock(DataSource.class));
+        // 熔断切换到的备用数据源在切换后被移除
+        DataSourceHealthChecker healthChecker = mock(DataSourceHealthChecker.class);
+        when(healthChecker.admit("t1")).thenReturn("gone");
+        dynamicDataSource.setHealthChecker(healthChecker);
+
+        DataSourceContextHolder.push("t1");
+        SQLException e = assertThrows(SQLException.class, dynamicDataSource::getConnection);
+        assertTrue(e.getMessage().contains("gone"));
+        verify(healthChecker).recordFailure(eq("gone"), same(e));
+    }
+
+    @Test
+    void credentialedBorrowUsesSameRouting() throws Exception {
+        DynamicDataSource dynamicDataSource = newDynamicDataSource();
+        DataSource primary = mock(DataSource.class);
+        DataSource replica = mock(DataSource.class);
+        Connection replicaConnection = mock(Connection.class);
+        when(replica.getConnection("app", "secret")).thenReturn(replicaConnection);
+        dynamicDataSource.addDataSource("1", primary);
+        dynamicDataSource.addDataSource("11", replica);
+        dynamicDataSource.setReplicaGroups(Collections.singletonMap("1", new ReplicaGroup("1",
+                Collections.singletonList(new ReplicaGroup.Replica("11", 1)))));
+        DataSourceHealthChecker healthChecker = mock(DataSourceHealthChecker.class);
+        when(healthChecker.admit(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        dynamicDataSource.setHealthChecker(healthChecker);
+
+        Boolean previous = ReadWriteContextHolder.markRead();
+        try {
+            DataSourceContextHolder.push("1");
+            assertSame(replicaConnection, dynamicDataSource.getConnection("app", "secret"));
+            assertEquals("11", DynamicDataSource.getLastRouteKey());
+        } finally {
+            ReadWriteContextHolder.restore(previous);
+            DynamicDataSource.clearLastRouteKey();
+        }
+        verify(healthChecker).admit("11");
+        verify(healthChecker).recordSuccess("11");
+        verifyNoInteractions(primary);
+    }
+}
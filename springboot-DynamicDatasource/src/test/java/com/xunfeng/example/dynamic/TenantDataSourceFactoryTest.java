@@ -0,0 +1,135 @@
+package com.xunfeng.example.dynamic;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.pool.Jdbc4ValidConnectionChecker;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantDataSourceFactoryTest {
+
+    private final DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+
+    private static DataSourceEntity row(long id) {
+        DataSourceEntity ds = new DataSourceEntity();
+        ds.setId(id);
+        ds.setUrl("jdbc:mock:tenant" + id);
+        return ds;
+    }
+
+    @Test
+    void appliesValidationPolicyPerKey() {
+        properties.getValidation().getPolicies().put("2", DynamicDataSourceProperties.ValidationPolicy.JDBC4);
+        properties.getValidation().getPolicies().put("3", DynamicDataSourceProperties.ValidationPolicy.TIME_SINCE_LAST_USE);
+        TenantDataSourceFactory factory = new TenantDataSourceFactory(properties);
+
+        DruidDataSource byDefault = factory.build(row(1));
+        assertTrue(byDefault.isTestOnBorrow());
+
+        DruidDataSource jdbc4 = factory.build(row(2));
+        assertTrue(jdbc4.isTestOnBorrow());
+        assertTrue(jdbc4.getValidConnectionChecker() instanceof Jdbc4ValidConnectionChecker);
+
+        DruidDataSource sinceLastUse = factory.build(row(3));
+        assertFalse(sinceLastUse.isTestOnBorrow());
+        assertTrue(sinceLastUse.isTestWhileIdle());
+        assertEquals(30000, sinceLastUse.getTimeBetweenEvictionRunsMillis());
+    }
+
+    @Test
+    void startupTimeoutDoesNotLeakIntoRuntimeBorrows() {
+        properties.getBootstrap().setTenantTimeoutMillis(500);
+        properties.getBootstrap().setPoolMaxWaitMillis(3000);
+        DruidDataSource pool = new TenantDataSourceFactory(properties).build(row(1));
+        assertEquals(500, pool.getConnectTimeout());
+        assertEquals(3000, pool.getMaxWait());
+    }
+
+    @Test
+    void poolRecoversAfterDatabaseComesBack() throws Exception {
+        properties.getBootstrap().setPoolMaxWaitMillis(1000);
+        DataSourceEntity ds = row(1);
+        ds.setUrl("jdbc:h2:mem:factory_recover;DB_CLOSE_DELAY=-1");
+        ToggleDriver driver = new ToggleDriver();
+        DruidDataSource pool = new TenantDataSourceFactory(properties).build(ds);
+        pool.setDriver(driver);
+        pool.init();
+        try {
+            // 占住初始化时建立的连接，之后的借出都需要新建物理连接
+            Connection held = pool.getConnection();
+            driver.down = true;
+            assertThrows(SQLException.class, pool::getConnection);
+
+            driver.down = false;
+            Connection recovered = null;
+            long deadline = System.currentTimeMillis() + 10000;
+            while (recovered == null && System.currentTimeMillis() < deadline) {
+                try {
+                    recovered = pool.getConnection();
+                } catch (SQLException e) {
+                    // 建连线程在失败后的间隔内休眠，稍后重试
+                }
+            }
+            assertNotNull(recovered);
+            recovered.close();
+            held.close();
+        } finally {
+            pool.close();
+        }
+    }
+
+    /**
+     * 可以模拟数据库不可达的H2驱动
+     */
+    private static final class ToggleDriver implements Driver {
+        private final Driver delegate = new org.h2.Driver();
+        private volatile boolean down;
+
+        @Override
+        public Connection connect(String url, Properties info) throws SQLException {
+            if (down) {
+                throw new SQLException("Connection refused", "08001");
+            }
+            return delegate.connect(url, info);
+        }
+
+        @Override
+        public boolean acceptsURL(String url) throws SQLException {
+            return delegate.acceptsURL(url);
+        }
+
+        @Override
+        public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) throws SQLException {
+            return delegate.getPropertyInfo(url, info);
+        }
+
+        @Override
+        public int getMajorVersion() {
+            return delegate.getMajorVersion();
+        }
+
+        @Override
+        public int getMinorVersion() {
+            return delegate.getMinorVersion();
+        }
+
+        @Override
+        public boolean jdbcCompliant() {
+            return delegate.jdbcCompliant();
+        }
+
+        @Override
+        public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+            return delegate.getParentLogger();
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.xunfeng.example.dynamic.affinity;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionAffinityTest {
+
+    private final DruidDataSource pool = new DruidDataSource();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        pool.setUrl("jdbc:mock:affinity");
+        pool.setMaxActive(4);
+        pool.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ConnectionAffinity.end();
+        pool.close();
+    }
+
+    @Test
+    void reusesConnectionWithinScopeAndReleasesAtEnd() throws Exception {
+        assertTrue(ConnectionAffinity.begin());
+        assertFalse(ConnectionAffinity.begin());
+        Connection first = ConnectionAffinity.getConnection("t1", pool);
+        Object physical = first.unwrap(Connection.class);
+        first.close();
+        assertTrue(first.isClosed());
+        assertEquals(1, pool.getActiveCount());
+
+        Connection second = ConnectionAffinity.getConnection("t1", pool);
+        assertSame(physical, second.unwrap(Connection.class));
+        // 仍被占用时另借一条，不共用
+        Connection nested = ConnectionAffinity.getConnection("t1", pool);
+        assertNotSame(physical, nested.unwrap(Connection.class));
+        nested.close();
+        assertEquals(1, pool.getActiveCount());
+        second.close();
+
+        ConnectionAffinity.end();
+        assertFalse(ConnectionAffinity.isActive());
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    void connectionStillInUseIsReturnedOnClose() throws Exception {
+        ConnectionAffinity.begin();
+        Connection connection = ConnectionAffinity.getConnection("t1", pool);
+        connection.setAutoCommit(false);
+        ConnectionAffinity.end();
+        assertEquals(1, pool.getActiveCount());
+        connection.close();
+        assertEquals(0, pool.getActiveCount());
+    }
+
+    @Test
+    void leftoverTransactionRolledBackBeforeReuse() throws Exception {
+        ConnectionAffinity.begin();
+        Connection connection = ConnectionAffinity.getConnection("t1", pool);
+        connection.setAutoCommit(false);
+        connection.close();
+        assertTrue(ConnectionAffinity.getConnection("t1", pool).getAutoCommit());
+    }
+
+    @Test
+    void outsideScopeBorrowsNormally() throws Exception {
+        Connection connection = ConnectionAffinity.getConnection("t1", pool);
+        connection.close();
+        assertEquals(0, pool.getActiveCount());
+    }
+}
@@ -0,0 +1,69 @@
+package com.xunfeng.example.dynamic.aspect;
+
+import com.baomidou.dynamic.datasource.annotation.DS;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.annotation.DataSource;
+import org.junit.jupiter.api.Test;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class DataSourceKeyResolverTest {
+
+    @DataSource("classKey")
+    static class TenantService {
+        public void classLevel() {
+        }
+
+        @DataSource("#tenantId")
+        public void expression(String tenantId) {
+        }
+
+        @DataSource("slave")
+        public void entityArgument(DataSourceEntity ds) {
+        }
+    }
+
+    @DS("dsClassKey")
+    static class LegacyService {
+        public void classLevel() {
+        }
+
+        @DS("#p0")
+        public void expression(String tenantId) {
+        }
+
+        @DS("ignored")
+        @DataSource("preferred")
+        public void both() {
+        }
+    }
+
+    @Test
+    void resolvesBaomidouAnnotation() throws Exception {
+        assertEquals("dsClassKey", DataSourceKeyResolver.build(LegacyService.class.getMethod("classLevel"),
+                LegacyService.class).resolve(new Object[0]));
+        assertEquals("9", DataSourceKeyResolver.build(LegacyService.class.getMethod("expression", String.class),
+                LegacyService.class).resolve(new Object[]{"9"}));
+        assertEquals("preferred", DataSourceKeyResolver.build(LegacyService.class.getMethod("both"),
+                LegacyService.class).resolve(new Object[0]));
+    }
+
+    @Test
+    void resolvesClassLevelExpressionAndEntityArgument() throws Exception {
+        assertEquals("classKey", resolve("classLevel").resolve(new Object[0]));
+        assertEquals("42", resolve("expression", String.class).resolve(new Object[]{"42"}));
+
+        DataSourceKeyResolver entityResolver = resolve("entityArgument", DataSourceEntity.class);
+        DataSourceEntity ds = new DataSourceEntity();
+        ds.setId(7L);
+        assertEquals("7", entityResolver.resolve(new Object[]{ds}));
+        assertEquals("slave", entityResolver.resolve(new Object[]{null}));
+    }
+
+    private static DataSourceKeyResolver resolve(String name, Class<?>... parameterTypes) throws Exception {
+        Method method = TenantService.class.getMethod(name, parameterTypes);
+        return DataSourceKeyResolver.build(method, TenantService.class);
+    }
+}
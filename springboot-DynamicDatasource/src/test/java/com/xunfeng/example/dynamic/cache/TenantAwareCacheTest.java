@@ -0,0 +1,104 @@
+package com.xunfeng.example.dynamic.cache;
+
+import com.xunfeng.example.domain.entity.SysUser;
+import org.apache.ibatis.cache.Cache;
+import org.apache.ibatis.cache.CacheKey;
+import org.apache.ibatis.mapping.CacheBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.Properties;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TenantAwareCacheTest {
+
+    private static TenantAwareCache build(String id, int maxEntries, long ttlMillis) {
+        Properties properties = new Properties();
+        properties.setProperty("maxEntriesPerTenant", String.valueOf(maxEntries));
+        properties.setProperty("ttlMillis", String.valueOf(ttlMillis));
+        Cache cache = new CacheBuilder(id).implementation(TenantAwareCache.class).properties(properties).build();
+        return TenantAwareCache.getCaches().get(cache.getId());
+    }
+
+    private static CacheKey key(String tenant, Object value) {
+        CacheKey key = new CacheKey();
+        key.update(value);
+        return new TenantCacheKey(tenant, key);
+    }
+
+    private static SysUser user(String name) {
+        SysUser user = new SysUser();
+        user.setUsername(name);
+        return user;
+    }
+
+    @Test
+    void tenantsAreIsolatedAndClearIsTenantScoped() {
+        TenantAwareCache cache = build("isolation", 10, 60000);
+        cache.putObject(key("1", "k"), user("a"));
+        assertNull(cache.getObject(key("2", "k")));
+        cache.putObject(key("2", "k"), user("b"));
+        // 提交时只清空登记过的租户
+        TenantAwareCache.beginClear(Collections.singletonMap("isolation", Collections.singleton("2")));
+        try {
+            cache.clear();
+        } finally {
+            TenantAwareCache.endClear();
+        }
+        assertNull(cache.getObject(key("2", "k")));
+
+        SysUser cached = (SysUser) cache.getObject(key("1", "k"));
+        assertEquals("a", cached.getUsername());
+        // 返回的是副本
+        cached.setUsername("changed");
+        assertEquals("a", ((SysUser) cache.getObject(key("1", "k"))).getUsername());
+        assertEquals(2, cache.getStats().getHits());
+    }
+
+    @Test
+    void boundedBySizeAndTtl() throws InterruptedException {
+        TenantAwareCache cache = build("bounded", 2, 50);
+        cache.putObject(key("1", 1), user("1"));
+        cache.putObject(key("1", 2), user("2"));
+        cache.getObject(key("1", 1));
+        cache.putObject(key("1", 3), user("3"));
+        assertNull(cache.getObject(key("1", 2)));
+        assertEquals(1, cache.getStats().getEvictions());
+        assertEquals(2, cache.getSize());
+
+        Thread.sleep(80);
+        assertNull(cache.getObject(key("1", 1)));
+        assertEquals(1, cache.getStats().getExpirations());
+    }
+
+    @Test
+    void clearWithoutScopeDropsAllTenants() {
+        TenantAwareCache cache = build("unscoped", 10, 60000);
+        cache.putObject(key("1", "k"), user("a"));
+        cache.putObject(key("2", "k"), user("b"));
+        cache.clear();
+
+        assertEquals(0, cache.getSize());
+        assertEquals(0, cache.getTenantCount());
+    }
+
+    @Test
+    void unroutedKeysAreNotCachedAndUnroutedWriteClearsAll() {
+        TenantAwareCache cache = build("unrouted", 10, 60000);
+        cache.putObject(key(null, "k"), user("a"));
+        cache.putObject("plain", user("a"));
+        assertEquals(0, cache.getSize());
+        assertNull(cache.getObject(key(null, "k")));
+
+        cache.putObject(key("1", "k"), user("a"));
+        cache.putObject(key("2", "k"), user("b"));
+        TenantAwareCache.beginClear(Collections.singletonMap("unrouted", Collections.singleton(TenantAwareCache.ALL_TENANTS)));
+        try {
+            cache.clear();
+        } finally {
+            TenantAwareCache.endClear();
+        }
+        assertEquals(0, cache.getTenantCount());
+    }
+}
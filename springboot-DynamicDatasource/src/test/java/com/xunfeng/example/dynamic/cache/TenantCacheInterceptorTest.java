@@ -0,0 +1,189 @@
+package com.xunfeng.example.dynamic.cache;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.health.DataSourceHealthChecker;
+import com.xunfeng.example.dynamic.health.HealthState;
+import org.apache.ibatis.annotations.CacheNamespace;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+import org.apache.ibatis.mapping.Environment;
+import org.apache.ibatis.session.Configuration;
+import org.apache.ibatis.session.SqlSession;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.apache.ibatis.session.SqlSessionFactoryBuilder;
+import org.apache.ibatis.transaction.jdbc.JdbcTransactionFactory;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TenantCacheInterceptorTest {
+
+    @CacheNamespace(implementation = TenantAwareCache.class)
+    public interface NameMapper {
+
+        @Select("select name from tenant_name")
+        String name();
+
+        @Update("update tenant_name set name = #{name}")
+        int rename(String name);
+    }
+
+    private SqlSessionFactory sqlSessionFactory;
+    private DynamicDataSource dynamicDataSource;
+
+    private static JdbcDataSource database(String name, String value) throws Exception {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:cache_" + name + ";DB_CLOSE_DELAY=-1");
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("drop table if exists tenant_name");
+            statement.execute("create table tenant_name (name varchar(32))");
+            statement.execute("insert into tenant_name values ('" + value + "')");
+        }
+        return dataSource;
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JdbcDataSource master = database("master", "zero");
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, master);
+        targets.put("1", database("t1", "one"));
+        targets.put("2", database("t2", "two"));
+        dynamicDataSource = new DynamicDataSource(master, targets);
+        Configuration configuration = new Configuration(new Environment("test", new JdbcTransactionFactory(), dynamicDataSource));
+        configuration.addInterceptor(new TenantCacheInterceptor(dynamicDataSource));
+        configuration.addMapper(NameMapper.class);
+        sqlSessionFactory = new SqlSessionFactoryBuilder().build(configuration);
+        cache().clearAll();
+    }
+
+    @AfterEach
+    void clearContext() {
+        DataSourceContextHolder.clear();
+    }
+
+    private static TenantAwareCache cache() {
+        return TenantAwareCache.getCaches().get(NameMapper.class.getName());
+    }
+
+    /**
+     * 在租户上下文内查询，上下文出栈后才提交，模拟@DS方法返回后由外层事务提交
+     */
+    private String readAs(String tenant) {
+        try (SqlSession session = sqlSessionFactory.openSession()) {
+            if (tenant != null) {
+                DataSourceContextHolder.push(tenant);
+            }
+            String name;
+            try {
+                name = session.getMapper(NameMapper.class).name();
+            } finally {
+                if (tenant != null) {
+                    DataSourceContextHolder.poll();
+                }
+            }
+            session.commit();
+            return name;
+        }
+    }
+
+    @Test
+    void entriesCommittedOutsideTenantContextStayWithTheirTenant() {
+        assertEquals("one", readAs("1"));
+        assertEquals("two", readAs("2"));
+        assertEquals("zero", readAs(null));
+
+        assertEquals(3, cache().getTenantCount());
+        assertEquals("one", readAs("1"));
+        assertEquals("two", readAs("2"));
+        assertEquals(2, cache().getStats().getHits());
+    }
+
+    @Test
+    void writeCommittedOutsideTenantContextClearsOnlyThatTenant() {
+        assertEquals("one", readAs("1"));
+        assertEquals("two", readAs("2"));
+
+        try (SqlSession session = sqlSessionFactory.openSession()) {
+            DataSourceContextHolder.push("2");
+            try {
+                session.getMapper(NameMapper.class).rename("renamed");
+            } finally {
+                DataSourceContextHolder.poll();
+            }
+            session.commit();
+        }
+
+        assertEquals("renamed", readAs("2"));
+        assertEquals("one", readAs("1"));
+        assertEquals(1, cache().getStats().getHits());
+    }
+
+    @Test
+    void rolledBackWriteLeavesCacheIntact() {
+        assertEquals("two", readAs("2"));
+
+        try (SqlSession session = sqlSessionFactory.openSession()) {
+            DataSourceContextHolder.push("2");
+            try {
+                session.getMapper(NameMapper.class).rename("renamed");
+            } finally {
+                DataSourceContextHolder.poll();
+            }
+            session.rollback();
+        }
+
+        assertEquals("two", readAs("2"));
+        assertEquals(1, cache().getStats().getHits());
+    }
+
+    @Test
+    void unknownKeyIsCachedUnderTheDataSourceItFallsBackTo() {
+        assertEquals("zero", readAs("404"));
+
+        assertEquals(1, cache().getTenantCount());
+        assertEquals("zero", readAs(null));
+        assertEquals(1, cache().getStats().getHits());
+    }
+
+    @Test
+    void downTargetServedByFallbackIsNotCached() throws Exception {
+        DataSourceHealthChecker healthChecker = mock(DataSourceHealthChecker.class);
+        when(healthChecker.getState(anyString())).thenReturn(HealthState.UP);
+        when(healthChecker.getState("1")).thenReturn(HealthState.DOWN);
+        when(healthChecker.admit(anyString())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(healthChecker.admit("1")).thenReturn("2");
+        dynamicDataSource.setHealthChecker(healthChecker);
+
+        assertEquals("two", readAs("1"));
+        assertEquals("two", readAs("1"));
+        assertEquals(0, cache().getTenantCount());
+        assertEquals(0, cache().getStats().getHits());
+
+        // 熔断期间的写入可能落在备用数据源，清空全部分段
+        assertEquals("two", readAs("2"));
+        try (SqlSession session = sqlSessionFactory.openSession()) {
+            DataSourceContextHolder.push("1");
+            try {
+                session.getMapper(NameMapper.class).rename("renamed");
+            } finally {
+                DataSourceContextHolder.poll();
+            }
+            session.commit();
+        }
+        assertEquals(0, cache().getTenantCount());
+        assertEquals("renamed", readAs("2"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.xunfeng.example.dynamic.init;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.TenantDataSourceFactory;
+import com.xunfeng.example.dynamic.pool.PoolDrainer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class DataSourceBootstrapperTest {
+
+    private final DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+    private final TenantDataSourceFactory factory = mock(TenantDataSourceFactory.class);
+    private final PoolDrainer drainer = new PoolDrainer(5000);
+    private final DynamicDataSource dynamicDataSource;
+    private final DataSourceBootstrapper bootstrapper = new DataSourceBootstrapper();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    DataSourceBootstrapperTest() {
+        properties.getLazy().setEnabled(false);
+        properties.getBootstrap().setConcurrency(2);
+        DataSource master = mock(DataSource.class);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, master);
+        dynamicDataSource = new DynamicDataSource(master, targets);
+        ReflectionTestUtils.setField(bootstrapper, "dynamicDataSource", dynamicDataSource);
+        ReflectionTestUtils.setField(bootstrapper, "tenantDataSourceFactory", factory);
+        ReflectionTestUtils.setField(bootstrapper, "properties", properties);
+        ReflectionTestUtils.setField(bootstrapper, "poolDrainer", drainer);
+        ReflectionTestUtils.setField(bootstrapper, "sharedPoolRegistry", mock(ObjectProvider.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        bootstrapper.destroy();
+        drainer.destroy();
+    }
+
+    private static DataSourceEntity row(long id) {
+        DataSourceEntity ds = new DataSourceEntity();
+        ds.setId(id);
+        ds.setName("tenant" + id);
+        return ds;
+    }
+
+    /**
+     * 卡住直到被中断或测试结束，模拟不可达的租户
+     */
+    private DruidDataSource hang() throws SQLException {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throw new SQLException("interrupted");
+    }
+
+    @Test
+    void timedOutTenantIsQuarantinedWithoutDelayingOthers() throws Exception {
+        properties.getBootstrap().setTenantTimeoutMillis(200);
+        properties.getBootstrap().setRetryInitialDelayMillis(3600_000);
+        bootstrapper.init();
+        when(factory.create(argThat(ds -> ds != null && ds.getId() == 1L))).thenReturn(mock(DruidDataSource.class));
+        when(factory.create(argThat(ds -> ds != null && ds.getId() == 2L))).thenAnswer(invocation -> hang());
+
+        long start = System.currentTimeMillis();
+        BootstrapReport report = bootstrapper.bootstrap(Arrays.asList(row(1), row(2)));
+
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertEquals(1, report.getSuccessCount());
+        assertEquals(1, report.getFailureCount());
+        assertTrue(dynamicDataSource.existsDataSource("1"));
+        assertFalse(dynamicDataSource.existsDataSource("2"));
+        assertTrue(bootstrapper.getQuarantinedKeys().contains("2"));
+    }
+
+    @Test
+    void hangingRetryDoesNotBlockOtherTenants() throws Exception {
+        properties.getBootstrap().setTenantTimeoutMillis(60_000);
+        properties.getBootstrap().setRetryInitialDelayMillis(10);
+        bootstrapper.init();
+        CountDownLatch hanging = new CountDownLatch(1);
+        when(factory.create(argThat(ds -> ds != null && ds.getId() == 1L))).thenAnswer(invocation -> {
+            hanging.countDown();
+            return hang();
+        });
+        AtomicInteger attempts = new AtomicInteger();
+        when(factory.create(argThat(ds -> ds != null && ds.getId() == 2L))).thenAnswer(invocation -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new SQLException("refused");
+            }
+            return mock(DruidDataSource.class);
+        });
+
+        bootstrapper.retryLater(row(1));
+        assertTrue(hanging.await(5, TimeUnit.SECONDS));
+        bootstrapper.retryLater(row(2));
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!dynamicDataSource.existsDataSource("2") && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // 退避重试两次失败后第三次成功，期间租户1一直卡在重试中
+        assertTrue(dynamicDataSource.existsDataSource("2"));
+        assertEquals(3, attempts.get());
+        assertEquals(1, bootstrapper.getQuarantinedKeys().size());
+        assertTrue(bootstrapper.getQuarantinedKeys().contains("1"));
+    }
+}
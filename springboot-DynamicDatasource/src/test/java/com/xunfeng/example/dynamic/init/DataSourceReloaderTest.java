@@ -0,0 +1,126 @@
+package com.xunfeng.example.dynamic.init;
+
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.TenantDataSourceFactory;
+import com.xunfeng.example.dynamic.pool.LazyTenantDataSource;
+import com.xunfeng.example.dynamic.pool.PoolDrainer;
+import com.xunfeng.example.dynamic.pool.TenantPoolManager;
+import com.xunfeng.example.mapper.DataSourceMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DataSourceReloaderTest {
+
+    private final DataSourceMapper mapper = mock(DataSourceMapper.class);
+    private final DataSourceBootstrapper bootstrapper = mock(DataSourceBootstrapper.class);
+    private final DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+    private final TenantPoolManager poolManager;
+    private final PoolDrainer drainer = new PoolDrainer(5000);
+    private final DynamicDataSource dynamicDataSource;
+    private final DataSourceReloader reloader;
+
+    DataSourceReloaderTest() throws SQLException {
+        properties.getReload().setIntervalMillis(3600_000);
+        properties.getReload().setFullSyncIntervalMillis(0);
+        TenantDataSourceFactory factory = mock(TenantDataSourceFactory.class);
+        poolManager = new TenantPoolManager(properties, factory);
+        DataSource master = mock(DataSource.class);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, master);
+        dynamicDataSource = new DynamicDataSource(master, targets);
+        when(bootstrapper.open(any(), any())).thenAnswer(invocation ->
+                poolManager.register(invocation.getArgument(0), invocation.getArgument(1)));
+        reloader = new DataSourceReloader(mapper, dynamicDataSource, bootstrapper, drainer, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        reloader.destroy();
+        drainer.destroy();
+        poolManager.destroy();
+    }
+
+    private static DataSourceEntity row(long id, String url) {
+        DataSourceEntity ds = new DataSourceEntity();
+        ds.setId(id);
+        ds.setUrl(url);
+        ds.setDelFlag("0");
+        return ds;
+    }
+
+    @Test
+    void appliesOnlyTheDifferences() throws Exception {
+        DataSourceEntity unchanged = row(1, "jdbc:a");
+        DataSourceEntity changed = row(2, "jdbc:b");
+        DataSourceEntity deleted = row(3, "jdbc:c");
+        Map<String, DataSource> initial = new HashMap<>();
+        for (DataSourceEntity ds : Arrays.asList(unchanged, changed, deleted)) {
+            initial.put(String.valueOf(ds.getId()), poolManager.register(String.valueOf(ds.getId()), ds));
+        }
+        dynamicDataSource.putDataSources(initial);
+        reloader.start(Arrays.asList(unchanged, changed, deleted));
+
+        DataSourceEntity renamed = row(1, "jdbc:a");
+        renamed.setName("renamed");
+        DataSourceEntity deletedNow = row(3, "jdbc:c");
+        deletedNow.setDelFlag("1");
+        when(mapper.selectList(any())).thenReturn(Arrays.asList(renamed, row(2, "jdbc:b2"), deletedNow, row(4, "jdbc:d")));
+        reloader.poll();
+
+        Map<String, DataSource> routes = dynamicDataSource.getTargetDataSourceMap();
+        assertSame(initial.get("1"), routes.get("1"));
+        assertNotSame(initial.get("2"), routes.get("2"));
+        assertEquals("jdbc:b2", ((LazyTenantDataSource) routes.get("2")).getDescriptor().getUrl());
+        assertFalse(routes.containsKey("3"));
+        assertTrue(routes.containsKey("4"));
+        verify(bootstrapper).forget("3");
+
+        // 被替换、移除的旧数据源等待后关闭，之后不能再取连接
+        long deadline = System.currentTimeMillis() + 5000;
+        while (drainer.getDrainingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(0, drainer.getDrainingCount());
+        assertThrows(SQLException.class, () -> initial.get("2").getConnection());
+        assertThrows(SQLException.class, () -> initial.get("3").getConnection());
+    }
+
+    @Test
+    void lastConnectFailureDoesNotDisableRow() {
+        DataSourceEntity failed = row(1, "jdbc:a");
+        failed.setState("0");
+        DataSourceEntity deleted = row(2, "jdbc:b");
+        deleted.setState("1");
+        deleted.setDelFlag("1");
+
+        assertTrue(DataSourceReloader.isEnabled(failed));
+        assertFalse(DataSourceReloader.isEnabled(deleted));
+    }
+
+    @Test
+    void fullSyncRemovesPhysicallyDeletedRows() {
+        DataSourceEntity kept = row(1, "jdbc:a");
+        DataSourceEntity gone = row(2, "jdbc:b");
+        dynamicDataSource.addDataSource("1", mock(DataSource.class));
+        dynamicDataSource.addDataSource("2", mock(DataSource.class));
+        reloader.start(Arrays.asList(kept, gone));
+
+        when(mapper.selectList(any())).thenReturn(Arrays.asList(kept));
+        reloader.poll();
+
+        assertTrue(dynamicDataSource.existsDataSource("1"));
+        assertFalse(dynamicDataSource.existsDataSource("2"));
+    }
+}
@@ -0,0 +1,254 @@
+package com.xunfeng.example.dynamic.init;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.TenantDataSourceFactory;
+import com.xunfeng.example.dynamic.pool.LazyTenantDataSource;
+import com.xunfeng.example.dynamic.pool.SharedPoolRegistry;
+import com.xunfeng.example.dynamic.pool.SharedSchemaDataSource;
+import com.xunfeng.example.dynamic.pool.TenantPoolManager;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class DataSourceWarmerTest {
+
+    private final DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+    private final List<DruidDataSource> pools = new ArrayList<>();
+    private DataSourceWarmer warmer;
+
+    @AfterEach
+    void tearDown() {
+        warmer.destroy();
+        pools.forEach(DruidDataSource::close);
+    }
+
+    private DataSourceEntity descriptor(String name) {
+        DataSourceEntity ds = new DataSourceEntity();
+        ds.setName(name);
+        ds.setUrl("jdbc:mock:" + name);
+        return ds;
+    }
+
+    private DruidDataSource pool(String name) throws SQLException {
+        DataSourceEntity ds = new DataSourceEntity();
+        ds.setUrl("jdbc:mock:" + name);
+        DruidDataSource pool = new TenantDataSourceFactory(properties).create(ds);
+        pools.add(pool);
+        return pool;
+    }
+
+    @SuppressWarnings("unchecked")
+    private DataSourceWarmer warmer(Map<Object, Object> targets) {
+        DataSource master = (DataSource) targets.get(DynamicDataSource.MASTER);
+        ObjectProvider<SqlSessionFactory> sqlSessionFactory = mock(ObjectProvider.class);
+        warmer = new DataSourceWarmer(new DynamicDataSource(master, targets), sqlSessionFactory, properties);
+        return warmer;
+    }
+
+    private void awaitFinished() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!Boolean.TRUE.equals(warmer.getProgress().get("finished")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void prefillsConnectionsAndPreparesStatements() throws Exception {
+        properties.getWarmup().setStatements(Arrays.asList("select 1", "select * from sys_user where user_id = ?"));
+        DruidDataSource master = pool("master");
+        DruidDataSource tenant = pool("tenant");
+        tenant.setMinIdle(3);
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, master);
+        targets.put("tenant", tenant);
+        warmer(targets);
+
+        assertFalse(warmer.isReady());
+        warmer.start();
+        awaitFinished();
+
+        assertTrue(warmer.isReady());
+        assertEquals(2, warmer.getProgress().get("warmed"));
+        // 按连接池自身的minIdle建满，不改配置
+        assertEquals(3, tenant.getMinIdle());
+        assertEquals(3, tenant.getPoolingCount());
+        assertEquals(0, master.getMinIdle());
+        assertEquals(1, master.getPoolingCount());
+        // 每条连接缓存两条语句，之后相同SQL命中PSCache
+        assertEquals(6, tenant.getCachedPreparedStatementCount());
+        try (Connection connection = tenant.getConnection()) {
+            connection.prepareStatement("select * from sys_user where user_id = ?").close();
+        }
+        assertEquals(1, tenant.getCachedPreparedStatementHitCount());
+    }
+
+    @Test
+    void readyOnceRatioReachedWhileOthersPending() throws Exception {
+        properties.getWarmup().setReadyRatio(0.5);
+        DataSource hanging = mock(DataSource.class);
+        Object lock = new Object();
+        when(hanging.getConnection()).thenAnswer(invocation -> {
+            try {
+                synchronized (lock) {
+                    lock.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new SQLException("interrupted");
+        });
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, pool("master"));
+        targets.put("hanging", hanging);
+        warmer(targets);
+
+        warmer.start();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!warmer.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(warmer.isReady());
+        assertEquals(false, warmer.getProgress().get("finished"));
+    }
+
+    @Test
+    void failedTargetIsRetriedUntilReady() throws Exception {
+        properties.getWarmup().setRetryInitialDelayMillis(50);
+        AtomicBoolean down = new AtomicBoolean(true);
+        DataSource broken = mock(DataSource.class);
+        when(broken.getConnection()).thenAnswer(invocation -> {
+            if (down.get()) {
+                throw new SQLException("refused", "08001");
+            }
+            return mock(Connection.class);
+        });
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, pool("master"));
+        targets.put("broken", broken);
+        warmer(targets);
+
+        warmer.start();
+        awaitFinished();
+        assertEquals(1, warmer.getProgress().get("failed"));
+        assertFalse(warmer.isReady());
+
+        // 数据库恢复后重试成功，应用转为就绪
+        down.set(false);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!warmer.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(warmer.isReady());
+        assertEquals(0, warmer.getProgress().get("failed"));
+        assertEquals(2, warmer.getProgress().get("warmed"));
+    }
+
+    @Test
+    void removedTargetStopsRetryingAndLeavesRatio() throws Exception {
+        properties.getWarmup().setRetryInitialDelayMillis(50);
+        DataSource broken = mock(DataSource.class);
+        when(broken.getConnection()).thenThrow(new SQLException("refused", "08001"));
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, pool("master"));
+        targets.put("broken", broken);
+        DataSourceWarmer warmer = warmer(targets);
+        DynamicDataSource dynamicDataSource = (DynamicDataSource) ReflectionTestUtils.getField(warmer, "dynamicDataSource");
+
+        warmer.start();
+        awaitFinished();
+        assertFalse(warmer.isReady());
+
+        dynamicDataSource.removeDataSource("broken");
+        long deadline = System.currentTimeMillis() + 10000;
+        while (!warmer.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(warmer.isReady());
+        assertEquals(1, warmer.getProgress().get("skipped"));
+        assertEquals(0, warmer.getProgress().get("failed"));
+    }
+
+    @Test
+    void warmsOnlyHotLazyTenantsWithinLivePoolLimit() throws Exception {
+        properties.getLazy().setMaxLivePools(1);
+        properties.getLazy().setEvictIntervalMillis(3600_000);
+        properties.getWarmup().setHotKeys(Arrays.asList("hot1", "hot2"));
+        TenantDataSourceFactory factory = mock(TenantDataSourceFactory.class);
+        when(factory.build(any())).thenAnswer(invocation -> {
+            DruidDataSource pool = new DruidDataSource();
+            pool.setUrl(((DataSourceEntity) invocation.getArgument(0)).getUrl());
+            pools.add(pool);
+            return pool;
+        });
+        TenantPoolManager poolManager = new TenantPoolManager(properties, factory);
+        LazyTenantDataSource cold = poolManager.register("cold", descriptor("cold"));
+        LazyTenantDataSource hot1 = poolManager.register("hot1", descriptor("hot1"));
+        LazyTenantDataSource hot2 = poolManager.register("hot2", descriptor("hot2"));
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, pool("master"));
+        targets.put("cold", cold);
+        targets.put("hot1", hot1);
+        targets.put("hot2", hot2);
+        warmer(targets);
+
+        try {
+            warmer.start();
+            awaitFinished();
+
+            assertEquals(3, warmer.getProgress().get("total"));
+            assertEquals(2, warmer.getProgress().get("warmed"));
+            assertEquals(1, warmer.getProgress().get("skipped"));
+            assertTrue(warmer.isReady());
+            assertNull(cold.getPool());
+            // 名额只有一个，另一个热点租户跳过而不是淘汰已预热的连接池
+            assertEquals(1, poolManager.getLivePoolCount());
+            assertTrue(hot1.getPool() == null ^ hot2.getPool() == null);
+        } finally {
+            poolManager.destroy();
+        }
+    }
+
+    @Test
+    void sharedPoolKeepsItsMinIdle() throws Exception {
+        TenantDataSourceFactory factory = mock(TenantDataSourceFactory.class);
+        DruidDataSource sharedPool = pool("shared");
+        when(factory.build(any())).thenReturn(sharedPool);
+        DataSourceEntity descriptor = descriptor("t1");
+        descriptor.setDataBase("t1");
+        descriptor.setHost("localhost");
+        descriptor.setPort(3306);
+        descriptor.setUsername("app");
+        SharedSchemaDataSource tenant = new SharedPoolRegistry(factory, properties).acquire("1", descriptor);
+        int minIdle = sharedPool.getMinIdle();
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, pool("master"));
+        targets.put("1", tenant);
+        warmer(targets);
+
+        warmer.start();
+        awaitFinished();
+
+        assertEquals(2, warmer.getProgress().get("warmed"));
+        assertEquals(minIdle, sharedPool.getMinIdle());
+        assertEquals(0, tenant.getBorrowedCount());
+    }
+}
@@ -0,0 +1,99 @@
+package com.xunfeng.example.dynamic.metrics;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class DataSourceRoutingMetricsTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final DataSource master = mock(DataSource.class);
+    private final DynamicDataSource dynamicDataSource;
+
+    DataSourceRoutingMetricsTest() {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, master);
+        dynamicDataSource = new DynamicDataSource(master, targets);
+    }
+
+    @AfterEach
+    void tearDown() {
+        DataSourceContextHolder.clear();
+        registry.close();
+    }
+
+    private double lookups(String key) {
+        return registry.get("dynamic.datasource.lookups").tag("key", key).counter().count();
+    }
+
+    private void route(String key) throws Exception {
+        DataSourceContextHolder.push(key);
+        try {
+            dynamicDataSource.getConnection();
+        } finally {
+            DataSourceContextHolder.poll();
+        }
+    }
+
+    @Test
+    void keysBeyondCapAreFoldedIntoOther() {
+        DataSourceRoutingMetrics metrics = new DataSourceRoutingMetrics(registry, dynamicDataSource, 2);
+        for (String key : new String[]{"t1", "t2", "t3"}) {
+            dynamicDataSource.addDataSource(key, mock(DataSource.class));
+            metrics.recordLookup(key);
+        }
+        metrics.recordLookup("t3");
+
+        assertEquals(2, metrics.getTaggedKeyCount());
+        assertEquals(1, lookups("t1"));
+        assertEquals(1, lookups("t2"));
+        assertEquals(2, lookups(DataSourceRoutingMetrics.OTHER));
+        assertNull(registry.find("dynamic.datasource.lookups").tag("key", "t3").counter());
+        assertNull(registry.find("dynamic.datasource.pool.active").tag("key", DataSourceRoutingMetrics.OTHER).gauge());
+    }
+
+    @Test
+    void removedTenantsReleaseTheirSlot() {
+        DataSourceRoutingMetrics metrics = new DataSourceRoutingMetrics(registry, dynamicDataSource, 2);
+        dynamicDataSource.addDataSource("t1", mock(DataSource.class));
+        dynamicDataSource.addDataSource("t2", mock(DataSource.class));
+        metrics.recordLookup("t1");
+        metrics.recordLookup("t2");
+
+        dynamicDataSource.removeDataSource("t1");
+        dynamicDataSource.addDataSource("t3", mock(DataSource.class));
+        metrics.recordLookup("t3");
+
+        assertEquals(2, metrics.getTaggedKeyCount());
+        assertEquals(1, lookups("t3"));
+        assertNull(registry.find("dynamic.datasource.lookups").tag("key", "t1").counter());
+        assertNull(registry.find("dynamic.datasource.pool.active").tag("key", "t1").gauge());
+        assertEquals(0, lookups(DataSourceRoutingMetrics.OTHER));
+    }
+
+    @Test
+    void unknownKeyCountsFallbackAndRoutesToMaster() throws Exception {
+        DataSourceRoutingMetrics metrics = new DataSourceRoutingMetrics(registry, dynamicDataSource, 10);
+        dynamicDataSource.setMetrics(metrics);
+        dynamicDataSource.addDataSource("t1", mock(DataSource.class));
+
+        route("t1");
+        route("404");
+        route("405");
+
+        assertEquals(2, registry.get("dynamic.datasource.fallbacks").counter().count());
+        assertEquals(1, lookups("t1"));
+        assertEquals(2, lookups(DynamicDataSource.MASTER));
+        assertNull(registry.find("dynamic.datasource.lookups").tag("key", "404").counter());
+        verify(master, times(2)).getConnection();
+    }
+}
@@ -0,0 +1,192 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.TenantDataSourceFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LazyTenantDataSourceTest {
+
+    private final DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+    private final TenantDataSourceFactory factory = mock(TenantDataSourceFactory.class);
+    private final AtomicInteger builds = new AtomicInteger();
+    private final List<LazyTenantDataSource> tenants = new ArrayList<>();
+    private final List<Connection> borrowed = new ArrayList<>();
+    private TenantPoolManager poolManager;
+
+    LazyTenantDataSourceTest() {
+        properties.getLazy().setEvictIntervalMillis(3600_000);
+        when(factory.build(any())).thenAnswer(invocation -> {
+            builds.incrementAndGet();
+            // 放大建池耗时，让并发的首次访问都落在同一次创建里
+            Thread.sleep(100);
+            DruidDataSource pool = new DruidDataSource();
+            pool.setUrl("jdbc:mock:" + ((DataSourceEntity) invocation.getArgument(0)).getName());
+            pool.setMaxActive(5);
+            return pool;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (Connection connection : borrowed) {
+            connection.close();
+        }
+        tenants.forEach(LazyTenantDataSource::close);
+        poolManager.destroy();
+    }
+
+    private LazyTenantDataSource tenant(long id) {
+        if (poolManager == null) {
+            poolManager = new TenantPoolManager(properties, factory);
+        }
+        DataSourceEntity descriptor = new DataSourceEntity();
+        descriptor.setId(id);
+        descriptor.setName("tenant" + id);
+        LazyTenantDataSource tenant = poolManager.register(String.valueOf(id), descriptor);
+        tenants.add(tenant);
+        return tenant;
+    }
+
+    @Test
+    void concurrentFirstHitBuildsOnePool() throws Exception {
+        LazyTenantDataSource tenant = tenant(1);
+        int threads = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    tenant.getConnection().close();
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, builds.get());
+        assertEquals(1, poolManager.getLivePoolCount());
+        assertEquals(5, poolManager.getReservedConnections());
+    }
+
+    @Test
+    void livePoolCapEvictsLeastRecentlyUsedIdlePool() throws Exception {
+        properties.getLazy().setMaxLivePools(2);
+        LazyTenantDataSource first = tenant(1);
+        LazyTenantDataSource second = tenant(2);
+        LazyTenantDataSource third = tenant(3);
+
+        first.getConnection().close();
+        Thread.sleep(5);
+        second.getConnection().close();
+        Thread.sleep(5);
+        first.getConnection().close();
+        third.getConnection().close();
+
+        // 第一个租户最近又被访问过，淘汰的是第二个
+        assertEquals(2, poolManager.getLivePoolCount());
+        assertNotNull(first.getPool());
+        assertNull(second.getPool());
+        assertNotNull(third.getPool());
+
+        // 被淘汰的租户再次访问时重新建池
+        second.getConnection().close();
+        assertNotNull(second.getPool());
+        assertEquals(4, builds.get());
+    }
+
+    @Test
+    void connectionBudgetRejectsWhenNoPoolIsIdle() throws Exception {
+        properties.getLazy().setConnectionBudget(10);
+        LazyTenantDataSource first = tenant(1);
+        LazyTenantDataSource second = tenant(2);
+        LazyTenantDataSource third = tenant(3);
+        borrowed.add(first.getConnection());
+        Connection held = second.getConnection();
+
+        assertThrows(SQLException.class, third::getConnection);
+        assertEquals(10, poolManager.getReservedConnections());
+        assertNull(third.getPool());
+
+        held.close();
+        third.getConnection().close();
+        assertNull(second.getPool());
+        assertNotNull(first.getPool());
+        assertEquals(10, poolManager.getReservedConnections());
+    }
+
+    @Test
+    void admissionSkipsVictimWhoseLockIsHeld() throws Exception {
+        properties.getLazy().setMaxLivePools(2);
+        LazyTenantDataSource first = tenant(1);
+        LazyTenantDataSource second = tenant(2);
+        LazyTenantDataSource third = tenant(3);
+        first.getConnection().close();
+        Thread.sleep(5);
+        second.getConnection().close();
+
+        // 模拟最久未用的租户正在被其它线程建池或回收，持有其锁
+        ReentrantLock firstLock = (ReentrantLock) ReflectionTestUtils.getField(first, "lock");
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Thread holder = new Thread(() -> {
+            firstLock.lock();
+            try {
+                locked.countDown();
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                firstLock.unlock();
+            }
+        });
+        holder.start();
+        try {
+            assertTrue(locked.await(5, TimeUnit.SECONDS));
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> third.getConnection().close());
+            assertNotNull(first.getPool());
+            assertNull(second.getPool());
+            assertNotNull(third.getPool());
+        } finally {
+            release.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    void credentialsAreForwardedToMaterializedPool() throws Exception {
+        LazyTenantDataSource tenant = tenant(1);
+        tenant.getConnection("app", "secret").close();
+
+        assertEquals(1, builds.get());
+        assertEquals("app", tenant.getPool().getUsername());
+    }
+}
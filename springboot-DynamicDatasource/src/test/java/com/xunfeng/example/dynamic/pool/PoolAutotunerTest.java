@@ -0,0 +1,122 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.TenantDataSourceFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class PoolAutotunerTest {
+
+    private final DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+    private final List<DruidDataSource> pools = new ArrayList<>();
+    private final List<Connection> borrowed = new ArrayList<>();
+    private final ExecutorService waiters = Executors.newCachedThreadPool();
+    private TenantPoolManager poolManager;
+    private PoolAutotuner autotuner;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        waiters.shutdownNow();
+        for (Connection connection : borrowed) {
+            connection.close();
+        }
+        pools.forEach(DruidDataSource::close);
+        autotuner.destroy();
+        poolManager.destroy();
+    }
+
+    private PoolAutotuner autotuner(Map<String, DataSource> tenants) {
+        properties.getAutotune().setIntervalMillis(3600_000);
+        poolManager = new TenantPoolManager(properties, mock(TenantDataSourceFactory.class));
+        DataSource master = mock(DataSource.class);
+        Map<Object, Object> targets = new HashMap<>(tenants);
+        targets.put(DynamicDataSource.MASTER, master);
+        autotuner = new PoolAutotuner(new DynamicDataSource(master, targets), poolManager, properties);
+        return autotuner;
+    }
+
+    private DruidDataSource pool(int maxActive) throws Exception {
+        DruidDataSource pool = new DruidDataSource();
+        pool.setUrl("jdbc:mock:tenant" + pools.size());
+        pool.setMaxActive(maxActive);
+        pool.setMaxWait(30_000);
+        pool.init();
+        pools.add(pool);
+        return pool;
+    }
+
+    /**
+     * 借满连接池并让一个线程排队等待
+     */
+    private void saturate(DruidDataSource pool) throws Exception {
+        for (int i = 0; i < pool.getMaxActive(); i++) {
+            borrowed.add(pool.getConnection());
+        }
+        waiters.execute(() -> {
+            try {
+                pool.getConnection().close();
+            } catch (Exception ignored) {
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5000;
+        while (pool.getWaitThreadCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, pool.getWaitThreadCount());
+    }
+
+    @Test
+    void growsWaitingPoolWithinGlobalCeiling() throws Exception {
+        properties.getAutotune().setMaxTotalConnections(10);
+        DruidDataSource busy = pool(4);
+        DruidDataSource other = pool(4);
+        Map<String, DataSource> tenants = new HashMap<>();
+        tenants.put("busy", busy);
+        tenants.put("other", other);
+        PoolAutotuner tuner = autotuner(tenants);
+        saturate(busy);
+
+        tuner.tune();
+        assertEquals(6, busy.getMaxActive());
+        assertEquals(4, busy.getMinIdle());
+        assertEquals(4, other.getMaxActive());
+
+        // 总数已到上限10，不再扩大
+        tuner.tune();
+        assertEquals(6, busy.getMaxActive());
+        assertEquals(1, tuner.getHistory().size());
+        PoolAutotuner.Adjustment adjustment = tuner.getHistory().get(0);
+        assertEquals(4, adjustment.getMaxActiveBefore());
+        assertEquals(6, adjustment.getMaxActiveAfter());
+        assertTrue(adjustment.getKeys().contains("busy"));
+    }
+
+    @Test
+    void shrinksIdlePoolAfterConsecutiveSamples() throws Exception {
+        properties.getAutotune().setShrinkAfterIdleSamples(3);
+        DruidDataSource idle = pool(16);
+        PoolAutotuner tuner = autotuner(java.util.Collections.singletonMap("idle", idle));
+
+        tuner.tune();
+        tuner.tune();
+        assertEquals(16, idle.getMaxActive());
+        tuner.tune();
+        assertEquals(8, idle.getMaxActive());
+        assertEquals(0, idle.getMinIdle());
+        assertEquals(1, tuner.getHistory().size());
+    }
+}
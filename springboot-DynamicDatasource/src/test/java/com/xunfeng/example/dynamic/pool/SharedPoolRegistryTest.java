@@ -0,0 +1,89 @@
+package com.xunfeng.example.dynamic.pool;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.pool.DruidPooledConnection;
+import com.xunfeng.example.domain.entity.DataSourceEntity;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.dynamic.TenantDataSourceFactory;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SharedPoolRegistryTest {
+
+    private static DataSourceEntity tenant(long id, String database) {
+        DataSourceEntity ds = new DataSourceEntity();
+        ds.setId(id);
+        ds.setUrl("jdbc:mysql://10.0.0.1:3306/" + database + "?useSSL=false");
+        ds.setHost("10.0.0.1");
+        ds.setPort(3306);
+        ds.setUsername("app");
+        ds.setPassword("secret");
+        return ds;
+    }
+
+    @Test
+    void parsesDatabaseFromUrl() {
+        DataSourceEntity ds = tenant(1, "t1");
+        assertEquals("t1", SharedPoolRegistry.databaseOf(ds));
+        assertEquals("jdbc:mysql://10.0.0.1:3306/?useSSL=false", SharedPoolRegistry.stripDatabase(ds.getUrl()));
+        assertNull(SharedPoolRegistry.databaseOf(tenant(2, "")));
+    }
+
+    @Test
+    void tenantsOnSameServerShareOnePoolAndSwitchCatalog() throws Exception {
+        TenantDataSourceFactory factory = mock(TenantDataSourceFactory.class);
+        DruidDataSource pool = mock(DruidDataSource.class);
+        DruidPooledConnection physical = mock(DruidPooledConnection.class);
+        when(factory.build(any())).thenReturn(pool);
+        when(pool.getConnection()).thenReturn(physical);
+        when(physical.getCatalog()).thenReturn("t2");
+        SharedPoolRegistry registry = new SharedPoolRegistry(factory, new DynamicDataSourceProperties());
+
+        SharedSchemaDataSource first = registry.acquire("1", tenant(1, "t1"));
+        SharedSchemaDataSource second = registry.acquire("2", tenant(2, "t2"));
+        assertSame(first.getPool(), second.getPool());
+        assertEquals(1, registry.getPoolCount());
+
+        Connection connection = first.getConnection();
+        verify(physical).setCatalog("t1");
+        assertEquals(1, first.getBorrowedCount());
+        connection.close();
+        connection.close();
+        assertEquals(0, first.getBorrowedCount());
+
+        second.getConnection().close();
+        verify(physical, never()).setCatalog("t2");
+
+        first.close();
+        verify(pool, never()).close();
+        second.close();
+        verify(pool).close();
+        assertEquals(0, registry.getPoolCount());
+    }
+
+    @Test
+    void credentialedBorrowAlsoSwitchesCatalog() throws Exception {
+        TenantDataSourceFactory factory = mock(TenantDataSourceFactory.class);
+        DruidDataSource pool = mock(DruidDataSource.class);
+        DruidPooledConnection physical = mock(DruidPooledConnection.class);
+        when(factory.build(any())).thenReturn(pool);
+        when(pool.getConnection("app", "secret")).thenReturn(physical);
+        SharedPoolRegistry registry = new SharedPoolRegistry(factory, new DynamicDataSourceProperties());
+
+        SharedSchemaDataSource tenant = registry.acquire("1", tenant(1, "t1"));
+        Connection connection = tenant.getConnection("app", "secret");
+        verify(physical).setCatalog("t1");
+        assertEquals(1, tenant.getBorrowedCount());
+        connection.close();
+        assertEquals(0, tenant.getBorrowedCount());
+
+        tenant.close();
+        assertThrows(SQLException.class, () -> tenant.getConnection("app", "secret"));
+    }
+}
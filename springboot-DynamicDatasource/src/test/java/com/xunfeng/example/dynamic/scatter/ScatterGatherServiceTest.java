@@ -0,0 +1,184 @@
+package com.xunfeng.example.dynamic.scatter;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ScatterGatherServiceTest {
+
+    private final DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+    private ScatterGatherService service;
+
+    @BeforeEach
+    void setUp() {
+        DataSource master = mock(DataSource.class);
+        DynamicDataSource dynamicDataSource = new DynamicDataSource(master, Collections.singletonMap(DynamicDataSource.MASTER, master));
+        for (String key : Arrays.asList("t1", "t2", "t3", "slow")) {
+            dynamicDataSource.addDataSource(key, mock(DataSource.class));
+        }
+        service = new ScatterGatherService(dynamicDataSource, properties);
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    void mergesSortedResultsAndReportsFailures() {
+        List<String> keys = Arrays.asList("t1", "t2", "t3", "missing");
+        ScatterGatherResult<String> result = service.sorted(keys, (key, sink) -> {
+            String ds = DataSourceContextHolder.peek();
+            if ("t3".equals(ds)) {
+                throw new IllegalStateException("boom");
+            }
+            ("t1".equals(ds) ? Arrays.asList("a", "c", "e") : Arrays.asList("b", "d")).forEach(sink);
+        }, String::compareTo);
+
+        assertEquals(Arrays.asList("a", "b", "c", "d", "e"), result.stream().collect(Collectors.toList()));
+        assertEquals(2, result.getSucceeded().size());
+        assertTrue(result.getFailures().get("t3") instanceof IllegalStateException);
+        assertTrue(result.getFailures().get("missing") instanceof IllegalArgumentException);
+    }
+
+    @Test
+    void mergeStreamsThroughBuffersSmallerThanResults() {
+        properties.getScatter().setBufferSize(2);
+        ScatterGatherResult<Integer> result = service.sorted(Arrays.asList("t1", "t2", "t3"), (key, sink) -> {
+            int offset = Integer.parseInt(key.substring(1));
+            IntStream.range(0, 100).map(i -> i * 3 + offset).forEach(sink::accept);
+        }, Integer::compareTo);
+
+        List<Integer> merged = result.stream().collect(Collectors.toList());
+        assertEquals(IntStream.range(1, 301).boxed().collect(Collectors.toList()), merged);
+        assertFalse(result.isPartial());
+    }
+
+    @Test
+    void unorderedBufferBoundsRowsAheadOfConsumer() throws Exception {
+        properties.getScatter().setBufferSize(4);
+        AtomicInteger emitted = new AtomicInteger();
+        ScatterGatherResult<Integer> result = service.unordered(Collections.singletonList("t1"), (key, sink) -> {
+            for (int i = 0; i < 100; i++) {
+                sink.accept(i);
+                emitted.incrementAndGet();
+            }
+        });
+
+        Iterator<Integer> iterator = result.stream().iterator();
+        assertEquals(0, iterator.next());
+        Thread.sleep(200);
+        // 已消费1行，缓冲4行，查询线程阻塞在第6行
+        assertTrue(emitted.get() <= 5, "emitted " + emitted.get());
+        int count = 1;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        assertEquals(100, count);
+        assertEquals(100, emitted.get());
+    }
+
+    @Test
+    void slowTenantTimesOutWithoutBlockingOthers() throws Exception {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        ScatterGatherResult<String> result = service.unordered(Arrays.asList("slow", "t1", "t2"), (key, sink) -> {
+            if ("slow".equals(key)) {
+                try {
+                    Thread.sleep(2000);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                    Thread.currentThread().interrupt();
+                }
+            }
+            sink.accept(key);
+        }, 2, 200);
+
+        assertEquals(Arrays.asList("t1", "t2"), result.stream().sorted().collect(Collectors.toList()));
+        assertTrue(result.getFailures().get("slow") instanceof TimeoutException);
+        // 超时结果先于中断发出，稍等查询线程响应
+        long deadline = System.currentTimeMillis() + 1000;
+        while (!interrupted.get() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(interrupted.get());
+    }
+
+    @Test
+    void timedOutWorkerKeepsItsSlotUntilItExits() {
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        ScatterGatherResult<String> result = service.unordered(Arrays.asList("slow", "t1", "t2"), (key, sink) -> {
+            maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+            try {
+                if ("slow".equals(key)) {
+                    // 模拟不响应中断的驱动调用
+                    long deadline = System.currentTimeMillis() + 500;
+                    while (System.currentTimeMillis() < deadline) {
+                        Thread.yield();
+                    }
+                }
+                order.add(key);
+                sink.accept(key);
+            } finally {
+                active.decrementAndGet();
+            }
+        }, 1, 100);
+
+        assertEquals(Arrays.asList("t1", "t2"), result.stream().collect(Collectors.toList()));
+        assertTrue(result.getFailures().get("slow") instanceof TimeoutException);
+        assertEquals(1, maxActive.get());
+        assertEquals(Arrays.asList("slow", "t1", "t2"), order);
+    }
+
+    @Test
+    void timeWaitingForConsumerDoesNotCountTowardsTimeout() {
+        properties.getScatter().setBufferSize(1);
+        ScatterGatherResult<Integer> result = service.unordered(Collections.singletonList("t1"), (key, sink) -> {
+            for (int i = 0; i < 10; i++) {
+                sink.accept(i);
+            }
+        }, 1, 300);
+
+        List<Integer> rows = result.stream().peek(row -> {
+            try {
+                Thread.sleep(60);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }).collect(Collectors.toList());
+
+        assertEquals(10, rows.size());
+        assertFalse(result.isPartial());
+    }
+
+    @Test
+    void queryTimeoutIsExposedToWorkerThread() {
+        AtomicInteger seconds = new AtomicInteger();
+        ScatterGatherResult<Integer> result = service.unordered(Collections.singletonList("t1"),
+                (key, sink) -> seconds.set(ScatterGatherService.currentQueryTimeoutSeconds()), 1, 2500);
+
+        assertEquals(0, result.stream().count());
+        assertEquals(3, seconds.get());
+        assertEquals(0, ScatterGatherService.currentQueryTimeoutSeconds());
+    }
+}
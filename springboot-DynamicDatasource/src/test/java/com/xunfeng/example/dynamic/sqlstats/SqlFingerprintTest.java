@@ -0,0 +1,39 @@
+package com.xunfeng.example.dynamic.sqlstats;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class SqlFingerprintTest {
+
+    @Test
+    void literalsAndPlaceholderListsCollapse() {
+        assertEquals("SELECT id FROM sys_user WHERE user_id IN (?+) AND name = ? AND t1.age > ?",
+                SqlFingerprint.normalize("SELECT id  FROM sys_user\n WHERE user_id IN ( ?, ?,\n ? ) AND name = 'o''k'"
+                        + " AND t1.age > 18.5"));
+        assertEquals(SqlFingerprint.normalize("select * from t where id in (1, 2)"),
+                SqlFingerprint.normalize("select * from t where id in (?,?,?,?)"));
+        // 函数调用和嵌套括号保持原样
+        assertEquals("select count(*) from t where (a = ? or b = ?) and c = now()",
+                SqlFingerprint.normalize("select count(*) from t where (a = 1 or b = 'x') and c = now()"));
+    }
+
+    @Test
+    void doubleQuotedIdentifiersAreKept() {
+        assertEquals("select \"user id\", \"t1\".\"col 2\" from \"T\" where (\"a\") = ?",
+                SqlFingerprint.normalize("select \"user id\", \"t1\".\"col 2\" from \"T\" where (\"a\") = 'x'"));
+        assertEquals("select * from t where id in (\"a\", ?)",
+                SqlFingerprint.normalize("select * from t where id in (\"a\", 1)"));
+    }
+
+    @Test
+    void sameSqlStringHitsCache() {
+        SqlFingerprint fingerprint = new SqlFingerprint(1);
+        String sql = "select * from t where id = ?";
+        assertSame(fingerprint.of(sql), fingerprint.of(sql));
+        // 缓存满后仍能计算，只是不再缓存
+        assertEquals("select ?", fingerprint.of("select 1"));
+        assertEquals(1, fingerprint.getCachedCount());
+    }
+}
@@ -0,0 +1,111 @@
+package com.xunfeng.example.dynamic.sqlstats;
+
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SqlStatsCollectorTest {
+
+    @Test
+    void aggregatesPerKeyAndFingerprint() {
+        SqlStatsCollector collector = new SqlStatsCollector(new DynamicDataSourceProperties());
+        for (int i = 1; i <= 100; i++) {
+            collector.record("1", "select * from t where id in (" + i + ")", TimeUnit.MILLISECONDS.toNanos(i), false);
+        }
+        collector.record("2", "select * from t where id in (?, ?)", TimeUnit.MILLISECONDS.toNanos(1), true);
+
+        List<SqlStatsCollector.StatementStats> top = collector.top(null, 10);
+        assertEquals(2, top.size());
+        SqlStatsCollector.StatementStats tenant1 = top.get(0);
+        assertEquals("1", tenant1.getKey());
+        assertEquals(100, tenant1.getCount());
+        // 分桶误差不超过25%
+        long p50 = tenant1.percentileMicros(0.5);
+        assertTrue(p50 >= 50_000 && p50 <= 62_500, "p50=" + p50);
+        long p99 = tenant1.percentileMicros(0.99);
+        assertTrue(p99 >= 99_000 && p99 <= 100_000, "p99=" + p99);
+        assertEquals(1, collector.top("2", 10).get(0).getErrors());
+    }
+
+    @Test
+    void evictsLeastTotalWhenFull() {
+        DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+        properties.getSqlStats().setMaxStatements(2);
+        SqlStatsCollector collector = new SqlStatsCollector(properties);
+        collector.record("1", "select a", 3_000_000, false);
+        collector.record("1", "select b", 1_000_000, false);
+        collector.record("2", "select c", 2_000_000, false);
+
+        assertEquals(2, collector.getSize());
+        assertEquals(1, collector.getEvictions());
+        assertEquals("select a", collector.top(null, 10).get(0).getFingerprint());
+        assertEquals("select c", collector.top(null, 10).get(1).getFingerprint());
+    }
+
+    @Test
+    void newStatementInheritsVictimRankInsteadOfThrashing() {
+        DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+        properties.getSqlStats().setMaxStatements(2);
+        SqlStatsCollector collector = new SqlStatsCollector(properties);
+        collector.record("1", "select a", 5_000_000, false);
+        collector.record("1", "select b", 1_000_000, false);
+        // c替换b并继承其累计耗时，d到来时淘汰的是继承后仍最小的c，a一直保留
+        collector.record("1", "select c", 2_000_000, false);
+        collector.record("1", "select d", 4_000_000, false);
+
+        assertEquals(2, collector.getSize());
+        assertEquals(2, collector.getEvictions());
+        List<SqlStatsCollector.StatementStats> top = collector.top(null, 10);
+        assertEquals("select a", top.get(0).getFingerprint());
+        assertEquals("select d", top.get(1).getFingerprint());
+        // 展示的累计耗时不含继承值
+        assertEquals(4_000_000, top.get(1).getTotalNanos());
+        assertEquals(7_000_000, top.get(1).getRank());
+    }
+
+    @Test
+    void concurrentRegistrationStaysWithinCapacity() throws Exception {
+        DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+        properties.getSqlStats().setMaxStatements(50);
+        SqlStatsCollector collector = new SqlStatsCollector(properties);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        collector.record(String.valueOf(i % 7), "select c" + (thread * 2000 + i), 1_000, false);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(50, collector.getSize());
+        assertEquals(50, collector.top(null, 1000).size());
+        assertEquals(8 * 2000 - 50, collector.getEvictions());
+    }
+
+    @Test
+    void bucketsCoverRangeWithoutGaps() {
+        for (long micros = 0; micros < 1 << 16; micros++) {
+            int bucket = SqlStatsCollector.bucket(micros);
+            assertTrue(micros <= SqlStatsCollector.bucketUpperBound(bucket));
+            assertTrue(bucket == 0 || micros > SqlStatsCollector.bucketUpperBound(bucket - 1));
+        }
+    }
+}
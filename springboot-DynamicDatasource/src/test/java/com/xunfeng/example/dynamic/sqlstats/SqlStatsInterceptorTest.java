@@ -0,0 +1,97 @@
+package com.xunfeng.example.dynamic.sqlstats;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.Configuration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SqlStatsInterceptorTest {
+
+    private final SqlStatsCollector collector = new SqlStatsCollector(new DynamicDataSourceProperties());
+    private final SqlStatsInterceptor interceptor = new SqlStatsInterceptor(collector, false);
+
+    @AfterEach
+    void tearDown() {
+        DataSourceContextHolder.clear();
+        DynamicDataSource.clearLastRouteKey();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    /**
+     * 经动态数据源借出租户1的连接，留下线程上的路由key
+     */
+    private static void borrowFromTenant() throws Exception {
+        DataSource master = mock(DataSource.class);
+        DataSource tenant = mock(DataSource.class);
+        when(tenant.getConnection()).thenReturn(mock(Connection.class));
+        DynamicDataSource dynamicDataSource = new DynamicDataSource(master, Collections.singletonMap("1", tenant));
+        DataSourceContextHolder.push("1");
+        try {
+            dynamicDataSource.getConnection();
+        } finally {
+            DataSourceContextHolder.poll();
+        }
+    }
+
+    private void execute() throws Throwable {
+        StatementHandler handler = mock(StatementHandler.class);
+        when(handler.getBoundSql()).thenReturn(
+                new BoundSql(new Configuration(), "update t set a = ?", Collections.emptyList(), null));
+        interceptor.intercept(new Invocation(handler, StatementHandler.class.getMethod("update", Statement.class),
+                new Object[]{mock(Statement.class)}));
+    }
+
+    @Test
+    void routeKeyClearedAfterStatement() throws Throwable {
+        borrowFromTenant();
+        assertEquals("1", DynamicDataSource.getLastRouteKey());
+
+        execute();
+
+        assertEquals("1", collector.top(null, 10).get(0).getKey());
+        assertNull(DynamicDataSource.getLastRouteKey());
+    }
+
+    @Test
+    void routeKeyKeptUntilTransactionCompletes() throws Throwable {
+        TransactionSynchronizationManager.initSynchronization();
+        borrowFromTenant();
+
+        execute();
+        execute();
+
+        assertEquals(2, collector.top("1", 10).get(0).getCount());
+        assertEquals("1", DynamicDataSource.getLastRouteKey());
+        assertEquals(1, TransactionSynchronizationManager.getSynchronizations().size());
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+        assertNull(DynamicDataSource.getLastRouteKey());
+    }
+
+    @Test
+    void parametersAreMasked() {
+        assertEquals("null", SqlStatsInterceptor.mask(null));
+        assertEquals("String(11)", SqlStatsInterceptor.mask("13800138000"));
+        assertEquals("byte[](3)", SqlStatsInterceptor.mask(new byte[3]));
+        assertEquals("Long", SqlStatsInterceptor.mask(42L));
+    }
+}
@@ -0,0 +1,89 @@
+package com.xunfeng.example.dynamic.tenant;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.FilterChain;
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+class TenantRoutingFilterTest {
+
+    private final DataSource master = mock(DataSource.class);
+    private final DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+
+    @AfterEach
+    void clearContext() {
+        DataSourceContextHolder.clear();
+    }
+
+    private DynamicDataSource newDynamicDataSource() {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, master);
+        DynamicDataSource dynamicDataSource = new DynamicDataSource(master, targets);
+        dynamicDataSource.addDataSource("3", mock(DataSource.class));
+        return dynamicDataSource;
+    }
+
+    @Test
+    void resolvesTenantAndClearsContextAfterRequest() throws Exception {
+        properties.getTenant().setHostSuffix(".example.com");
+        properties.getTenant().getAliases().put("acme", "3");
+        TenantRoutingFilter filter = new TenantRoutingFilter(newDynamicDataSource(), properties);
+
+        assertEquals("3", routedKey(filter, request("/user/3/1")));
+        MockHttpServletRequest byHeader = request("/user/1");
+        byHeader.addHeader("X-Tenant-Id", "acme");
+        assertEquals("3", routedKey(filter, byHeader));
+        MockHttpServletRequest byHost = request("/user/1");
+        byHost.setServerName("acme.example.com");
+        assertEquals("3", routedKey(filter, byHost));
+        // 没有租户标识时不切换
+        assertNull(routedKey(filter, request("/user/1")));
+        assertNull(DataSourceContextHolder.peek());
+    }
+
+    @Test
+    void rejectsUnknownTenantBeforeRouting() throws Exception {
+        DynamicDataSource dynamicDataSource = newDynamicDataSource();
+        TenantRoutingFilter filter = new TenantRoutingFilter(dynamicDataSource, properties);
+
+        for (String path : new String[]{"/user/404/1", "/user/master/1"}) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            MockFilterChain chain = new MockFilterChain();
+            filter.doFilter(request(path), response, chain);
+            assertEquals(404, response.getStatus());
+            assertNull(chain.getRequest());
+        }
+
+        // 路由表变化后查找表随之更新
+        dynamicDataSource.addDataSource("404", mock(DataSource.class));
+        assertEquals("404", routedKey(filter, request("/user/404/1")));
+    }
+
+    private static MockHttpServletRequest request(String uri) {
+        return new MockHttpServletRequest("GET", uri);
+    }
+
+    /**
+     * @return 过滤器链内看到的数据源key
+     */
+    private static String routedKey(TenantRoutingFilter filter, MockHttpServletRequest request) throws Exception {
+        AtomicReference<String> seen = new AtomicReference<>();
+        FilterChain chain = (req, res) -> seen.set(DataSourceContextHolder.peek());
+        filter.doFilter(request, new MockHttpServletResponse(), chain);
+        return seen.get();
+    }
+}
@@ -0,0 +1,125 @@
+package com.xunfeng.example.loadtest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * 给内存库加上网络往返延迟的驱动，url为 jdbc:latency:原始url
+ * <p>
+ * Statement的execute*在执行前休眠loadtest.dbLatencyMillis毫秒。loadtest.pinnedLatency=true时在连接的
+ * 监视器锁内休眠，模拟MySQL Connector/J 8.0在synchronized块内做网络IO，虚拟线程会因此钉住载体线程。
+ *
+ * @author
+ * @date 2026/10/19 10:00
+ */
+public class LatencyDriver implements Driver {
+
+    private static final String PREFIX = "jdbc:latency:";
+
+    private static final long LATENCY_MILLIS = Long.getLong("loadtest.dbLatencyMillis", 0);
+    private static final boolean PINNED = Boolean.getBoolean("loadtest.pinnedLatency");
+
+    static {
+        try {
+            DriverManager.registerDriver(new LatencyDriver());
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    static String wrap(String url) {
+        return PREFIX + url;
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        Connection target = DriverManager.getConnection(url.substring(PREFIX.length()), info);
+        return proxy(Connection.class, target, (proxy, method, args) -> {
+            Object result = invoke(target, method, args);
+            if (result instanceof Statement) {
+                Statement statement = (Statement) result;
+                @SuppressWarnings("unchecked")
+                Class<Statement> type = (Class<Statement>) method.getReturnType();
+                return proxy(type, statement, (p, m, a) -> {
+                    if (m.getName().startsWith("execute")) {
+                        delay(target);
+                    }
+                    if ("getConnection".equals(m.getName())) {
+                        return proxy;
+                    }
+                    return invoke(statement, m, a);
+                });
+            }
+            return result;
+        });
+    }
+
+    private static void delay(Object monitor) throws InterruptedException {
+        if (LATENCY_MILLIS <= 0) {
+            return;
+        }
+        if (PINNED) {
+            synchronized (monitor) {
+                Thread.sleep(LATENCY_MILLIS);
+            }
+        } else {
+            Thread.sleep(LATENCY_MILLIS);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private static <T> T proxy(Class<T> type, Object target, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(LatencyDriver.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(PREFIX);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
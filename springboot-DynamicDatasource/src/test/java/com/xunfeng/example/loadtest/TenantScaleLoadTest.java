@@ -0,0 +1,422 @@
+package com.xunfeng.example.loadtest;
+
+import com.alibaba.druid.pool.DruidDataSource;
+import com.alibaba.druid.stat.DruidDataSourceStatManager;
+import com.xunfeng.example.SpringbootDynamicDatasourceApplication;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.init.DataSourceWarmer;
+import com.xunfeng.example.dynamic.pool.TenantPoolManager;
+import com.xunfeng.example.dynamic.pool.TenantPools;
+import com.xunfeng.example.dynamic.sqlstats.SqlStatsCollector;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.aop.Advisor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 租户规模压测
+ * <p>
+ * 用N个H2内存库（MySQL模式）模拟租户数据库，每个库一张sys_user表，登记到默认库的data_source表后
+ * 启动应用，按Zipf分布（少数租户占大部分流量）请求 /user/{dsId}/{userId}。报告启动耗时、
+ * 每个连接池的堆占用、线程数、连接数，以及热/温/冷三档租户各自的延迟分位数，
+ * 用于在单机上对比路由和连接池相关改动。默认不执行，运行方式：
+ * <pre>
+ * mvn test -Dtest=TenantScaleLoadTest -Dloadtest.tenants=1000 [-Dloadtest.requests=50000] [-Dloadtest.clients=32]
+ *     [-Dloadtest.skew=1.1] [-Ddynamic.routing.lazy.max-live-pools=500 ...]
+ * </pre>
+ * dynamic.routing.*等应用配置可以直接用系统属性覆盖；报告同时写入target/loadtest目录。
+ * <p>
+ * 对比平台线程与虚拟线程：loadtest.endpoint=export 改为请求 /user/{dsId}/export（在请求线程内查询），
+ * loadtest.dbLatencyMillis 给每次执行加上模拟的网络延迟（见{@link LatencyDriver}），再分别以
+ * -Ddynamic.routing.virtual-threads.enabled=false/true 运行（后者需要JDK 21和-Pjdk21）。
+ * H2内存库与应用在同一JVM中，堆和线程数包含H2会话的开销，只适合同一台机器上前后对比。
+ *
+ * @author
+ * @date 2026/10/19 09:00
+ */
+@Slf4j
+@EnabledIfSystemProperty(named = "loadtest.tenants", matches = "\\d+")
+class TenantScaleLoadTest {
+
+    private static final String H2_OPTIONS = ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+
+    private final int tenants = Integer.getInteger("loadtest.tenants", 100);
+    private final int requests = Integer.getInteger("loadtest.requests", 20000);
+    private final int warmupRequests = Integer.getInteger("loadtest.warmupRequests", 2000);
+    private final int clients = Integer.getInteger("loadtest.clients", 16);
+    private final int usersPerTenant = Integer.getInteger("loadtest.usersPerTenant", 20);
+    private final double skew = Double.parseDouble(System.getProperty("loadtest.skew", "1.1"));
+    private final String endpoint = System.getProperty("loadtest.endpoint", "user");
+    private final long dbLatencyMillis = Long.getLong("loadtest.dbLatencyMillis", 0);
+
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+    @Test
+    void tenantScale() throws Exception {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("tenants", tenants);
+        report.put("requests", requests);
+        report.put("clients", clients);
+        report.put("skew", skew);
+        report.put("endpoint", endpoint);
+        report.put("dbLatencyMillis", dbLatencyMillis);
+        report.put("pinnedLatency", Boolean.getBoolean("loadtest.pinnedLatency"));
+
+        long setupStart = System.currentTimeMillis();
+        String masterUrl = "jdbc:h2:mem:loadtest_master" + H2_OPTIONS;
+        // 保持一条连接，防止测试过程中内存库被回收
+        try (Connection keeper = DriverManager.getConnection(masterUrl, "sa", "")) {
+            ScriptUtils.executeSqlScript(keeper, new ClassPathResource("loadtest/master.sql"));
+            createTenants(keeper);
+            report.put("setupMillis", System.currentTimeMillis() - setupStart);
+
+            long heapBefore = usedHeapAfterGc();
+            int threadsBefore = threads.getThreadCount();
+            long bootStart = System.currentTimeMillis();
+            try (ConfigurableApplicationContext context = boot(masterUrl)) {
+                report.put("startupMillis", System.currentTimeMillis() - bootStart);
+                report.put("virtualThreads",
+                        context.getEnvironment().getProperty("dynamic.routing.virtual-threads.enabled", "false"));
+                awaitWarmup(context, bootStart, report);
+                report.put("threadsAfterStartup", threads.getThreadCount() - threadsBefore);
+                snapshotPools(context, "afterStartup", report);
+                // 路由相关的切面与Bean数量，用于对比是否存在多套路由实现
+                report.put("advisors", context.getBeanNamesForType(Advisor.class).length);
+                report.put("beans", context.getBeanDefinitionCount());
+
+                int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+                ZipfSampler sampler = new ZipfSampler(tenants, skew);
+                report.put("warmupErrors", drive(port, sampler, warmupRequests, null).get());
+                Map<String, long[]> latencies = new LinkedHashMap<>();
+                long trafficStart = System.nanoTime();
+                AtomicInteger errors = drive(port, sampler, requests, latencies);
+                long trafficNanos = System.nanoTime() - trafficStart;
+
+                report.put("throughputPerSecond", Math.round(requests * 1e9 / trafficNanos));
+                report.put("errors", errors.get());
+                report.put("peakThreads", threads.getPeakThreadCount());
+                report.put("threadsAfterTraffic", threads.getThreadCount() - threadsBefore);
+                int livePools = snapshotPools(context, "afterTraffic", report);
+                long heapDelta = usedHeapAfterGc() - heapBefore;
+                report.put("heapDeltaKb", heapDelta / 1024);
+                report.put("heapPerPoolKb", livePools == 0 ? 0 : heapDelta / 1024 / livePools);
+                latencies.forEach((tier, samples) -> report.put("latency." + tier, percentiles(samples)));
+                sqlStats(context, report);
+                assertTrue(errors.get() < requests / 100, "错误请求超过1%:" + errors.get());
+            }
+        } finally {
+            write(report);
+        }
+    }
+
+    /**
+     * 创建租户内存库并登记到data_source，租户i的id为i，越小越热门；设置了延迟时登记为{@link LatencyDriver}的url
+     */
+    private void createTenants(Connection master) throws SQLException {
+        String insertDataSource = "insert into data_source (id, driver_class_name, url, name, host, port, username,"
+                + " password, del_flag, state, update_time) values (?, ?, ?, ?, 'localhost', 0, 'sa', '',"
+                + " '0', '1', now())";
+        try (PreparedStatement register = master.prepareStatement(insertDataSource)) {
+            for (int i = 1; i <= tenants; i++) {
+                String url = "jdbc:h2:mem:loadtest_tenant" + i + H2_OPTIONS;
+                try (Connection tenant = DriverManager.getConnection(url, "sa", "")) {
+                    ScriptUtils.executeSqlScript(tenant, new ClassPathResource("loadtest/tenant.sql"));
+                    try (PreparedStatement insert = tenant.prepareStatement(
+                            "insert into sys_user (user_id, username, nickname, phone) values (?, ?, ?, ?)")) {
+                        for (int u = 1; u <= usersPerTenant; u++) {
+                            insert.setLong(1, u);
+                            insert.setString(2, "user" + u);
+                            insert.setString(3, "tenant" + i + "-user" + u);
+                            insert.setString(4, String.valueOf(13800000000L + u));
+                            insert.addBatch();
+                        }
+                        insert.executeBatch();
+                    }
+                }
+                register.setLong(1, i);
+                register.setString(2, dbLatencyMillis > 0 ? LatencyDriver.class.getName() : "org.h2.Driver");
+                register.setString(3, dbLatencyMillis > 0 ? LatencyDriver.wrap(url) : url);
+                register.setString(4, "loadtest-" + i);
+                register.addBatch();
+            }
+            register.executeBatch();
+        }
+    }
+
+    /**
+     * 以命令行参数覆盖默认库配置（优先级高于application.yml），其余配置仍可用系统属性覆盖
+     */
+    private ConfigurableApplicationContext boot(String masterUrl) {
+        return new SpringApplicationBuilder(SpringbootDynamicDatasourceApplication.class).run(
+                "--server.port=0",
+                "--spring.datasource.dynamic.datasource.master.url=" + masterUrl,
+                "--spring.datasource.dynamic.datasource.master.driver-class-name=org.h2.Driver",
+                "--spring.datasource.dynamic.datasource.master.username=sa",
+                "--spring.datasource.dynamic.datasource.master.password=",
+                "--logging.level.root=warn");
+    }
+
+    /**
+     * 启动耗时之外再记录预热就绪的耗时（预热未开启时跳过）
+     */
+    private void awaitWarmup(ConfigurableApplicationContext context, long bootStart, Map<String, Object> report)
+            throws InterruptedException {
+        DataSourceWarmer warmer = context.getBeanProvider(DataSourceWarmer.class).getIfAvailable();
+        if (warmer == null) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(10);
+        while (!warmer.isReady() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        report.put("readyMillis", System.currentTimeMillis() - bootStart);
+        report.put("warmup", warmer.getProgress());
+    }
+
+    /**
+     * 统计已创建的连接池数量和物理连接数，共享连接池只计一次
+     *
+     * @return 已创建的连接池数量
+     */
+    private int snapshotPools(ConfigurableApplicationContext context, String phase, Map<String, Object> report) {
+        DynamicDataSource dynamicDataSource = context.getBean(DynamicDataSource.class);
+        Map<DruidDataSource, Boolean> pools = new IdentityHashMap<>();
+        for (DataSource dataSource : dynamicDataSource.getTargetDataSourceMap().values()) {
+            DruidDataSource pool = TenantPools.unwrap(dataSource);
+            if (pool != null && !pool.isClosed()) {
+                pools.put(pool, Boolean.TRUE);
+            }
+        }
+        int connections = pools.keySet().stream().mapToInt(pool -> pool.getActiveCount() + pool.getPoolingCount()).sum();
+        report.put(phase + ".pools", pools.size());
+        // 应用内全部Druid连接池，含不在路由表中的（如其他组件自建的默认库连接池）
+        report.put(phase + ".druidInstances", DruidDataSourceStatManager.getDruidDataSourceInstances().size());
+        report.put(phase + ".connections", connections);
+        TenantPoolManager manager = context.getBeanProvider(TenantPoolManager.class).getIfAvailable();
+        if (manager != null) {
+            report.put(phase + ".reservedConnections", manager.getReservedConnections());
+        }
+        return pools.size();
+    }
+
+    /**
+     * 累计耗时最多的几条语句（SQL统计未开启时跳过）
+     */
+    private void sqlStats(ConfigurableApplicationContext context, Map<String, Object> report) {
+        SqlStatsCollector collector = context.getBeanProvider(SqlStatsCollector.class).getIfAvailable();
+        if (collector == null) {
+            return;
+        }
+        report.put("sqlStats.statements", collector.getSize());
+        for (SqlStatsCollector.StatementStats stats : collector.top(null, 3)) {
+            report.put("sqlStats." + stats.getKey(), String.format("count=%d, p99=%.2fms, %s", stats.getCount(),
+                    stats.percentileMicros(0.99) / 1000.0, stats.getFingerprint()));
+        }
+    }
+
+    /**
+     * 多个客户端线程按Zipf分布发请求
+     *
+     * @param latencies 为null时只预热不记录，否则按热度档位记录每个请求的耗时（纳秒）
+     * @return 失败请求数
+     */
+    private AtomicInteger drive(int port, ZipfSampler sampler, int total, Map<String, long[]> latencies)
+            throws Exception {
+        System.setProperty("http.maxConnections", String.valueOf(clients));
+        AtomicInteger remaining = new AtomicInteger(total);
+        AtomicInteger errors = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        List<Future<Map<Tier, LongList>>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            futures.add(executor.submit(() -> {
+                Map<Tier, LongList> local = new HashMap<>();
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (remaining.getAndDecrement() > 0) {
+                    int rank = sampler.sample(random);
+                    long userId = 1 + random.nextInt(usersPerTenant);
+                    long start = System.nanoTime();
+                    String path = "export".equals(endpoint) ? "/export" : "/" + userId;
+                    boolean ok = get(new URL("http://127.0.0.1:" + port + "/user/" + rank + path));
+                    long elapsed = System.nanoTime() - start;
+                    if (!ok) {
+                        errors.incrementAndGet();
+                    }
+                    local.computeIfAbsent(Tier.of(rank, tenants), t -> new LongList()).add(elapsed);
+                }
+                return local;
+            }));
+        }
+        Map<Tier, LongList> merged = new EnumMap<>(Tier.class);
+        for (Future<Map<Tier, LongList>> future : futures) {
+            future.get().forEach((tier, list) -> merged.computeIfAbsent(tier, t -> new LongList()).addAll(list));
+        }
+        executor.shutdown();
+        if (latencies != null) {
+            merged.forEach((tier, list) -> latencies.put(tier.label, list.toSortedArray()));
+        }
+        return errors;
+    }
+
+    private static boolean get(URL url) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            int status = connection.getResponseCode();
+            // 读完响应体才能复用keep-alive连接
+            try (InputStream body = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+                if (body != null) {
+                    byte[] buffer = new byte[4096];
+                    while (body.read(buffer) >= 0) {
+                        // 丢弃
+                    }
+                }
+            }
+            return status == 200;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static Map<String, Object> percentiles(long[] sorted) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("count", sorted.length);
+        result.put("p50", millis(percentile(sorted, 0.5)));
+        result.put("p90", millis(percentile(sorted, 0.9)));
+        result.put("p99", millis(percentile(sorted, 0.99)));
+        result.put("p99.9", millis(percentile(sorted, 0.999)));
+        result.put("max", millis(sorted[sorted.length - 1]));
+        return result;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        return sorted[Math.max(0, Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1))];
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2fms", nanos / 1e6);
+    }
+
+    private long usedHeapAfterGc() throws InterruptedException {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+
+    private static void write(Map<String, Object> report) throws IOException {
+        StringBuilder text = new StringBuilder("---------- 租户规模压测 ----------\n");
+        report.forEach((key, value) -> text.append(String.format("%-36s %s%n", key, value)));
+        log.info("---压测报告---:\n{}", text);
+        Path dir = Paths.get("target", "loadtest");
+        Files.createDirectories(dir);
+        Files.write(dir.resolve("tenant-scale-" + report.get("tenants") + "-" + System.currentTimeMillis() + ".txt"),
+                text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 租户热度档位：前1%为热门，1%~10%为温，其余为冷门长尾
+     */
+    private enum Tier {
+        HOT("hot(top1%)"), WARM("warm(1-10%)"), COLD("cold(rest)");
+
+        private final String label;
+
+        Tier(String label) {
+            this.label = label;
+        }
+
+        static Tier of(int rank, int tenants) {
+            if (rank <= Math.max(1, tenants / 100)) {
+                return HOT;
+            }
+            return rank <= Math.max(2, tenants / 10) ? WARM : COLD;
+        }
+    }
+
+    /**
+     * Zipf分布采样：第k名的概率与1/k^s成正比，返回1..n
+     */
+    private static final class ZipfSampler {
+        private final double[] cumulative;
+
+        ZipfSampler(int n, double s) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int k = 1; k <= n; k++) {
+                sum += 1 / Math.pow(k, s);
+                cumulative[k - 1] = sum;
+            }
+            for (int k = 0; k < n; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        int sample(ThreadLocalRandom random) {
+            int index = Arrays.binarySearch(cumulative, random.nextDouble());
+            return Math.min(index >= 0 ? index : -index - 1, cumulative.length - 1) + 1;
+        }
+    }
+
+    private static final class LongList {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LongList other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        long[] toSortedArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.xunfeng.example.service;
+
+import com.xunfeng.example.domain.entity.SysUser;
+import com.xunfeng.example.dynamic.DynamicDataSource;
+import com.xunfeng.example.dynamic.interceptor.StatementAwareInterceptor;
+import com.xunfeng.example.mapper.SysUserMapper;
+import org.apache.ibatis.executor.result.DefaultResultContext;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.session.ResultHandler;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SysUserExporterTest {
+
+    private final SysUserMapper mapper = mock(SysUserMapper.class);
+    private final SysUserExporter exporter = new SysUserExporter();
+    private final AtomicInteger produced = new AtomicInteger();
+    private final Statement statement = mock(Statement.class);
+
+    @SuppressWarnings("unchecked")
+    SysUserExporterTest() throws Exception {
+        DataSource master = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(master.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("MySQL");
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(DynamicDataSource.MASTER, master);
+        DynamicDataSource dynamicDataSource = new DynamicDataSource(master, targets);
+        dynamicDataSource.addDataSource("1", master);
+        // 经拦截器执行，和MyBatis一样把Statement交给ResultHandler
+        StatementHandler statementHandler = mock(StatementHandler.class);
+        doAnswer(invocation -> new StatementAwareInterceptor().intercept(new Invocation(statementHandler,
+                StatementHandler.class.getMethod("query", Statement.class, ResultHandler.class),
+                new Object[]{statement, invocation.getArgument(0)}))).when(mapper).streamAll(any());
+        doAnswer(invocation -> {
+            ResultHandler<SysUser> handler = invocation.getArgument(1);
+            DefaultResultContext<SysUser> context = new DefaultResultContext<>();
+            for (long id = 1; id <= 10_000 && !context.isStopped(); id++) {
+                SysUser user = new SysUser();
+                user.setUserId(id);
+                user.setUsername("u" + id);
+                user.setNickname("a,\"b\"");
+                user.setPassword("secret");
+                context.nextResultObject(user);
+                produced.incrementAndGet();
+                handler.handleResult(context);
+            }
+            return null;
+        }).when(statementHandler).query(any(), any());
+        ReflectionTestUtils.setField(exporter, "sysUserMapper", mapper);
+        ReflectionTestUtils.setField(exporter, "dynamicDataSource", dynamicDataSource);
+        ReflectionTestUtils.setField(exporter, "transactionManager", mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void writesCsvAndNdjsonWithoutSecrets() throws IOException {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream();
+        assertEquals(10_000, exporter.export("1", SysUserExporter.Format.CSV, csv));
+        String[] lines = csv.toString(StandardCharsets.UTF_8.name()).split("\r\n");
+        assertEquals(10_001, lines.length);
+        assertTrue(lines[0].startsWith("userId,username,phone,nickname"));
+        assertTrue(lines[1].startsWith("1,u1,,\"a,\"\"b\"\"\","));
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        exporter.export("1", SysUserExporter.Format.NDJSON, json);
+        String first = json.toString(StandardCharsets.UTF_8.name()).split("\n")[0];
+        assertTrue(first.startsWith("{\"userId\":1,\"username\":\"u1\""));
+        assertFalse(first.contains("secret"));
+        assertThrows(IllegalArgumentException.class,
+                () -> exporter.export("404", SysUserExporter.Format.CSV, new ByteArrayOutputStream()));
+    }
+
+    @Test
+    void cancelsQueryWhenClientDisconnects() throws Exception {
+        OutputStream broken = new OutputStream() {
+            private int written;
+
+            @Override
+            public void write(int b) throws IOException {
+                if (++written > 20_000) {
+                    throw new IOException("Broken pipe");
+                }
+            }
+        };
+        assertThrows(IOException.class, () -> exporter.export("1", SysUserExporter.Format.NDJSON, broken));
+        assertTrue(produced.get() < 10_000);
+        verify(statement).cancel();
+    }
+}
@@ -0,0 +1,101 @@
+package com.xunfeng.example.service;
+
+import com.xunfeng.example.domain.entity.SysUser;
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DynamicDataSourceProperties;
+import com.xunfeng.example.mapper.SysUserMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class SysUserLoaderTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void coalescesSameIdAndBatchesPerTenant() throws Exception {
+        SysUserMapper mapper = mock(SysUserMapper.class);
+        Map<String, List<Collection<Long>>> calls = new ConcurrentHashMap<>();
+        when(mapper.selectBatchIds(anyCollection())).thenAnswer(invocation -> {
+            Collection<Long> ids = new ArrayList<>((Collection<Long>) invocation.getArgument(0));
+            calls.computeIfAbsent(DataSourceContextHolder.peek(), k -> new ArrayList<>()).add(ids);
+            List<SysUser> users = new ArrayList<>();
+            for (Long id : ids) {
+                if (id != 404L) {
+                    SysUser user = new SysUser();
+                    user.setUserId(id);
+                    users.add(user);
+                }
+            }
+            return users;
+        });
+        DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+        properties.getLoader().setWindowMillis(50);
+        SysUserLoader loader = new SysUserLoader(mapper, properties);
+        try {
+            CompletableFuture<SysUser> first = loader.load("1", 7L);
+            CompletableFuture<SysUser> same = loader.load("1", 7L);
+            CompletableFuture<Map<Long, SysUser>> many = loader.loadMany("1", Arrays.asList(7L, 8L, 404L));
+            CompletableFuture<SysUser> otherTenant = loader.load("2", 7L);
+
+            assertSame(first, same);
+            assertEquals(7L, first.get(5, TimeUnit.SECONDS).getUserId());
+            assertEquals(Arrays.asList(7L, 8L), new ArrayList<>(many.get(5, TimeUnit.SECONDS).keySet()));
+            assertNotNull(otherTenant.get(5, TimeUnit.SECONDS));
+
+            assertEquals(1, calls.get("1").size());
+            assertEquals(Arrays.asList(7L, 8L, 404L), calls.get("1").get(0));
+            assertEquals(1, calls.get("2").size());
+            assertNull(DataSourceContextHolder.peek());
+        } finally {
+            loader.destroy();
+        }
+    }
+
+    @Test
+    void errorFailsWaitersAndAllowsRetry() throws Exception {
+        SysUserMapper mapper = mock(SysUserMapper.class);
+        SysUser user = new SysUser();
+        user.setUserId(7L);
+        when(mapper.selectBatchIds(anyCollection()))
+                .thenThrow(new NoClassDefFoundError("com/mysql/cj/jdbc/Driver"))
+                .thenReturn(Collections.singletonList(user));
+        DynamicDataSourceProperties properties = new DynamicDataSourceProperties();
+        properties.getLoader().setWindowMillis(10);
+        SysUserLoader loader = new SysUserLoader(mapper, properties);
+        try {
+            CompletableFuture<SysUser> failed = loader.load("1", 7L);
+            ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+            assertTrue(e.getCause() instanceof NoClassDefFoundError);
+
+            CompletableFuture<SysUser> retried = loader.load("1", 7L);
+            assertNotSame(failed, retried);
+            assertEquals(7L, retried.get(5, TimeUnit.SECONDS).getUserId());
+        } finally {
+            loader.destroy();
+        }
+    }
+
+    @Test
+    void loadAfterShutdownFailsInsteadOfHanging() throws Exception {
+        SysUserLoader loader = new SysUserLoader(mock(SysUserMapper.class), new DynamicDataSourceProperties());
+        loader.destroy();
+
+        CompletableFuture<SysUser> future = loader.load("1", 7L);
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof RejectedExecutionException);
+    }
+}
@@ -0,0 +1,89 @@
+package com.xunfeng.example.service;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.baomidou.mybatisplus.core.conditions.Wrapper;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.xunfeng.example.domain.entity.SysUser;
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.mapper.SysUserMapper;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SysUserPagerTest {
+
+    private final SysUserMapper mapper = mock(SysUserMapper.class);
+    private final SysUserPager pager = new SysUserPager();
+    private final List<String> tenants = new ArrayList<>();
+
+    @BeforeAll
+    static void initTableInfo() {
+        TableInfoHelper.initTableInfo(new MapperBuilderAssistant(new MybatisConfiguration(), ""), SysUser.class);
+    }
+
+    @SuppressWarnings("unchecked")
+    SysUserPagerTest() {
+        // 模拟 user_id > ? order by user_id limit ? ，表中id为10、20、...、50
+        when(mapper.selectList(any())).thenAnswer(invocation -> {
+            tenants.add(DataSourceContextHolder.peek());
+            Wrapper<SysUser> wrapper = invocation.getArgument(0);
+            String sql = wrapper.getCustomSqlSegment();
+            long after = sql.contains("user_id >") ? lastParam(wrapper) : 0;
+            int limit = Integer.parseInt(sql.substring(sql.lastIndexOf("limit ") + 6).trim());
+            List<SysUser> rows = new ArrayList<>();
+            for (long id = 10; id <= 50 && rows.size() < limit; id += 10) {
+                if (id > after) {
+                    SysUser user = new SysUser();
+                    user.setUserId(id);
+                    rows.add(user);
+                }
+            }
+            return rows;
+        });
+        ReflectionTestUtils.setField(pager, "sysUserMapper", mapper);
+    }
+
+    private static long lastParam(Wrapper<SysUser> wrapper) {
+        return ((AbstractWrapper<?, ?, ?>) wrapper).getParamNameValuePairs().values().stream().filter(Long.class::isInstance).mapToLong(Long.class::cast).max().orElse(0);
+    }
+
+    @Test
+    void pagesByKeysetUntilLastPage() {
+        SysUserPager.CursorPage first = pager.page("1", null, null, 2);
+        assertEquals(2, first.getRecords().size());
+        assertTrue(first.isHasMore());
+
+        SysUserPager.CursorPage second = pager.page("1", null, first.getNextCursor(), 2);
+        assertEquals("[30, 40]", ids(second).toString());
+
+        SysUserPager.CursorPage last = pager.page("1", null, second.getNextCursor(), 2);
+        assertEquals("[50]", ids(last).toString());
+        assertNull(last.getNextCursor());
+        assertEquals("[1, 1, 1]", tenants.toString());
+        assertNull(DataSourceContextHolder.peek());
+    }
+
+    @Test
+    void rejectsForeignOrMalformedCursor() {
+        String cursor = SysUserPager.encode("1", 7L, 20L);
+        assertEquals(20L, SysUserPager.decode(cursor, "1", 7L));
+        assertThrows(IllegalArgumentException.class, () -> pager.page("2", 7L, cursor, 2));
+        assertThrows(IllegalArgumentException.class, () -> pager.page("1", null, cursor, 2));
+        assertThrows(IllegalArgumentException.class, () -> pager.page("1", null, "not a cursor!", 2));
+        verify(mapper, never()).selectList(any());
+    }
+
+    private static List<Long> ids(SysUserPager.CursorPage page) {
+        return page.getRecords().stream().map(SysUser::getUserId).collect(Collectors.toList());
+    }
+}
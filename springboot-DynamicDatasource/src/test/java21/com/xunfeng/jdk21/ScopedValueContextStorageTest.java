@@ -0,0 +1,60 @@
+package com.xunfeng.jdk21;
+
+import com.xunfeng.example.dynamic.DataSourceContextHolder;
+import com.xunfeng.example.dynamic.DataSourceContextStorage;
+import com.xunfeng.example.dynamic.propagation.DataSourceContextExecutors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ScopedValueContextStorageTest {
+
+    private DataSourceContextStorage original;
+
+    @BeforeEach
+    void useScopedStorage() {
+        original = DataSourceContextHolder.getStorage();
+        DataSourceContextHolder.setStorage(new ScopedValueContextStorage(original));
+    }
+
+    @AfterEach
+    void restoreStorage() {
+        DataSourceContextHolder.clear();
+        DataSourceContextHolder.setStorage(original);
+    }
+
+    @Test
+    void scopeIsolatesRequestFromThreadContext() throws Exception {
+        DataSourceContextHolder.push("background");
+        String inside = ScopedValueContextStorage.call(() -> {
+            assertNull(DataSourceContextHolder.peek());
+            DataSourceContextHolder.push("t1");
+            DataSourceContextHolder.push("t2");
+            DataSourceContextHolder.poll();
+            // 请求结束时不poll，绑定失效后自然丢弃
+            return DataSourceContextHolder.peek();
+        });
+        assertEquals("t1", inside);
+        assertEquals("background", DataSourceContextHolder.peek());
+    }
+
+    @Test
+    void virtualThreadTasksCarrySubmitterContext() throws Exception {
+        ExecutorService executor = DataSourceContextExecutors.wrap(
+                new Jdk21VirtualThreadSupport().newExecutor("test-vt-"));
+        try {
+            String seen = ScopedValueContextStorage.call(() -> {
+                DataSourceContextHolder.push("t1");
+                return executor.submit(DataSourceContextHolder::peek).get();
+            });
+            assertEquals("t1", seen);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
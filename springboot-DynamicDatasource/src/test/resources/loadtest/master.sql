@@ -0,0 +1,25 @@
+-- 压测用默认库（H2 MySQL模式），结构与sql/test.sql中的data_source一致
+CREATE TABLE data_source (
+  id bigint NOT NULL AUTO_INCREMENT,
+  type char(1) NULL,
+  driver_class_name varchar(255) NULL,
+  url varchar(255) NULL,
+  name varchar(64) NOT NULL,
+  host varchar(255) NOT NULL,
+  port int NULL,
+  username varchar(255) NULL,
+  password varchar(255) NULL,
+  data_base varchar(255) NULL,
+  param varchar(255) NULL,
+  state char(1) NULL,
+  del_flag char(1) NULL DEFAULT '0',
+  create_by varchar(64) NULL DEFAULT '',
+  create_time datetime NULL,
+  update_by varchar(64) NULL DEFAULT '',
+  update_time datetime NULL,
+  remark varchar(5000) NULL,
+  primary_id bigint NULL,
+  weight int NULL DEFAULT 1,
+  PRIMARY KEY (id)
+);
+CREATE INDEX data_source_idx1_primary_id ON data_source (primary_id);
@@ -0,0 +1,26 @@
+-- 压测用租户库（H2 MySQL模式），结构与sql/test.sql中的sys_user一致
+CREATE TABLE sys_user (
+  user_id bigint NOT NULL,
+  username varchar(64) NULL,
+  password varchar(255) NULL,
+  salt varchar(255) NULL,
+  phone varchar(20) NULL,
+  avatar varchar(255) NULL,
+  nickname varchar(64) NULL,
+  name varchar(64) NULL,
+  email varchar(128) NULL,
+  dept_id bigint NULL,
+  create_by varchar(64) NOT NULL DEFAULT ' ',
+  update_by varchar(64) NOT NULL DEFAULT ' ',
+  create_time datetime NULL DEFAULT CURRENT_TIMESTAMP,
+  update_time datetime NULL,
+  lock_flag char(1) NULL DEFAULT '0',
+  del_flag char(1) NULL DEFAULT '0',
+  wx_openid varchar(32) NULL,
+  mini_openid varchar(32) NULL,
+  qq_openid varchar(32) NULL,
+  gitee_login varchar(100) NULL,
+  osc_id varchar(100) NULL,
+  PRIMARY KEY (user_id)
+);
+CREATE INDEX user_idx2_dept_id ON sys_user (dept_id, user_id);
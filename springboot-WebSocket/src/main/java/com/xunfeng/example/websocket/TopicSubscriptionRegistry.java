@@ -0,0 +1,122 @@
+package com.xunfeng.example.websocket;
+
+import javax.websocket.Session;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Topic订阅关系
+ * 主题 -> 会话、会话id -> 主题 双向索引，断开连接时只需遍历该会话订阅过的主题。
+ * 同一会话的订阅、取消订阅和断开都在会话id的compute内完成，彼此串行，两个索引的修改对该会话是原子的；
+ * 同一主题的会话集合只在compute/computeIfPresent内修改，集合变空时在同一次原子操作内移除主题。
+ * 订阅时会话已关闭则不登记，断开之后才到达的订阅不会留下残留。
+ *
+ * @author
+ * @date 2026-10-18 17:13
+ */
+public class TopicSubscriptionRegistry {
+
+    /**
+     * 订阅主题 -> 会话
+     */
+    private final ConcurrentHashMap<String, Set<Session>> topicSessions = new ConcurrentHashMap<>();
+
+    /**
+     * 会话id -> 订阅主题
+     */
+    private final ConcurrentHashMap<String, Set<String>> sessionTopics = new ConcurrentHashMap<>();
+
+    /**
+     * 订阅Topic
+     *
+     * @return 是否为新订阅，已订阅过或会话已关闭返回false
+     */
+    public boolean subscribe(String topic, Session session) {
+        boolean[] added = new boolean[1];
+        sessionTopics.compute(session.getId(), (id, topics) -> {
+            // 与removeSession串行：关闭后才到达的订阅直接丢弃
+            if (!session.isOpen()) {
+                return topics;
+            }
+            if (topics == null) {
+                topics = ConcurrentHashMap.newKeySet();
+            }
+            topics.add(topic);
+            topicSessions.compute(topic, (key, sessions) -> {
+                if (sessions == null) {
+                    sessions = ConcurrentHashMap.newKeySet();
+                }
+                added[0] = sessions.add(session);
+                return sessions;
+            });
+            return topics;
+        });
+        return added[0];
+    }
+
+    /**
+     * 取消订阅Topic，主题没有订阅者时一并移除
+     *
+     * @return 是否取消了已有的订阅
+     */
+    public boolean unsubscribe(String topic, Session session) {
+        boolean[] removed = new boolean[1];
+        sessionTopics.computeIfPresent(session.getId(), (id, topics) -> {
+            topics.remove(topic);
+            removed[0] = removeFromTopic(topic, session);
+            return topics.isEmpty() ? null : topics;
+        });
+        return removed[0];
+    }
+
+    /**
+     * 会话断开时取消其全部订阅
+     *
+     * @return 取消的订阅数
+     */
+    public int removeSession(Session session) {
+        int[] count = new int[1];
+        sessionTopics.computeIfPresent(session.getId(), (id, topics) -> {
+            for (String topic : topics) {
+                if (removeFromTopic(topic, session)) {
+                    count[0]++;
+                }
+            }
+            return null;
+        });
+        return count[0];
+    }
+
+    private boolean removeFromTopic(String topic, Session session) {
+        boolean[] removed = new boolean[1];
+        topicSessions.computeIfPresent(topic, (key, sessions) -> {
+            removed[0] = sessions.remove(session);
+            return sessions.isEmpty() ? null : sessions;
+        });
+        return removed[0];
+    }
+
+    /**
+     * 主题的订阅者，遍历期间的订阅变化可能不可见
+     */
+    public Set<Session> getSubscribers(String topic) {
+        Set<Session> sessions = topicSessions.get(topic);
+        return sessions == null ? Collections.emptySet() : Collections.unmodifiableSet(sessions);
+    }
+
+    /**
+     * 会话订阅的主题
+     */
+    public Set<String> getTopics(Session session) {
+        Set<String> topics = sessionTopics.get(session.getId());
+        return topics == null ? Collections.emptySet() : Collections.unmodifiableSet(topics);
+    }
+
+    /**
+     * 有订阅者的主题数量
+     */
+    public int getTopicCount() {
+        return topicSessions.size();
+    }
+}
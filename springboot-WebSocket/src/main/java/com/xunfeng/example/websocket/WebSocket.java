@@ -3,14 +3,13 @@ package com.xunfeng.example.websocket;
 import com.alibaba.fastjson.JSONException;
 import com.alibaba.fastjson.JSONObject;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.lang.StringUtils;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
+import org.springframework.util.StringUtils;
 
 import javax.websocket.*;
 import javax.websocket.server.PathParam;
 import javax.websocket.server.ServerEndpoint;
-import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArraySet;
@@ -42,9 +41,9 @@ public class WebSocket {
     public static final String UNSUBSCRIBE = "unsubscribe";
 
     /**
-     * 订阅主题 ->会话id列表 以Topic订阅形式进行消息推送
+     * 订阅主题 <-> 会话 以Topic订阅形式进行消息推送
      */
-    public static ConcurrentHashMap<String, Set<Session>> topicSessionMap = new ConcurrentHashMap<>();
+    private static final TopicSubscriptionRegistry TOPIC_REGISTRY = new TopicSubscriptionRegistry();
 
 
     /**
@@ -83,14 +82,15 @@ public class WebSocket {
 
     /**
      * 链接关闭调用的方法
-     * Topic订阅形式也需要在断开时，删除topicSessionMap中的session
+     * Topic订阅形式也需要在断开时，取消该会话的全部订阅
      */
     @OnClose
     public void onClose() {
         try {
             WEB_SOCKETS.remove(this);
             SESSION_POOL.remove(this.userId);
-            log.info("【websocket消息】连接断开，总数为:" + WEB_SOCKETS.size());
+            int topics = TOPIC_REGISTRY.removeSession(this.session);
+            log.info("【websocket消息】连接断开，总数为:" + WEB_SOCKETS.size() + "，取消订阅Topic数:" + topics);
         } catch (Exception e) {
         }
     }
@@ -103,7 +103,7 @@ public class WebSocket {
      */
     @OnMessage
     public void onMessage(String message, Session session) {
-        if (StringUtils.isEmpty(message)) {
+        if (!StringUtils.hasLength(message)) {
             session.getAsyncRemote().sendText("消息为空");
             return;
         }
@@ -204,9 +204,10 @@ public class WebSocket {
      * @param session
      */
     private void subscribeTopic(String topic, Session session) {
-        Set<Session> sessions = topicSessionMap.contains(topic) ? topicSessionMap.get(topic) : new HashSet<Session>();
-        sessions.add(session);
-        topicSessionMap.put(topic, sessions);
+        if (!StringUtils.hasText(topic)) {
+            return;
+        }
+        TOPIC_REGISTRY.subscribe(topic, session);
         log.info("订阅Topic:{},sessionId:{}", topic, session.getId());
     }
 
@@ -217,13 +218,10 @@ public class WebSocket {
      * @param session
      */
     private void unsubscribeTopic(String topic, Session session) {
-        Set<Session> sessions = topicSessionMap.get(topic);
-        if (CollectionUtils.isEmpty(sessions)) {
+        if (!StringUtils.hasText(topic) || !TOPIC_REGISTRY.unsubscribe(topic, session)) {
             log.info("该sessionId:{},未订阅Topic:{},无法取消", session.getId(), topic);
             return;
         }
-        sessions.remove(session);
-        topicSessionMap.put(topic, sessions);
         log.info("取消订阅Topic:{},sessionId:{}", topic, session.getId());
     }
 
@@ -234,13 +232,16 @@ public class WebSocket {
      * @param message
      */
     public void sendMessageByTopic(String topic, SocketMessage message) {
-        Set<Session> sessions = topicSessionMap.get(topic);
+        Set<Session> sessions = TOPIC_REGISTRY.getSubscribers(topic);
         if (CollectionUtils.isEmpty(sessions)) {
             log.info("该Topic:{},不存在订阅者,无法发送", topic);
             return;
         }
+        String text = JSONObject.toJSONString(message);
         sessions.forEach(item -> {
-            item.getAsyncRemote().sendText(JSONObject.toJSONString(message));
+            if (item.isOpen()) {
+                item.getAsyncRemote().sendText(text);
+            }
         });
     }
 }
@@ -0,0 +1,134 @@
+package com.xunfeng.example.websocket;
+
+import org.junit.jupiter.api.Test;
+
+import javax.websocket.Session;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TopicSubscriptionRegistryTest {
+
+    private final TopicSubscriptionRegistry registry = new TopicSubscriptionRegistry();
+
+    @Test
+    void keepsExistingSubscribersAndReclaimsEmptyTopics() {
+        Session first = session("1");
+        Session second = session("2");
+        assertTrue(registry.subscribe("a", first));
+        assertTrue(registry.subscribe("a", second));
+        assertFalse(registry.subscribe("a", second));
+        registry.subscribe("b", first);
+        assertEquals(2, registry.getSubscribers("a").size());
+
+        assertTrue(registry.unsubscribe("b", first));
+        assertFalse(registry.unsubscribe("b", first));
+        assertEquals(1, registry.getTopicCount());
+
+        assertEquals(1, registry.removeSession(first));
+        assertEquals(1, registry.getSubscribers("a").size());
+        assertTrue(registry.getTopics(first).isEmpty());
+        assertEquals(1, registry.removeSession(second));
+        assertEquals(0, registry.getTopicCount());
+    }
+
+    @Test
+    void concurrentSubscribeAndDisconnectLeavesNoGarbage() throws InterruptedException {
+        int threads = 8;
+        int perThread = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Session> kept = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Session keep = session("keep-" + t);
+            kept.add(keep);
+            int thread = t;
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    String topic = "topic-" + (i % 10);
+                    Session temporary = session(thread + "-" + i);
+                    registry.subscribe(topic, temporary);
+                    registry.subscribe(topic, keep);
+                    registry.removeSession(temporary);
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(10, registry.getTopicCount());
+        for (int i = 0; i < 10; i++) {
+            assertEquals(threads, registry.getSubscribers("topic-" + i).size());
+        }
+        kept.forEach(registry::removeSession);
+        assertEquals(0, registry.getTopicCount());
+    }
+
+    @Test
+    void subscribeRacingDisconnectOfSameSessionLeavesNoGarbage() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 2000; round++) {
+                AtomicBoolean open = new AtomicBoolean(true);
+                Session session = session("racing-" + round, open);
+                CyclicBarrier barrier = new CyclicBarrier(2);
+                Future<?> subscriber = executor.submit(() -> {
+                    barrier.await();
+                    for (int i = 0; i < 5; i++) {
+                        registry.subscribe("topic-" + i, session);
+                    }
+                    return null;
+                });
+                Future<?> closer = executor.submit(() -> {
+                    barrier.await();
+                    // 容器先把会话置为关闭再回调onClose
+                    open.set(false);
+                    registry.removeSession(session);
+                    return null;
+                });
+                subscriber.get(10, TimeUnit.SECONDS);
+                closer.get(10, TimeUnit.SECONDS);
+
+                assertTrue(registry.getTopics(session).isEmpty(), "round " + round);
+                assertEquals(0, registry.getTopicCount(), "round " + round);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void closedSessionIsNotSubscribed() {
+        Session closed = session("closed", new AtomicBoolean(false));
+        assertFalse(registry.subscribe("a", closed));
+        assertEquals(0, registry.getTopicCount());
+        assertTrue(registry.getTopics(closed).isEmpty());
+    }
+
+    private static Session session(String id) {
+        return session(id, new AtomicBoolean(true));
+    }
+
+    private static Session session(String id, AtomicBoolean open) {
+        Session session = mock(Session.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenAnswer(invocation -> open.get());
+        return session;
+    }
+}